@@ -11,6 +11,7 @@ import java.util.stream.Collectors;
 import io.smallrye.dux.config.DuxConfigProvider;
 import io.smallrye.dux.config.ServiceConfig;
 import io.smallrye.dux.spi.ElementWithType;
+import io.smallrye.dux.spi.InstanceStateTable;
 import io.smallrye.dux.spi.LoadBalancerProvider;
 import io.smallrye.dux.spi.ServiceDiscoveryProvider;
 
@@ -21,6 +22,10 @@ public final class Dux {
 
     private final Map<String, LoadBalancer> loadBalancers = new ConcurrentHashMap<>();
 
+    private final Map<String, InstanceStateTable> instanceStateTables = new ConcurrentHashMap<>();
+
+    private final DuxScheduler scheduler = new DuxScheduler();
+
     public ServiceDiscovery getServiceDiscovery(String serviceName) {
         ServiceDiscovery serviceDiscovery = serviceDiscoveries.get(serviceName);
         if (serviceDiscovery == null) {
@@ -39,6 +44,32 @@ public final class Dux {
         return loadBalancer;
     }
 
+    /**
+     * Passes a load report of an instance of the service to the load balancer of the service
+     *
+     * @param serviceName name of the service
+     * @param instance the instance that reported its load
+     * @param report the report
+     */
+    public void reportLoad(String serviceName, ServiceInstance instance, LoadReport report) {
+        getLoadBalancer(serviceName).loadReported(instance, report);
+    }
+
+    public InstanceStateTable getInstanceStateTable(String serviceName) {
+        InstanceStateTable stateTable = instanceStateTables.get(serviceName);
+        if (stateTable == null) {
+            throw new IllegalArgumentException("No service defined for service name " + serviceName);
+        }
+        return stateTable;
+    }
+
+    /**
+     * @return the scheduler of the periodic work of all the services, such as refreshes and health checks
+     */
+    public DuxScheduler getScheduler() {
+        return scheduler;
+    }
+
     @Deprecated // for tests only
     Dux() {
         Map<String, LoadBalancerProvider> loadBalancerProviders = getAll(LoadBalancerProvider.class);
@@ -70,9 +101,13 @@ public final class Dux {
                 throw new IllegalArgumentException("ServiceDiscoveryProvider not found for type " + serviceDiscoveryType);
             }
 
-            final var serviceDiscovery = serviceDiscoveryProvider.createServiceDiscovery(serviceDiscoveryConfig);
+            final var serviceDiscovery = serviceDiscoveryProvider.createServiceDiscovery(serviceDiscoveryConfig,
+                    scheduler);
             serviceDiscoveries.put(serviceConfig.serviceName(), serviceDiscovery);
 
+            final var stateTable = new InstanceStateTable();
+            instanceStateTables.put(serviceConfig.serviceName(), stateTable);
+
             final var loadBalancerConfig = serviceConfig.loadBalancer();
             if (loadBalancerConfig == null) {
                 // no load balancer, maybe someone intends to use service discovery only, ignoring
@@ -84,7 +119,8 @@ public final class Dux {
                     throw new IllegalArgumentException("No LoadBalancerProvider for type " + loadBalancerType);
                 }
 
-                final var loadBalancer = loadBalancerProvider.createLoadBalancer(loadBalancerConfig, serviceDiscovery);
+                final var loadBalancer = loadBalancerProvider.createLoadBalancer(loadBalancerConfig, serviceDiscovery,
+                        stateTable);
                 loadBalancers.put(serviceConfig.serviceName(), loadBalancer);
             }
         }
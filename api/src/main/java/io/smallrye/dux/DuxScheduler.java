@@ -0,0 +1,469 @@
+package io.smallrye.dux;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.Cancellable;
+
+/**
+ * Scheduler of background tasks, such as discovery refreshes and health checks, shared by all the services.
+ * <p>
+ * Tasks are kept in a hashed timing wheel driven by a single thread, started on the first scheduled task and
+ * stopped when no task is scheduled anymore. Scheduling, cancelling and expiring a task is constant time, so the
+ * scheduler copes with thousands of services.
+ * A task returns a {@link Uni}, typically a call to a registry or to an instance, and counts as outstanding
+ * until the Uni completes, fails after the timeout of the task, or the task is cancelled. At most
+ * {@code max-outstanding} tasks are outstanding at a time, due tasks above the limit wait for a running one
+ * to complete. The next run of a periodic task is scheduled when its current run completes, so runs of a task
+ * never overlap.
+ * <p>
+ * Periodic tasks start at a random point of their first period, and every period is randomized by the jitter,
+ * so that services don't refresh in synchronized bursts.
+ * <p>
+ * Tasks are started on the scheduler thread, they must not block. They should handle their own failures,
+ * the scheduler only counts them, see {@link #getFailures()}.
+ */
+public final class DuxScheduler implements AutoCloseable {
+
+    public static final Duration DEFAULT_TICK = Duration.ofMillis(10);
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+    public static final int DEFAULT_MAX_OUTSTANDING = 64;
+    public static final Duration DEFAULT_TASK_TIMEOUT = Duration.ofSeconds(30);
+
+    private final long tickNanos;
+    private final Timeout[] wheel;
+    private final int mask;
+    private final int maxOutstanding;
+    private final LongSupplier ticker;
+    // driven by advance() instead of a thread
+    private final boolean manual;
+
+    private final Queue<Task> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger scheduled = new AtomicInteger();
+    private final AtomicLong failures = new AtomicLong();
+
+    // accessed only by the scheduler thread, handed over to the next one under the lock of the scheduler
+    private final ArrayDeque<Task> waiting = new ArrayDeque<>();
+    private long startTime;
+    private long tick;
+
+    // written only by the scheduler thread
+    private volatile int waitingCount;
+    private volatile long dispatched;
+    private volatile long totalLagNanos;
+    private volatile long maxLagNanos;
+
+    private volatile boolean running;
+    private volatile Thread thread;
+    private volatile boolean closed;
+
+    public DuxScheduler() {
+        this(DEFAULT_TICK, DEFAULT_WHEEL_SIZE, DEFAULT_MAX_OUTSTANDING);
+    }
+
+    /**
+     * @param tick resolution of the scheduler
+     * @param wheelSize number of buckets of the wheel, rounded up to a power of two, a wheel turn takes
+     *        {@code tick * wheelSize}, longer delays take several turns
+     * @param maxOutstanding maximum number of tasks whose Uni hasn't completed yet
+     */
+    public DuxScheduler(Duration tick, int wheelSize, int maxOutstanding) {
+        this(tick, wheelSize, maxOutstanding, System::nanoTime, false);
+    }
+
+    /**
+     * Creates a scheduler driven by {@link #advance()} instead of a thread, for tests
+     *
+     * @param ticker clock of the scheduler, in nanoseconds
+     */
+    DuxScheduler(Duration tick, int wheelSize, int maxOutstanding, LongSupplier ticker) {
+        this(tick, wheelSize, maxOutstanding, ticker, true);
+    }
+
+    private DuxScheduler(Duration tick, int wheelSize, int maxOutstanding, LongSupplier ticker, boolean manual) {
+        if (tick.toNanos() <= 0 || wheelSize < 1 || maxOutstanding < 1) {
+            throw new IllegalArgumentException("Invalid scheduler configuration: tick " + tick + ", wheel size "
+                    + wheelSize + ", max outstanding " + maxOutstanding);
+        }
+        this.tickNanos = tick.toNanos();
+        int size = wheelSize == 1 ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+        this.wheel = new Timeout[size];
+        this.mask = size - 1;
+        this.maxOutstanding = maxOutstanding;
+        this.ticker = ticker;
+        this.manual = manual;
+    }
+
+    /**
+     * Runs the task periodically, with the {@link #DEFAULT_TASK_TIMEOUT}, see
+     * {@link #schedulePeriodically(Duration, double, Duration, Supplier)}
+     */
+    public ScheduledTask schedulePeriodically(Duration period, double jitter, Supplier<Uni<?>> task) {
+        return schedulePeriodically(period, jitter, DEFAULT_TASK_TIMEOUT, task);
+    }
+
+    /**
+     * Runs the task periodically. The first run happens at a random time within the first period.
+     *
+     * @param period time between the completion of a run and the start of the next one
+     * @param jitter fraction of the period the actual period is randomized by, e.g. 0.1 for +/- 10%
+     * @param timeout time after which a run whose Uni hasn't completed fails, and is cancelled
+     * @param task the task, returning the Uni of its asynchronous work, or null if there is none
+     * @return the handle to cancel the task
+     */
+    public ScheduledTask schedulePeriodically(Duration period, double jitter, Duration timeout,
+            Supplier<Uni<?>> task) {
+        long periodNanos = period.toNanos();
+        if (periodNanos <= 0 || jitter < 0 || jitter >= 1 || timeout.toNanos() <= 0) {
+            throw new IllegalArgumentException("Invalid periodic task: period " + period + ", jitter " + jitter
+                    + ", timeout " + timeout);
+        }
+        return submit(new Task(task, periodNanos, jitter, timeout,
+                ticker.getAsLong() + ThreadLocalRandom.current().nextLong(periodNanos)));
+    }
+
+    /**
+     * Runs the task once, after the delay, with the {@link #DEFAULT_TASK_TIMEOUT}
+     *
+     * @param delay the delay
+     * @param task the task, returning the Uni of its asynchronous work, or null if there is none
+     * @return the handle to cancel the task
+     */
+    public ScheduledTask schedule(Duration delay, Supplier<Uni<?>> task) {
+        return submit(new Task(task, 0, 0, DEFAULT_TASK_TIMEOUT, ticker.getAsLong() + Math.max(delay.toNanos(), 0)));
+    }
+
+    /**
+     * @return number of tasks scheduled and not cancelled
+     */
+    public int getScheduled() {
+        return scheduled.get();
+    }
+
+    /**
+     * @return number of tasks whose Uni hasn't completed yet
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * @return number of due tasks waiting for outstanding tasks to complete
+     */
+    public int getWaiting() {
+        return waitingCount;
+    }
+
+    /**
+     * @return number of task runs started so far
+     */
+    public long getDispatched() {
+        return dispatched;
+    }
+
+    /**
+     * @return number of task runs that failed
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return the largest delay between the time a task was due and the time it started
+     */
+    public Duration getMaxQueueLag() {
+        return Duration.ofNanos(maxLagNanos);
+    }
+
+    /**
+     * @return the mean delay between the time a task was due and the time it started
+     */
+    public Duration getMeanQueueLag() {
+        long count = dispatched;
+        return Duration.ofNanos(count == 0 ? 0 : totalLagNanos / count);
+    }
+
+    /**
+     * @return whether the scheduler thread is running, or would be if the scheduler is driven by {@link #advance()}
+     */
+    boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Runs the ticks that are due according to the ticker of a scheduler driven by {@link #advance()}
+     */
+    void advance() {
+        if (!manual) {
+            throw new IllegalStateException("The scheduler is driven by its thread");
+        }
+        while (running && !closed && ticker.getAsLong() - (startTime + (tick + 1) * tickNanos) >= 0) {
+            if (!turn()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops the scheduler thread. Outstanding tasks are not cancelled, but no task is started anymore.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Thread current = thread;
+        if (current != null) {
+            LockSupport.unpark(current);
+        }
+    }
+
+    private ScheduledTask submit(Task task) {
+        if (closed) {
+            throw new IllegalStateException("The scheduler is closed");
+        }
+        scheduled.incrementAndGet();
+        inbox.add(task);
+        startIfNeeded();
+        return task;
+    }
+
+    private void startIfNeeded() {
+        // under the lock, so that the check doesn't race with the scheduler stopping after checking the inbox
+        synchronized (this) {
+            if (!running) {
+                startTime = ticker.getAsLong();
+                tick = 0;
+                running = true;
+                if (!manual) {
+                    Thread worker = new Thread(this::run, "dux-scheduler");
+                    worker.setDaemon(true);
+                    thread = worker;
+                    worker.start();
+                }
+            }
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            long deadline = startTime + (tick + 1) * tickNanos;
+            long now;
+            while ((now = ticker.getAsLong()) - deadline < 0 && !closed) {
+                LockSupport.parkNanos(this, deadline - now);
+            }
+            if (!turn()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs a tick of the wheel
+     *
+     * @return false if no task is scheduled anymore and the scheduler stopped
+     */
+    private boolean turn() {
+        Task task;
+        while ((task = inbox.poll()) != null) {
+            if (!task.cancelled) {
+                place(new Timeout(task));
+            }
+        }
+        expire((int) (tick & mask));
+        tick++;
+        dispatch();
+
+        if (scheduled.get() == 0) {
+            synchronized (this) {
+                // a task submitted from now on starts a new thread
+                if (scheduled.get() == 0 && inbox.isEmpty()) {
+                    Arrays.fill(wheel, null);
+                    waiting.clear();
+                    waitingCount = 0;
+                    thread = null;
+                    running = false;
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void place(Timeout timeout) {
+        long deadlineTicks = Math.max((timeout.task.deadline - startTime) / tickNanos, tick);
+        timeout.remainingRounds = (deadlineTicks - tick) / wheel.length;
+        int bucket = (int) (deadlineTicks & mask);
+        timeout.next = wheel[bucket];
+        wheel[bucket] = timeout;
+    }
+
+    private void expire(int bucket) {
+        Timeout remaining = null;
+        Timeout timeout = wheel[bucket];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.task.cancelled) {
+                // dropped
+            } else if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                timeout.next = remaining;
+                remaining = timeout;
+            } else {
+                waiting.add(timeout.task);
+            }
+            timeout = next;
+        }
+        wheel[bucket] = remaining;
+    }
+
+    private void dispatch() {
+        Task task;
+        while (outstanding.get() < maxOutstanding && (task = waiting.poll()) != null) {
+            if (task.cancelled) {
+                continue;
+            }
+            long lag = Math.max(ticker.getAsLong() - task.deadline, 0);
+            totalLagNanos += lag;
+            if (lag > maxLagNanos) {
+                maxLagNanos = lag;
+            }
+            dispatched++;
+            outstanding.incrementAndGet();
+            start(task);
+        }
+        waitingCount = waiting.size();
+    }
+
+    private void start(Task task) {
+        Run run = new Run(task);
+        Uni<?> uni;
+        try {
+            uni = task.body.get();
+        } catch (RuntimeException e) {
+            completed(run, false);
+            return;
+        }
+        if (uni == null) {
+            completed(run, true);
+            return;
+        }
+        task.run = run;
+        run.subscription = uni.ifNoItem().after(task.timeout).fail()
+                .subscribe().with(ignored -> completed(run, true), failure -> completed(run, false));
+        if (task.cancelled) {
+            // cancelled while subscribing
+            run.cancel();
+        }
+    }
+
+    /**
+     * Called by the thread completing the run, which may or may not be the scheduler thread, only the first call
+     * for a run counts
+     */
+    private void completed(Run run, boolean succeeded) {
+        if (!run.completed.compareAndSet(false, true)) {
+            return;
+        }
+        Task task = run.task;
+        if (!succeeded) {
+            failures.incrementAndGet();
+        }
+        outstanding.decrementAndGet();
+        if (task.period > 0 && !task.cancelled && !closed) {
+            double factor = 1 + task.jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+            task.deadline = ticker.getAsLong() + (long) (task.period * factor);
+            inbox.add(task);
+        } else if (task.period == 0 || task.cancelled) {
+            task.finish();
+        }
+    }
+
+    /**
+     * Handle of a scheduled task
+     */
+    public interface ScheduledTask {
+        /**
+         * Cancels the future runs of the task, and the subscription to the Uni of the run in progress
+         */
+        void cancel();
+    }
+
+    private final class Task implements ScheduledTask {
+        private final Supplier<Uni<?>> body;
+        private final long period;
+        private final double jitter;
+        private final Duration timeout;
+        private volatile long deadline;
+        private volatile boolean cancelled;
+        // the last run, possibly completed
+        private volatile Run run;
+        private boolean finished;
+
+        private Task(Supplier<Uni<?>> body, long period, double jitter, Duration timeout, long deadline) {
+            this.body = body;
+            this.period = period;
+            this.jitter = jitter;
+            this.timeout = timeout;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            Run current = run;
+            if (current != null) {
+                current.cancel();
+            }
+            finish();
+        }
+
+        private synchronized void finish() {
+            if (!finished) {
+                finished = true;
+                scheduled.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * A run of a task, from its start to the completion of its Uni
+     */
+    private final class Run {
+        private final Task task;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile Cancellable subscription;
+
+        private Run(Task task) {
+            this.task = task;
+        }
+
+        private void cancel() {
+            Cancellable current = subscription;
+            if (current != null && !completed.get()) {
+                current.cancel();
+                completed(this, true);
+            }
+        }
+    }
+
+    private static final class Timeout {
+        private final Task task;
+        private long remainingRounds;
+        private Timeout next;
+
+        private Timeout(Task task) {
+            this.task = task;
+        }
+    }
+}
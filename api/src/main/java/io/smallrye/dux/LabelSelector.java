@@ -0,0 +1,221 @@
+package io.smallrye.dux;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+
+import io.smallrye.dux.spi.LabelIndex;
+
+/**
+ * Compiled selector of service instances by their metadata labels, e.g. {@code version=v2,tier in (gold,silver)}.
+ * <p>
+ * A selector is a comma separated list of requirements, all of which have to be met:
+ * <ul>
+ * <li>{@code key=value}, {@code key!=value}</li>
+ * <li>{@code key in (value1,value2)}, {@code key notin (value1,value2)}</li>
+ * <li>{@code key}, {@code !key}: the label is present, absent</li>
+ * </ul>
+ * Parse a selector once and reuse it, load balancers cache the instances it matches in every discovery snapshot,
+ * see {@link LoadBalancer#selectServiceInstance(LabelSelector)}. Selectors with the same requirements are equal,
+ * e.g. {@code tier in (gold,silver)} and {@code tier in (silver, gold)}, and share the cached instances.
+ */
+public final class LabelSelector {
+
+    private final String expression;
+    private final Requirement[] requirements;
+
+    private LabelSelector(String expression, Requirement[] requirements) {
+        this.expression = expression;
+        this.requirements = requirements;
+    }
+
+    /**
+     * @param expression the selector
+     * @return the compiled selector
+     * @throws IllegalArgumentException if the expression is not a valid selector
+     */
+    public static LabelSelector parse(String expression) {
+        List<Requirement> requirements = new ArrayList<>();
+        int start = 0;
+        int depth = 0;
+        for (int i = 0; i <= expression.length(); i++) {
+            char c = i == expression.length() ? ',' : expression.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                String requirement = expression.substring(start, i).trim();
+                if (!requirement.isEmpty() || i < expression.length()) {
+                    requirements.add(requirement(expression, requirement));
+                }
+                start = i + 1;
+            }
+            if (depth < 0 || depth > 1) {
+                throw invalid(expression);
+            }
+        }
+        if (depth != 0) {
+            throw invalid(expression);
+        }
+        return new LabelSelector(expression, requirements.toArray(new Requirement[0]));
+    }
+
+    /**
+     * @param instance service instance
+     * @return whether the labels of the instance meet all the requirements
+     */
+    public boolean matches(ServiceInstance instance) {
+        for (Requirement requirement : requirements) {
+            String value = instance.getMetadata().get(requirement.key);
+            boolean matched;
+            if (requirement.values == null) {
+                matched = value != null;
+            } else {
+                matched = false;
+                for (String candidate : requirement.values) {
+                    matched |= candidate.equals(value);
+                }
+            }
+            if (matched == requirement.negated) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the bitset of the slots matching the selector, with AND and OR operations on the index bitsets
+     *
+     * @param index label index of a snapshot
+     * @return the bitset of the matching slots
+     */
+    public long[] evaluate(LabelIndex index) {
+        long[] result = index.newBits(true);
+        long[] bits = index.newBits(false);
+        for (Requirement requirement : requirements) {
+            if (requirement.values == null) {
+                index.orPresent(requirement.key, bits);
+            } else {
+                for (String value : requirement.values) {
+                    index.or(requirement.key, value, bits);
+                }
+            }
+            for (int word = 0; word < result.length; word++) {
+                result[word] &= requirement.negated ? ~bits[word] : bits[word];
+                bits[word] = 0;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LabelSelector)) {
+            return false;
+        }
+        return Arrays.equals(requirements, ((LabelSelector) o).requirements);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(requirements);
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    private static Requirement requirement(String expression, String requirement) {
+        if (requirement.isEmpty()) {
+            throw invalid(expression);
+        }
+        int open = requirement.indexOf('(');
+        if (open >= 0) {
+            if (!requirement.endsWith(")")) {
+                throw invalid(expression);
+            }
+            String[] keyAndOperator = requirement.substring(0, open).trim().split("\\s+");
+            if (keyAndOperator.length != 2 || !("in".equals(keyAndOperator[1]) || "notin".equals(keyAndOperator[1]))) {
+                throw invalid(expression);
+            }
+            String[] values = requirement.substring(open + 1, requirement.length() - 1).split(",");
+            for (int i = 0; i < values.length; i++) {
+                values[i] = values[i].trim();
+                if (values[i].isEmpty()) {
+                    throw invalid(expression);
+                }
+            }
+            return new Requirement(key(expression, keyAndOperator[0]), "notin".equals(keyAndOperator[1]), values);
+        }
+        int notEquals = requirement.indexOf("!=");
+        if (notEquals >= 0) {
+            return new Requirement(key(expression, requirement.substring(0, notEquals)), true,
+                    new String[] { value(expression, requirement.substring(notEquals + 2)) });
+        }
+        int equals = requirement.indexOf('=');
+        if (equals >= 0) {
+            int valueStart = requirement.startsWith("==", equals) ? equals + 2 : equals + 1;
+            return new Requirement(key(expression, requirement.substring(0, equals)), false,
+                    new String[] { value(expression, requirement.substring(valueStart)) });
+        }
+        if (requirement.startsWith("!")) {
+            return new Requirement(key(expression, requirement.substring(1)), true, null);
+        }
+        return new Requirement(key(expression, requirement), false, null);
+    }
+
+    private static String key(String expression, String key) {
+        String trimmed = key.trim();
+        if (trimmed.isEmpty() || trimmed.chars().anyMatch(c -> Character.isWhitespace(c) || "!=()".indexOf(c) >= 0)) {
+            throw invalid(expression);
+        }
+        return trimmed;
+    }
+
+    private static String value(String expression, String value) {
+        String trimmed = value.trim();
+        if (trimmed.chars().anyMatch(c -> Character.isWhitespace(c) || "!=()".indexOf(c) >= 0)) {
+            throw invalid(expression);
+        }
+        return trimmed;
+    }
+
+    private static IllegalArgumentException invalid(String expression) {
+        return new IllegalArgumentException("Invalid label selector: " + expression);
+    }
+
+    private static final class Requirement {
+        private final String key;
+        private final boolean negated;
+        // null for presence requirements
+        private final String[] values;
+
+        private Requirement(String key, boolean negated, String[] values) {
+            this.key = key;
+            this.negated = negated;
+            // sorted, so that requirements listing the same values in another order are equal
+            this.values = values == null ? null : new TreeSet<>(Arrays.asList(values)).toArray(new String[0]);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Requirement)) {
+                return false;
+            }
+            Requirement other = (Requirement) o;
+            return key.equals(other.key) && negated == other.negated && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, negated) * 31 + Arrays.hashCode(values);
+        }
+    }
+}
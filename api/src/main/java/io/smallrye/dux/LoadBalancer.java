@@ -1,7 +1,165 @@
 package io.smallrye.dux;
 
+import java.time.Duration;
+
 import io.smallrye.mutiny.Uni;
 
 public interface LoadBalancer {
+
+    /**
+     * Maximum number of selections checked against a label selector by the default implementation of
+     * {@link #selectServiceInstance(LabelSelector)}
+     */
+    int MAX_LABEL_SELECTIONS = 16;
+
     Uni<ServiceInstance> selectServiceInstance();
+
+    /**
+     * Selects a service instance without going through the reactive pipeline,
+     * if the load balancer can do it with the data it already has.
+     *
+     * @return the selected instance or null if the selection has to be done with {@link #selectServiceInstance()}
+     */
+    default ServiceInstance selectServiceInstanceIfAvailable() {
+        return null;
+    }
+
+    /**
+     * Selects a service instance for a call that has to complete within the deadline.
+     * Load balancers that track latencies prefer instances that usually answer in time, the others ignore
+     * the deadline.
+     *
+     * @param deadline time remaining to the caller
+     * @return the selected instance
+     */
+    default Uni<ServiceInstance> selectServiceInstance(Duration deadline) {
+        return selectServiceInstance();
+    }
+
+    /**
+     * Selects a service instance for a call that has to complete within the deadline, without going through
+     * the reactive pipeline, see {@link #selectServiceInstance(Duration)}
+     *
+     * @param deadline time remaining to the caller
+     * @return the selected instance or null if the selection has to be done with
+     *         {@link #selectServiceInstance(Duration)}
+     */
+    default ServiceInstance selectServiceInstanceIfAvailable(Duration deadline) {
+        return selectServiceInstanceIfAvailable();
+    }
+
+    /**
+     * Selects a service instance among the ones matching the label selector.
+     * <p>
+     * By default, the instances selected by {@link #selectServiceInstance()} are checked against the selector,
+     * up to {@link #MAX_LABEL_SELECTIONS} times, which respects the strategy of the load balancer but only suits
+     * selectors matching most instances. Load balancers that know their instance state table override it to fall
+     * back to any matching instance, see {@link io.smallrye.dux.spi.InstanceStateTable.Snapshot#anyMatching}, or to
+     * select from the matching instances directly, see {@link io.smallrye.dux.spi.LabelIndex}.
+     *
+     * @param selector label selector
+     * @return the selected instance, or a null item if none matches
+     */
+    default Uni<ServiceInstance> selectServiceInstance(LabelSelector selector) {
+        ServiceInstance selected = selectServiceInstanceIfAvailable(selector);
+        if (selected != null) {
+            return Uni.createFrom().item(selected);
+        }
+        return selectMatching(selector, 1);
+    }
+
+    /**
+     * Selects a service instance among the ones matching the label selector without going through the reactive
+     * pipeline, see {@link #selectServiceInstance(LabelSelector)}
+     *
+     * @param selector label selector
+     * @return the selected instance, or null if none is found or the selection has to be done with
+     *         {@link #selectServiceInstance(LabelSelector)}
+     */
+    default ServiceInstance selectServiceInstanceIfAvailable(LabelSelector selector) {
+        for (int attempt = 0; attempt < MAX_LABEL_SELECTIONS; attempt++) {
+            ServiceInstance selected = selectServiceInstanceIfAvailable();
+            if (selected == null || selector.matches(selected)) {
+                return selected;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Selects a service instance for a request of a session, e.g. of a client or a user.
+     * Load balancers that pin sessions to instances return the same instance for the same key, the others
+     * ignore the key.
+     *
+     * @param sessionKey session key
+     * @return the selected instance
+     */
+    default Uni<ServiceInstance> selectServiceInstance(String sessionKey) {
+        return selectServiceInstance();
+    }
+
+    /**
+     * Selects a service instance for a request of a session without going through the reactive pipeline,
+     * see {@link #selectServiceInstance(String)}
+     *
+     * @param sessionKey session key
+     * @return the selected instance or null if the selection has to be done with
+     *         {@link #selectServiceInstance(String)}
+     */
+    default ServiceInstance selectServiceInstanceIfAvailable(String sessionKey) {
+        return selectServiceInstanceIfAvailable();
+    }
+
+    /**
+     * Notifies the load balancer that a request to the selected instance has started.
+     * Load balancers that take the load of the instances into account rely on callers to call it,
+     * and {@link #requestFinished(ServiceInstance, Throwable)} when the request finishes.
+     *
+     * @param instance the instance the request is sent to
+     */
+    default void requestStarted(ServiceInstance instance) {
+    }
+
+    /**
+     * Notifies the load balancer that a request to the instance has finished
+     *
+     * @param instance the instance the request was sent to
+     * @param failure the failure of the request, or null if the request succeeded
+     */
+    default void requestFinished(ServiceInstance instance, Throwable failure) {
+    }
+
+    /**
+     * Notifies the load balancer that a request to the instance has finished, with the latency of the request.
+     * Callers that measure latencies should prefer it to {@link #requestFinished(ServiceInstance, Throwable)},
+     * which it calls by default.
+     *
+     * @param instance the instance the request was sent to
+     * @param failure the failure of the request, or null if the request succeeded
+     * @param latencyNanos duration of the request, in nanoseconds
+     */
+    default void requestFinished(ServiceInstance instance, Throwable failure, long latencyNanos) {
+        requestFinished(instance, failure);
+    }
+
+    /**
+     * Passes the load the instance reported about itself to the load balancer.
+     * Load balancers that don't use the reports ignore them.
+     *
+     * @param instance the instance that reported its load
+     * @param report the load report, e.g. parsed with {@link LoadReport#parse(String)}
+     */
+    default void loadReported(ServiceInstance instance, LoadReport report) {
+    }
+
+    private Uni<ServiceInstance> selectMatching(LabelSelector selector, int attempt) {
+        return selectServiceInstance().onItem().transformToUni(instance -> {
+            if (instance == null || selector.matches(instance)) {
+                return Uni.createFrom().item(instance);
+            }
+            return attempt < MAX_LABEL_SELECTIONS
+                    ? selectMatching(selector, attempt + 1)
+                    : Uni.createFrom().nullItem();
+        });
+    }
 }
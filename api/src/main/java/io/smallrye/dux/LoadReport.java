@@ -0,0 +1,94 @@
+package io.smallrye.dux;
+
+/**
+ * Load of a service instance, as reported by the instance itself, e.g. in a response header.
+ */
+public final class LoadReport {
+
+    /**
+     * A header backends can use to report their load, see {@link #parse(String)} for the format
+     */
+    public static final String HEADER = "endpoint-load-metrics";
+
+    private final double utilization;
+    private final double queueDepth;
+
+    /**
+     * @param utilization utilization of the instance, typically CPU, 1 meaning fully utilized
+     * @param queueDepth number of requests waiting to be handled by the instance
+     */
+    public LoadReport(double utilization, double queueDepth) {
+        // an infinite load would make the weights of the load balancers NaN
+        if (!Double.isFinite(utilization) || utilization < 0 || !Double.isFinite(queueDepth) || queueDepth < 0) {
+            throw new IllegalArgumentException("Invalid load report: utilization " + utilization
+                    + ", queue depth " + queueDepth);
+        }
+        this.utilization = utilization;
+        this.queueDepth = queueDepth;
+    }
+
+    public double getUtilization() {
+        return utilization;
+    }
+
+    public double getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Parses a load report from comma separated {@code key=value} pairs, e.g. {@code cpu_utilization=0.73, queue=12},
+     * optionally prefixed with {@code TEXT}, as in ORCA text reports.
+     * The utilization is read from {@code cpu_utilization}, {@code cpu} or {@code utilization},
+     * the queue depth from {@code queue} or {@code queue_depth}. Other keys are ignored.
+     *
+     * @param value the value to parse, e.g. the value of the {@link #HEADER} header
+     * @return the load report
+     * @throws IllegalArgumentException if the value doesn't contain a valid report
+     */
+    public static LoadReport parse(String value) {
+        String report = value.trim();
+        if (report.startsWith("TEXT ")) {
+            report = report.substring("TEXT ".length());
+        }
+
+        double utilization = Double.NaN;
+        double queueDepth = 0;
+        for (String pair : report.split(",")) {
+            int separator = pair.indexOf('=');
+            if (separator < 0) {
+                continue;
+            }
+            String key = pair.substring(0, separator).trim();
+            switch (key) {
+                case "cpu_utilization":
+                case "cpu":
+                case "utilization":
+                    utilization = parseNumber(pair.substring(separator + 1), value);
+                    break;
+                case "queue":
+                case "queue_depth":
+                    queueDepth = parseNumber(pair.substring(separator + 1), value);
+                    break;
+                default:
+                    // not used for load balancing
+            }
+        }
+        if (Double.isNaN(utilization)) {
+            throw new IllegalArgumentException("No utilization in load report '" + value + "'");
+        }
+        return new LoadReport(utilization, queueDepth);
+    }
+
+    private static double parseNumber(String number, String report) {
+        try {
+            return Double.parseDouble(number.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number in load report '" + report + "'", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LoadReport{utilization=" + utilization + ", queueDepth=" + queueDepth + '}';
+    }
+}
@@ -1,7 +1,19 @@
 package io.smallrye.dux;
 
+import java.util.List;
+
 import io.smallrye.mutiny.Multi;
 
 public interface ServiceDiscovery {
     Multi<ServiceInstance> getServiceInstances();
+
+    /**
+     * Returns service instances without going through the reactive pipeline,
+     * if the service discovery already has them.
+     *
+     * @return the service instances or null if they have to be retrieved with {@link #getServiceInstances()}
+     */
+    default List<ServiceInstance> getServiceInstancesIfAvailable() {
+        return null;
+    }
 }
@@ -1,14 +1,24 @@
 package io.smallrye.dux;
 
+import java.util.Collections;
+import java.util.Map;
+
 public final class ServiceInstance {
 
     private final Long id;
 
     private final String value;
 
+    private final Map<String, String> metadata;
+
     public ServiceInstance(Long id, String value) {
+        this(id, value, Collections.emptyMap());
+    }
+
+    public ServiceInstance(Long id, String value, Map<String, String> metadata) {
         this.id = id;
         this.value = value;
+        this.metadata = Collections.unmodifiableMap(metadata);
     }
 
     public Long getId() {
@@ -18,4 +28,11 @@ public final class ServiceInstance {
     public String getValue() {
         return value;
     }
+
+    /**
+     * @return metadata of the instance, e.g. its priority tier or labels
+     */
+    public Map<String, String> getMetadata() {
+        return metadata;
+    }
 }
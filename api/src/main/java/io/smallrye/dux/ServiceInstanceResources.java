@@ -0,0 +1,374 @@
+package io.smallrye.dux;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import io.smallrye.dux.spi.InstanceStateTable;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Registry of resources, such as connection pools or HTTP clients, bound to the instances of a service.
+ * <p>
+ * A resource is created on the first {@link #get(ServiceInstance)} for an instance, or as soon as the instance is
+ * discovered if pre-warming is enabled. It is closed, on the executor, when the instance is no longer returned
+ * by the service discovery or when it has not been used for the idle timeout.
+ * <p>
+ * The registry notices changes of the instances when the service discovery returns a new list from
+ * {@link ServiceDiscovery#getServiceInstancesIfAvailable()}, on {@link #refresh()}, and periodically
+ * if a sweep is scheduled, see {@link Builder#setSweep(DuxScheduler, Duration)}. Lists are applied one at a time,
+ * and a list fetched before the last applied one, e.g. by a slow refresh, is ignored.
+ * <p>
+ * With the state table of the service set, see {@link Builder#setStateTable(InstanceStateTable)}, the resources
+ * of draining instances are kept until the instances finish their requests in flight.
+ *
+ * @param <R> type of the resources
+ */
+public final class ServiceInstanceResources<R> implements AutoCloseable {
+
+    private final ServiceDiscovery serviceDiscovery;
+    private final Function<ServiceInstance, R> factory;
+    private final Consumer<R> closer;
+    private final boolean prewarm;
+    private final long idleTimeoutNanos;
+    private final Executor executor;
+    private final LongSupplier ticker;
+    private final InstanceStateTable stateTable;
+
+    private final Map<Long, Holder<R>> resources = new ConcurrentHashMap<>();
+    // orders the lists of instances by the time they are fetched
+    private final AtomicLong fetches = new AtomicLong();
+    private final Object reconcileLock = new Object();
+    // guarded by reconcileLock
+    private long appliedFetch;
+
+    private final DuxScheduler.ScheduledTask sweep;
+
+    private volatile List<ServiceInstance> knownInstances;
+    private volatile boolean closed;
+
+    private ServiceInstanceResources(Builder<R> builder) {
+        this.serviceDiscovery = builder.serviceDiscovery;
+        this.factory = builder.factory;
+        this.closer = builder.closer;
+        this.prewarm = builder.prewarm;
+        this.idleTimeoutNanos = builder.idleTimeout == null ? 0 : builder.idleTimeout.toNanos();
+        this.executor = builder.executor;
+        this.ticker = builder.ticker;
+        this.stateTable = builder.stateTable;
+
+        List<ServiceInstance> instances = serviceDiscovery.getServiceInstancesIfAvailable();
+        if (instances != null) {
+            reconcile(instances, fetches.incrementAndGet());
+        }
+        sweep = builder.sweepScheduler == null ? null
+                : builder.sweepScheduler.schedulePeriodically(builder.sweepInterval, 0.1, this::refresh);
+    }
+
+    /**
+     * Returns the resource of the instance, creating it if needed.
+     * The resource is created on the calling thread, unless it is being pre-warmed, then the call waits for it.
+     *
+     * @param instance service instance, typically just selected by a load balancer
+     * @return the resource of the instance
+     */
+    public R get(ServiceInstance instance) {
+        if (closed) {
+            throw new IllegalStateException("Resources of service instances are closed");
+        }
+        List<ServiceInstance> instances = serviceDiscovery.getServiceInstancesIfAvailable();
+        if (instances != null && instances != knownInstances) {
+            long fetch = fetches.incrementAndGet();
+            if (sameInstances(knownInstances, instances)) {
+                // a copy of the same list, no need to go through all the resources
+                knownInstances = instances;
+            } else {
+                reconcile(instances, fetch);
+            }
+        }
+
+        long now = ticker.getAsLong();
+        while (true) {
+            Holder<R> holder = resources.computeIfAbsent(instance.getId(), id -> new Holder<>(instance, now));
+            if (idleTimeoutNanos > 0) {
+                holder.touch(now, idleTimeoutNanos);
+            }
+            R resource = holder.get(factory);
+            if (resource != null) {
+                return resource;
+            }
+            // closed concurrently, after the instance disappeared or went idle
+            resources.remove(instance.getId(), holder);
+        }
+    }
+
+    /**
+     * Fetches the instances from the service discovery, closes the resources of the instances that are gone or idle,
+     * and pre-warms the resources of the new ones if configured.
+     *
+     * @return a Uni completed when the resources are reconciled, the resources are closed asynchronously
+     */
+    public Uni<Void> refresh() {
+        return Uni.createFrom().deferred(() -> {
+            long fetch = fetches.incrementAndGet();
+            return serviceDiscovery.getServiceInstances().collect().asList()
+                    .map(instances -> {
+                        reconcile(instances, fetch);
+                        evictIdle();
+                        return null;
+                    });
+        });
+    }
+
+    /**
+     * @return number of resources currently held
+     */
+    public int size() {
+        return resources.size();
+    }
+
+    /**
+     * Closes all the resources. The registry cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (sweep != null) {
+            sweep.cancel();
+        }
+        for (Map.Entry<Long, Holder<R>> entry : resources.entrySet()) {
+            evict(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * @param instances list of instances
+     * @param fetch sequence number of the list, taken when it was requested from the service discovery
+     */
+    private void reconcile(List<ServiceInstance> instances, long fetch) {
+        synchronized (reconcileLock) {
+            if (fetch < appliedFetch) {
+                // a newer list has already been applied
+                return;
+            }
+            appliedFetch = fetch;
+            knownInstances = instances;
+            apply(instances);
+        }
+    }
+
+    // guarded by reconcileLock
+    private void apply(List<ServiceInstance> instances) {
+        Set<Long> ids = new HashSet<>(instances.size() * 2);
+        for (ServiceInstance instance : instances) {
+            ids.add(instance.getId());
+        }
+        if (stateTable != null) {
+            InstanceStateTable.Snapshot snapshot = stateTable.update(instances);
+            for (int slot = snapshot.size(); slot < snapshot.slotCount(); slot++) {
+                ids.add(snapshot.instance(slot).getId());
+            }
+        }
+        for (Map.Entry<Long, Holder<R>> entry : resources.entrySet()) {
+            if (!ids.contains(entry.getKey())) {
+                evict(entry.getKey(), entry.getValue());
+            }
+        }
+        if (prewarm && !closed) {
+            long now = ticker.getAsLong();
+            for (ServiceInstance instance : instances) {
+                if (!resources.containsKey(instance.getId())) {
+                    Holder<R> holder = new Holder<>(instance, now);
+                    if (resources.putIfAbsent(instance.getId(), holder) == null) {
+                        executor.execute(() -> holder.get(factory));
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean sameInstances(List<ServiceInstance> known, List<ServiceInstance> instances) {
+        if (known == null || known.size() != instances.size()) {
+            return false;
+        }
+        for (int i = 0; i < known.size(); i++) {
+            if (!known.get(i).getId().equals(instances.get(i).getId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void evictIdle() {
+        if (idleTimeoutNanos <= 0) {
+            return;
+        }
+        long now = ticker.getAsLong();
+        for (Map.Entry<Long, Holder<R>> entry : resources.entrySet()) {
+            if (now - entry.getValue().lastUsed >= idleTimeoutNanos) {
+                evict(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void evict(Long id, Holder<R> holder) {
+        if (resources.remove(id, holder)) {
+            R resource = holder.close();
+            if (resource != null) {
+                executor.execute(() -> closer.accept(resource));
+            }
+        }
+    }
+
+    private static final class Holder<R> {
+        private final ServiceInstance instance;
+        private volatile long lastUsed;
+        private R resource;
+        private boolean closed;
+
+        private Holder(ServiceInstance instance, long now) {
+            this.instance = instance;
+            this.lastUsed = now;
+        }
+
+        private void touch(long now, long idleTimeoutNanos) {
+            // avoid writing to the shared field on every call, a fraction of the timeout is precise enough
+            if (now - lastUsed > idleTimeoutNanos >> 3) {
+                lastUsed = now;
+            }
+        }
+
+        /**
+         * @return the resource, or null if the holder has been closed
+         */
+        private synchronized R get(Function<ServiceInstance, R> factory) {
+            if (closed) {
+                return null;
+            }
+            if (resource == null) {
+                resource = factory.apply(instance);
+            }
+            return resource;
+        }
+
+        /**
+         * @return the resource to close, if it has been created
+         */
+        private synchronized R close() {
+            closed = true;
+            R result = resource;
+            resource = null;
+            return result;
+        }
+    }
+
+    public static class Builder<R> {
+        final ServiceDiscovery serviceDiscovery;
+        final Function<ServiceInstance, R> factory;
+        Consumer<R> closer = ServiceInstanceResources::closeIfCloseable;
+        boolean prewarm;
+        Duration idleTimeout;
+        DuxScheduler sweepScheduler;
+        Duration sweepInterval;
+        Executor executor = ForkJoinPool.commonPool();
+        LongSupplier ticker = System::nanoTime;
+        InstanceStateTable stateTable;
+
+        /**
+         * @param serviceDiscovery service discovery of the service, e.g. {@link Dux#getServiceDiscovery(String)}
+         * @param factory creates the resource of an instance
+         */
+        public Builder(ServiceDiscovery serviceDiscovery, Function<ServiceInstance, R> factory) {
+            this.serviceDiscovery = serviceDiscovery;
+            this.factory = factory;
+        }
+
+        /**
+         * @param closer closes a resource, by default resources implementing {@link AutoCloseable} are closed
+         * @return this builder
+         */
+        public Builder<R> setCloser(Consumer<R> closer) {
+            this.closer = closer;
+            return this;
+        }
+
+        /**
+         * @param prewarm whether to create the resources of newly discovered instances right away, on the executor
+         * @return this builder
+         */
+        public Builder<R> setPrewarm(boolean prewarm) {
+            this.prewarm = prewarm;
+            return this;
+        }
+
+        /**
+         * @param idleTimeout time after which an unused resource is closed, checked on refresh
+         * @return this builder
+         */
+        public Builder<R> setIdleTimeout(Duration idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        /**
+         * @param scheduler scheduler running the automatic refreshes, typically {@link Dux#getScheduler()}
+         * @param interval interval of automatic refreshes
+         * @return this builder
+         */
+        public Builder<R> setSweep(DuxScheduler scheduler, Duration interval) {
+            this.sweepScheduler = scheduler;
+            this.sweepInterval = interval;
+            return this;
+        }
+
+        /**
+         * @param executor executor pre-warming and closing the resources, the common pool by default
+         * @return this builder
+         */
+        public Builder<R> setExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @param stateTable state table of the service, typically {@link Dux#getInstanceStateTable(String)},
+         *        to keep the resources of draining instances
+         * @return this builder
+         */
+        public Builder<R> setStateTable(InstanceStateTable stateTable) {
+            this.stateTable = stateTable;
+            return this;
+        }
+
+        Builder<R> setTicker(LongSupplier ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public ServiceInstanceResources<R> build() {
+            if (serviceDiscovery == null || factory == null) {
+                throw new IllegalArgumentException("Service discovery and resource factory have to be provided");
+            }
+            return new ServiceInstanceResources<>(this);
+        }
+    }
+
+    private static void closeIfCloseable(Object resource) {
+        if (resource instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) resource).close();
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to close " + resource, e);
+            }
+        }
+    }
+}
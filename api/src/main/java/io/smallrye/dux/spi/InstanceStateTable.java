@@ -0,0 +1,732 @@
+package io.smallrye.dux.spi;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+import io.smallrye.dux.LabelSelector;
+import io.smallrye.dux.ServiceInstance;
+
+/**
+ * Per-service table of instance state.
+ * <p>
+ * Every instance of the current discovery snapshot gets a dense {@code int} slot (its position in the snapshot).
+ * Load balancers and their decorators keep their per-instance bookkeeping in {@link Counter}s indexed by the slot,
+ * instead of maps keyed by the boxed instance id.
+ * <p>
+ * The values of the counters belong to the snapshot, and a slot is always resolved against the snapshot it was
+ * taken from. When the list of instances changes, the table seals the values of the current snapshot, builds
+ * a new {@link Snapshot} and moves the values of the instances that are still there to their new slots.
+ * An operation that reaches a sealed value follows the instance to the new snapshot, so updates racing with
+ * the move are neither lost nor applied to another instance. Updates to an instance that is not a part of the new
+ * snapshot are dropped.
+ * <p>
+ * The table also counts the requests in flight to every instance, see {@link #requestStarted(ServiceInstance)}.
+ * An instance that disappears from the service discovery with requests in flight is <em>draining</em>:
+ * it is not a part of the active instances of the snapshot anymore, so load balancers stop selecting it,
+ * but it keeps its slot, and its state, until its last request finishes or the drain timeout elapses.
+ * The table drops it on the {@link #requestFinished(ServiceInstance)} that ends its last request, or on the first
+ * request finishing, or update, after its timeout.
+ */
+public final class InstanceStateTable {
+
+    public static final int NO_SLOT = -1;
+
+    /**
+     * Number of longs between two slots of a counter, 8 longs take a 64 byte cache line
+     */
+    static final int STRIDE = 8;
+
+    /**
+     * Value of a counter moved to the next snapshot
+     */
+    static final long MOVED = Long.MIN_VALUE;
+
+    public static final Duration DEFAULT_DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    // the in-flight counter is the first one
+    private static final int IN_FLIGHT_COUNTER = 0;
+
+    // guarded by this
+    private final List<Counter> counters = new ArrayList<>();
+    private final Counter inFlight;
+    private final long drainTimeoutNanos;
+    private final LongSupplier ticker;
+    // null for ThreadLocalRandom
+    private final Random random;
+
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyList(), Collections.emptyList(), new long[0],
+            Collections.emptyList());
+    // set when the last request of a draining instance finishes
+    private volatile boolean drained;
+
+    public InstanceStateTable() {
+        this(DEFAULT_DRAIN_TIMEOUT);
+    }
+
+    /**
+     * @param drainTimeout maximum time a removed instance is kept for its requests in flight to finish
+     */
+    public InstanceStateTable(Duration drainTimeout) {
+        this(drainTimeout, System::nanoTime);
+    }
+
+    /**
+     * @param drainTimeout maximum time a removed instance is kept for its requests in flight to finish
+     * @param ticker clock of the service, in nanoseconds, see {@link #ticker()}
+     */
+    public InstanceStateTable(Duration drainTimeout, LongSupplier ticker) {
+        this(drainTimeout, ticker, null);
+    }
+
+    /**
+     * @param drainTimeout maximum time a removed instance is kept for its requests in flight to finish
+     * @param ticker clock of the service, in nanoseconds, see {@link #ticker()}
+     * @param random source of randomness of the service, see {@link #random()}
+     */
+    public InstanceStateTable(Duration drainTimeout, LongSupplier ticker, Random random) {
+        this.drainTimeoutNanos = drainTimeout.toNanos();
+        this.ticker = ticker;
+        this.random = random;
+        this.inFlight = newCounter();
+    }
+
+    /**
+     * Clock of the service, {@link System#nanoTime()} unless the table is created with another one.
+     * Load balancers use it for their time based policies, so that a simulation can run them in virtual time.
+     *
+     * @return the clock, in nanoseconds
+     */
+    public LongSupplier ticker() {
+        return ticker;
+    }
+
+    /**
+     * Source of randomness of the service, {@link ThreadLocalRandom} unless the table is created with another one.
+     * Load balancers use it for their random choices, so that a simulation can seed it and be reproducible.
+     *
+     * @return the random source to use on the current thread
+     */
+    public Random random() {
+        return random != null ? random : ThreadLocalRandom.current();
+    }
+
+    /**
+     * @return the current snapshot
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Makes the table reflect the given list of instances.
+     * If the list contains the same instances, in the same order, as the current snapshot, and no draining instance
+     * is done draining, the current snapshot is returned and nothing is allocated.
+     *
+     * @param instances current service instances
+     * @return the snapshot for the instances
+     */
+    public Snapshot update(List<ServiceInstance> instances) {
+        Snapshot current = snapshot;
+        if (current.sameInstances(instances) && !drainingDone(current)) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current.sameInstances(instances) && !drainingDone(current)) {
+                return current;
+            }
+            drained = false;
+            return replace(current, instances);
+        }
+    }
+
+    /**
+     * Records the start of a request to the instance. Load balancers call it from
+     * {@link io.smallrye.dux.LoadBalancer#requestStarted(ServiceInstance)}.
+     *
+     * @param instance the instance
+     */
+    public void requestStarted(ServiceInstance instance) {
+        Snapshot current = snapshot;
+        int slot = current.slotOf(instance);
+        if (slot != NO_SLOT) {
+            inFlight.incrementAndGet(current, slot);
+        }
+    }
+
+    /**
+     * Records the end of a request to the instance, and drops the draining instances that are done draining
+     *
+     * @param instance the instance
+     */
+    public void requestFinished(ServiceInstance instance) {
+        Snapshot current = snapshot;
+        int slot = current.slotOf(instance);
+        if (slot == NO_SLOT) {
+            return;
+        }
+        long requests;
+        do {
+            requests = inFlight.get(current, slot);
+        } while (requests > 0 && !inFlight.compareAndSet(current, slot, requests, requests - 1));
+        if (requests <= 1) {
+            // the snapshot may have changed while decrementing, the instance may have started draining
+            Snapshot latest = snapshot;
+            int latestSlot = latest.slotOf(instance);
+            if (latestSlot != NO_SLOT && latest.isDraining(latestSlot)) {
+                drained = true;
+            }
+        }
+        dropDrained();
+    }
+
+    private void dropDrained() {
+        if (drainingDone(snapshot)) {
+            synchronized (this) {
+                Snapshot current = snapshot;
+                if (drainingDone(current)) {
+                    drained = false;
+                    replace(current, current.instances);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param snapshot snapshot the slot comes from
+     * @param slot slot of an instance of the snapshot
+     * @return number of requests in flight to the instance
+     */
+    public long inFlight(Snapshot snapshot, int slot) {
+        return inFlight.get(snapshot, slot);
+    }
+
+    /**
+     * @return number of instances removed from the service discovery but still finishing requests
+     */
+    public int drainingCount() {
+        return snapshot.drainingCount();
+    }
+
+    private boolean drainingDone(Snapshot current) {
+        int draining = current.drainingCount();
+        return draining > 0 && (drained || ticker.getAsLong() - current.earliestDrainDeadline >= 0);
+    }
+
+    // guarded by this
+    private Snapshot replace(Snapshot current, List<ServiceInstance> instances) {
+        // whatever may fail, e.g. an instance without an id, fails before sealing: the operations on a sealed snapshot
+        // wait for its successor
+        Snapshot active = new Snapshot(instances, Collections.emptyList(), new long[0], Collections.emptyList());
+        long[] initialValues = new long[counters.size()];
+        for (Counter counter : counters) {
+            initialValues[counter.index] = counter.initialValue(current, active);
+        }
+
+        // from here on, operations on the current snapshot wait for the next one
+        long[][] sealed = new long[counters.size()][];
+        Snapshot next;
+        try {
+            for (Counter counter : counters) {
+                sealed[counter.index] = counter.seal(current);
+            }
+            next = next(current, active, sealed[IN_FLIGHT_COUNTER]);
+            for (Counter counter : counters) {
+                counter.fill(current, sealed[counter.index], next, initialValues[counter.index]);
+            }
+        } catch (RuntimeException | Error e) {
+            for (Counter counter : counters) {
+                counter.unseal(current, sealed[counter.index]);
+            }
+            throw e;
+        }
+        current.successor = next;
+        snapshot = next;
+        return next;
+    }
+
+    private Snapshot next(Snapshot current, Snapshot active, long[] requests) {
+        long now = ticker.getAsLong();
+        List<ServiceInstance> draining = new ArrayList<>();
+        List<Long> deadlines = new ArrayList<>();
+        for (int slot = 0; slot < current.slotCount(); slot++) {
+            ServiceInstance instance = current.instance(slot);
+            if (active.slotOf(instance) != NO_SLOT || requests[slot] <= 0) {
+                continue;
+            }
+            long deadline = current.isDraining(slot)
+                    ? current.drainDeadlines[slot - current.size()]
+                    : now + drainTimeoutNanos;
+            if (deadline - now > 0) {
+                draining.add(instance);
+                deadlines.add(deadline);
+            }
+        }
+        return new Snapshot(active.instances, draining, deadlines.stream().mapToLong(Long::longValue).toArray(), counters);
+    }
+
+    /**
+     * Creates a counter with a value per slot. The counter is remapped together with the table.
+     *
+     * @return a new counter, with all values set to 0
+     */
+    public Counter newCounter() {
+        return newCounter(1);
+    }
+
+    /**
+     * Creates a counter whose value is set when an instance is added to the table, e.g. to the time the instance
+     * is first seen. The initial value is read once per update adding instances, under the lock of the table,
+     * so it has to be cheap to compute.
+     *
+     * @param initialValue value of the slots of the instances added by an update
+     * @return a new counter, with the values of the instances that are already in the table set to 0
+     */
+    public Counter newCounter(LongSupplier initialValue) {
+        return newCounter(1, initialValue);
+    }
+
+    /**
+     * Creates a counter with several values per slot, e.g. the buckets of a histogram.
+     * The values of a slot are adjacent in memory.
+     *
+     * @param width number of values per slot
+     * @return a new counter, with all values set to 0
+     */
+    public Counter newCounter(int width) {
+        return newCounter(width, null);
+    }
+
+    private Counter newCounter(int width, LongSupplier initialValue) {
+        if (width < 1) {
+            throw new IllegalArgumentException("Counter width has to be positive, got " + width);
+        }
+        synchronized (this) {
+            Counter counter = new Counter(this, counters.size(), width, (width + STRIDE - 1) / STRIDE * STRIDE,
+                    initialValue);
+            counters.add(counter);
+            // the current snapshot has no values for the counter, the next one has
+            Snapshot current = snapshot;
+            replace(current, current.instances);
+            return counter;
+        }
+    }
+
+    /**
+     * Immutable assignment of slots to service instances, with the values of the counters for these slots.
+     * <p>
+     * The active instances, the ones returned by the service discovery, take the first {@link #size()} slots.
+     * Draining instances follow them.
+     */
+    public static final class Snapshot {
+        private final List<ServiceInstance> instances;
+        private final ServiceInstance[] all;
+        private final long[] ids;
+        private final long[] drainDeadlines;
+        private final long earliestDrainDeadline;
+
+        // values of the counters, by counter index
+        private final AtomicLongArray[] values;
+        // set once the values are moved to the next snapshot
+        private volatile Snapshot successor;
+
+        // built on first use, racing threads may build it twice
+        private volatile LabelIndex labelIndex;
+
+        // open addressing, id -> slot + 1, 0 marks an empty bucket
+        private final long[] keys;
+        private final int[] slots;
+        private final int mask;
+
+        Snapshot(List<ServiceInstance> instances, List<ServiceInstance> draining, long[] drainDeadlines,
+                List<Counter> counters) {
+            // a copy, the caller may reuse its list
+            this.instances = List.copyOf(instances);
+            this.drainDeadlines = drainDeadlines;
+            this.earliestDrainDeadline = Arrays.stream(drainDeadlines).min().orElse(0);
+            int size = this.instances.size() + draining.size();
+            all = new ServiceInstance[size];
+            ids = new long[size];
+
+            int capacity = Integer.highestOneBit(Math.max(2, size * 2 - 1)) << 1;
+            keys = new long[capacity];
+            slots = new int[capacity];
+            mask = capacity - 1;
+
+            for (int slot = 0; slot < size; slot++) {
+                ServiceInstance instance = slot < this.instances.size()
+                        ? this.instances.get(slot)
+                        : draining.get(slot - this.instances.size());
+                if (instance.getId() == null) {
+                    throw new IllegalArgumentException("Service instance " + instance.getValue() + " has no id");
+                }
+                long id = instance.getId();
+                all[slot] = instance;
+                ids[slot] = id;
+                int bucket = bucket(id);
+                while (slots[bucket] != 0 && keys[bucket] != id) {
+                    bucket = (bucket + 1) & mask;
+                }
+                if (slots[bucket] == 0) {
+                    keys[bucket] = id;
+                    slots[bucket] = slot + 1;
+                }
+            }
+
+            values = new AtomicLongArray[counters.size()];
+            for (Counter counter : counters) {
+                // the first and the last line are left empty to pad against neighbouring objects
+                values[counter.index] = new AtomicLongArray((size + 2) * counter.stride);
+            }
+        }
+
+        /**
+         * @return number of active instances in the snapshot
+         */
+        public int size() {
+            return instances.size();
+        }
+
+        /**
+         * @return number of slots, of active and draining instances
+         */
+        public int slotCount() {
+            return ids.length;
+        }
+
+        /**
+         * @return number of draining instances
+         */
+        public int drainingCount() {
+            return ids.length - instances.size();
+        }
+
+        public boolean isDraining(int slot) {
+            return slot >= instances.size();
+        }
+
+        /**
+         * @return active instances of the snapshot, the index of an instance in the list is its slot
+         */
+        public List<ServiceInstance> instances() {
+            return instances;
+        }
+
+        public ServiceInstance instance(int slot) {
+            return all[slot];
+        }
+
+        /**
+         * @return the index of the labels of the active instances
+         */
+        public LabelIndex labelIndex() {
+            LabelIndex index = labelIndex;
+            if (index == null) {
+                index = new LabelIndex(instances);
+                labelIndex = index;
+            }
+            return index;
+        }
+
+        /**
+         * Picks one of the active instances matching the selector, uniformly at random. Load balancers use it
+         * when their own strategy doesn't find a matching instance, e.g. for a selector matching few instances.
+         *
+         * @param selector label selector
+         * @param random random source, see {@link InstanceStateTable#random()}
+         * @return a matching instance, or null if none matches
+         */
+        public ServiceInstance anyMatching(LabelSelector selector, Random random) {
+            LabelIndex.Selection selection = labelIndex().select(selector);
+            int size = selection.size();
+            return size == 0 ? null : all[selection.slot(random.nextInt(size))];
+        }
+
+        public int slotOf(ServiceInstance instance) {
+            return slotOf(instance.getId());
+        }
+
+        /**
+         * @param id instance id
+         * @return slot of the instance, active or draining, or {@link #NO_SLOT} if the instance is not a part of
+         *         the snapshot
+         */
+        public int slotOf(long id) {
+            int bucket = bucket(id);
+            int slot;
+            while ((slot = slots[bucket]) != 0) {
+                if (keys[bucket] == id) {
+                    return slot - 1;
+                }
+                bucket = (bucket + 1) & mask;
+            }
+            return NO_SLOT;
+        }
+
+        boolean sameInstances(List<ServiceInstance> other) {
+            if (other.size() != instances.size()) {
+                return false;
+            }
+            for (int i = 0; i < other.size(); i++) {
+                Long id = other.get(i).getId();
+                if (id == null || id != ids[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the next snapshot, waiting for the table to finish moving the values if needed
+         */
+        private Snapshot successor() {
+            Snapshot next;
+            while ((next = successor) == null) {
+                Thread.onSpinWait();
+            }
+            return next;
+        }
+
+        private int bucket(long id) {
+            long hash = id * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+
+    /**
+     * A {@code long} value per slot, padded so that values of different slots do not share a cache line.
+     * <p>
+     * Every operation takes the snapshot the slot comes from. If the snapshot has been replaced, the operation
+     * applies to the slot of the same instance in the latest snapshot, or is dropped, reading 0, if the instance
+     * is not there anymore.
+     * <p>
+     * {@link Long#MIN_VALUE} marks the values moved to the next snapshot, it cannot be stored in a counter.
+     */
+    public static final class Counter {
+        private final InstanceStateTable table;
+        private final int index;
+        private final int width;
+        private final int stride;
+        private final LongSupplier initialValue;
+
+        private Counter(InstanceStateTable table, int index, int width, int stride, LongSupplier initialValue) {
+            this.table = table;
+            this.index = index;
+            this.width = width;
+            this.stride = stride;
+            this.initialValue = initialValue;
+        }
+
+        public long get(Snapshot snapshot, int slot) {
+            return get(snapshot, slot, 0);
+        }
+
+        public long get(Snapshot snapshot, int slot, int index) {
+            Snapshot current = snapshot;
+            int currentSlot = slot;
+            while (true) {
+                if (this.index < current.values.length) {
+                    long value = current.values[this.index].get(offset(currentSlot) + index);
+                    if (value != MOVED) {
+                        return value;
+                    }
+                }
+                Snapshot next = current.successor();
+                currentSlot = next.slotOf(current.ids[currentSlot]);
+                if (currentSlot == NO_SLOT) {
+                    return 0;
+                }
+                current = next;
+            }
+        }
+
+        public long addAndGet(Snapshot snapshot, int slot, long delta) {
+            return addAndGet(snapshot, slot, 0, delta);
+        }
+
+        public long addAndGet(Snapshot snapshot, int slot, int index, long delta) {
+            Snapshot current = snapshot;
+            int currentSlot = slot;
+            while (true) {
+                if (this.index < current.values.length) {
+                    AtomicLongArray values = current.values[this.index];
+                    int offset = offset(currentSlot) + index;
+                    long value = values.get(offset);
+                    if (value != MOVED) {
+                        long updated = value + delta;
+                        if (updated == MOVED) {
+                            throw new ArithmeticException("Counter value out of range: " + value + " + " + delta);
+                        }
+                        if (values.compareAndSet(offset, value, updated)) {
+                            return updated;
+                        }
+                        continue;
+                    }
+                }
+                Snapshot next = current.successor();
+                currentSlot = next.slotOf(current.ids[currentSlot]);
+                if (currentSlot == NO_SLOT) {
+                    return 0;
+                }
+                current = next;
+            }
+        }
+
+        public long incrementAndGet(Snapshot snapshot, int slot) {
+            return addAndGet(snapshot, slot, 0, 1);
+        }
+
+        public long decrementAndGet(Snapshot snapshot, int slot) {
+            return addAndGet(snapshot, slot, 0, -1);
+        }
+
+        public void set(Snapshot snapshot, int slot, long value) {
+            set(snapshot, slot, 0, value);
+        }
+
+        public void set(Snapshot snapshot, int slot, int index, long value) {
+            checkValue(value);
+            Snapshot current = snapshot;
+            int currentSlot = slot;
+            while (true) {
+                if (this.index < current.values.length) {
+                    AtomicLongArray values = current.values[this.index];
+                    int offset = offset(currentSlot) + index;
+                    long previous = values.get(offset);
+                    if (previous != MOVED) {
+                        if (values.compareAndSet(offset, previous, value)) {
+                            return;
+                        }
+                        continue;
+                    }
+                }
+                Snapshot next = current.successor();
+                currentSlot = next.slotOf(current.ids[currentSlot]);
+                if (currentSlot == NO_SLOT) {
+                    return;
+                }
+                current = next;
+            }
+        }
+
+        public boolean compareAndSet(Snapshot snapshot, int slot, long expected, long value) {
+            checkValue(value);
+            Snapshot current = snapshot;
+            int currentSlot = slot;
+            while (true) {
+                if (this.index < current.values.length) {
+                    AtomicLongArray values = current.values[this.index];
+                    int offset = offset(currentSlot);
+                    long previous = values.get(offset);
+                    if (previous != MOVED) {
+                        if (previous != expected) {
+                            return false;
+                        }
+                        if (values.compareAndSet(offset, expected, value)) {
+                            return true;
+                        }
+                        continue;
+                    }
+                }
+                Snapshot next = current.successor();
+                currentSlot = next.slotOf(current.ids[currentSlot]);
+                if (currentSlot == NO_SLOT) {
+                    return false;
+                }
+                current = next;
+            }
+        }
+
+        /**
+         * Marks all the values of the snapshot as moved
+         *
+         * @return the values, {@code width} per slot
+         */
+        private long[] seal(Snapshot from) {
+            long[] sealed = new long[from.slotCount() * width];
+            if (index >= from.values.length) {
+                return sealed;
+            }
+            AtomicLongArray values = from.values[index];
+            for (int slot = 0; slot < from.slotCount(); slot++) {
+                for (int i = 0; i < width; i++) {
+                    sealed[slot * width + i] = values.getAndSet(offset(slot) + i, MOVED);
+                }
+            }
+            return sealed;
+        }
+
+        /**
+         * Restores the values of a snapshot that could not be replaced
+         */
+        private void unseal(Snapshot from, long[] sealed) {
+            if (sealed == null || index >= from.values.length) {
+                return;
+            }
+            AtomicLongArray values = from.values[index];
+            for (int slot = 0; slot < from.slotCount(); slot++) {
+                for (int i = 0; i < width; i++) {
+                    values.set(offset(slot) + i, sealed[slot * width + i]);
+                }
+            }
+        }
+
+        /**
+         * @return the value of the instances added by the update, read only if the update adds instances
+         */
+        private long initialValue(Snapshot from, Snapshot active) {
+            if (initialValue == null) {
+                return 0;
+            }
+            for (int slot = 0; slot < active.slotCount(); slot++) {
+                if (from.slotOf(active.ids[slot]) == NO_SLOT) {
+                    long value = initialValue.getAsLong();
+                    checkValue(value);
+                    return value;
+                }
+            }
+            return 0;
+        }
+
+        private void fill(Snapshot from, long[] sealed, Snapshot to, long initial) {
+            AtomicLongArray values = to.values[index];
+            for (int slot = 0; slot < to.slotCount(); slot++) {
+                int oldSlot = from.slotOf(to.ids[slot]);
+                if (oldSlot != NO_SLOT) {
+                    for (int i = 0; i < width; i++) {
+                        values.set(offset(slot) + i, sealed[oldSlot * width + i]);
+                    }
+                } else {
+                    values.set(offset(slot), initial);
+                }
+            }
+        }
+
+        private static void checkValue(long value) {
+            if (value == MOVED) {
+                throw new IllegalArgumentException("Long.MIN_VALUE cannot be stored in a counter");
+            }
+        }
+
+        private int offset(int slot) {
+            return (slot + 1) * stride;
+        }
+
+        @Override
+        public String toString() {
+            Snapshot current = table.snapshot();
+            long[] result = new long[current.slotCount()];
+            for (int slot = 0; slot < result.length; slot++) {
+                result[slot] = get(current, slot);
+            }
+            return Arrays.toString(result);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package io.smallrye.dux.spi;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.smallrye.dux.LabelSelector;
+import io.smallrye.dux.ServiceInstance;
+
+/**
+ * Inverted index of the metadata labels of the active instances of a snapshot: for every label and value,
+ * the bitset of the slots of the instances having it.
+ * <p>
+ * The index is built on the first use of a selector with a snapshot, see
+ * {@link InstanceStateTable.Snapshot#labelIndex()}, and the slots matched by a selector are cached until
+ * the snapshot changes, so a selection costs a map lookup.
+ */
+public final class LabelIndex {
+
+    // selectors are expected to be few constants, the cache is dropped if they are not
+    private static final int MAX_CACHED_SELECTIONS = 256;
+
+    private final int size;
+    private final int words;
+    private final Map<String, long[]> present = new HashMap<>();
+    private final Map<String, Map<String, long[]>> values = new HashMap<>();
+    private final Map<LabelSelector, Selection> selections = new ConcurrentHashMap<>();
+
+    LabelIndex(List<ServiceInstance> instances) {
+        size = instances.size();
+        words = (size + 63) >>> 6;
+        for (int slot = 0; slot < size; slot++) {
+            for (Map.Entry<String, String> label : instances.get(slot).getMetadata().entrySet()) {
+                set(present.computeIfAbsent(label.getKey(), key -> new long[words]), slot);
+                set(values.computeIfAbsent(label.getKey(), key -> new HashMap<>())
+                        .computeIfAbsent(label.getValue(), value -> new long[words]), slot);
+            }
+        }
+    }
+
+    /**
+     * @param selector label selector
+     * @return the slots of the instances matching the selector
+     */
+    public Selection select(LabelSelector selector) {
+        Selection selection = selections.get(selector);
+        if (selection == null) {
+            if (selections.size() >= MAX_CACHED_SELECTIONS) {
+                selections.clear();
+            }
+            selection = new Selection(selector.evaluate(this));
+            selections.put(selector, selection);
+        }
+        return selection;
+    }
+
+    /**
+     * @param all whether all the bits of the active slots are set, or none
+     * @return a new bitset of the size of the index
+     */
+    public long[] newBits(boolean all) {
+        long[] bits = new long[words];
+        if (all) {
+            for (int slot = 0; slot < size; slot++) {
+                set(bits, slot);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Sets the bits of the instances having the label with the value
+     *
+     * @param key label key
+     * @param value label value
+     * @param target the bitset to update
+     */
+    public void or(String key, String value, long[] target) {
+        Map<String, long[]> byValue = values.get(key);
+        if (byValue != null) {
+            or(byValue.get(value), target);
+        }
+    }
+
+    /**
+     * Sets the bits of the instances having the label, with any value
+     *
+     * @param key label key
+     * @param target the bitset to update
+     */
+    public void orPresent(String key, long[] target) {
+        or(present.get(key), target);
+    }
+
+    private static void or(long[] bits, long[] target) {
+        if (bits != null) {
+            for (int word = 0; word < bits.length; word++) {
+                target[word] |= bits[word];
+            }
+        }
+    }
+
+    private static void set(long[] bits, int slot) {
+        bits[slot >>> 6] |= 1L << slot;
+    }
+
+    /**
+     * Slots of the instances matched by a selector, in the order of the slots
+     */
+    public static final class Selection {
+        private final int[] slots;
+
+        private Selection(long[] bits) {
+            int count = 0;
+            for (long word : bits) {
+                count += Long.bitCount(word);
+            }
+            slots = new int[count];
+            int i = 0;
+            for (int word = 0; word < bits.length; word++) {
+                long remaining = bits[word];
+                while (remaining != 0) {
+                    slots[i++] = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+                }
+            }
+        }
+
+        /**
+         * @return number of matching instances
+         */
+        public int size() {
+            return slots.length;
+        }
+
+        /**
+         * @param index index of the matching instance, lower than {@link #size()}
+         * @return the slot of the instance
+         */
+        public int slot(int index) {
+            return slots[index];
+        }
+    }
+}
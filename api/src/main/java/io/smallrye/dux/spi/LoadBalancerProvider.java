@@ -7,5 +7,19 @@ import io.smallrye.dux.config.LoadBalancerConfig;
 public interface LoadBalancerProvider extends ElementWithType {
     LoadBalancer createLoadBalancer(LoadBalancerConfig config, ServiceDiscovery serviceDiscovery);
 
+    /**
+     * Creates a load balancer that can keep its per-instance state in the state table of the service.
+     * The table is shared by everything that works with the instances of the service.
+     *
+     * @param config load balancer configuration
+     * @param serviceDiscovery service discovery of the service
+     * @param stateTable instance state table of the service
+     * @return the load balancer
+     */
+    default LoadBalancer createLoadBalancer(LoadBalancerConfig config, ServiceDiscovery serviceDiscovery,
+            InstanceStateTable stateTable) {
+        return createLoadBalancer(config, serviceDiscovery);
+    }
+
     String type();
 }
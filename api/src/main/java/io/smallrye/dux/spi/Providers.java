@@ -0,0 +1,110 @@
+package io.smallrye.dux.spi;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import io.smallrye.dux.DuxScheduler;
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.config.LoadBalancerConfig;
+import io.smallrye.dux.config.ServiceDiscoveryConfig;
+
+/**
+ * Lookup of the available providers, for providers that delegate to other providers
+ */
+public final class Providers {
+
+    public static final String DELEGATE = "delegate";
+    public static final String DEFAULT_DELEGATE = "round-robin";
+    public static final String TYPE = "type";
+
+    public static ServiceDiscoveryProvider serviceDiscoveryProvider(String type) {
+        ServiceDiscoveryProvider provider = ServiceDiscoveryProviders.providers.get(type);
+        if (provider == null) {
+            throw new IllegalArgumentException("ServiceDiscoveryProvider not found for type " + type);
+        }
+        return provider;
+    }
+
+    public static LoadBalancerProvider loadBalancerProvider(String type) {
+        LoadBalancerProvider provider = LoadBalancerProviders.providers.get(type);
+        if (provider == null) {
+            throw new IllegalArgumentException("No LoadBalancerProvider for type " + type);
+        }
+        return provider;
+    }
+
+    /**
+     * Creates the load balancer a decorating load balancer delegates to.
+     * The type of the delegate is taken from the {@code delegate} parameter, round-robin if not set,
+     * the parameters of the delegate are the parameters prefixed with {@code delegate.}
+     *
+     * @param config configuration of the decorating load balancer
+     * @param serviceDiscovery service discovery of the service
+     * @param stateTable instance state table of the service
+     * @return the delegate load balancer
+     */
+    public static LoadBalancer createDelegateLoadBalancer(LoadBalancerConfig config, ServiceDiscovery serviceDiscovery,
+            InstanceStateTable stateTable) {
+        Map<String, String> parameters = config.parameters();
+        String type = parameters.getOrDefault(DELEGATE, DEFAULT_DELEGATE);
+        return loadBalancerProvider(type).createLoadBalancer(
+                new SimpleServiceConfig.SimpleLoadBalancerConfig(type, delegateParameters(parameters)),
+                serviceDiscovery, stateTable);
+    }
+
+    /**
+     * Creates the service discovery a decorating service discovery delegates to.
+     * The type of the delegate is taken from the {@code delegate.type} parameter, the parameters of the delegate
+     * are the other parameters prefixed with {@code delegate.}
+     *
+     * @param config configuration of the decorating service discovery
+     * @param scheduler scheduler shared by the services, or null if there is none
+     * @return the delegate service discovery
+     */
+    public static ServiceDiscovery createDelegateServiceDiscovery(ServiceDiscoveryConfig config,
+            DuxScheduler scheduler) {
+        Map<String, String> delegateParameters = delegateParameters(config.parameters());
+        String type = delegateParameters.remove(TYPE);
+        if (type == null) {
+            throw new IllegalArgumentException("Delegate service discovery type not defined for " + config.type());
+        }
+        ServiceDiscoveryProvider provider = serviceDiscoveryProvider(type);
+        ServiceDiscoveryConfig delegateConfig = new SimpleServiceConfig.SimpleServiceDiscoveryConfig(type,
+                delegateParameters);
+        return scheduler == null
+                ? provider.createServiceDiscovery(delegateConfig)
+                : provider.createServiceDiscovery(delegateConfig, scheduler);
+    }
+
+    private static Map<String, String> delegateParameters(Map<String, String> parameters) {
+        String prefix = DELEGATE + ".";
+        Map<String, String> delegateParameters = new HashMap<>();
+        for (Map.Entry<String, String> entry : parameters.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                delegateParameters.put(entry.getKey().substring(prefix.length()), entry.getValue());
+            }
+        }
+        return delegateParameters;
+    }
+
+    private static <T extends ElementWithType> Map<String, T> getAll(Class<T> providerClass) {
+        ServiceLoader<T> providers = ServiceLoader.load(providerClass);
+        return providers.stream().map(ServiceLoader.Provider::get)
+                .collect(Collectors.toMap(ElementWithType::type, Function.identity()));
+    }
+
+    private static class ServiceDiscoveryProviders {
+        private static final Map<String, ServiceDiscoveryProvider> providers = getAll(ServiceDiscoveryProvider.class);
+    }
+
+    private static class LoadBalancerProviders {
+        private static final Map<String, LoadBalancerProvider> providers = getAll(LoadBalancerProvider.class);
+    }
+
+    private Providers() {
+    }
+}
@@ -1,10 +1,23 @@
 package io.smallrye.dux.spi;
 
+import io.smallrye.dux.DuxScheduler;
 import io.smallrye.dux.ServiceDiscovery;
 import io.smallrye.dux.config.ServiceDiscoveryConfig;
 
 public interface ServiceDiscoveryProvider extends ElementWithType {
     ServiceDiscovery createServiceDiscovery(ServiceDiscoveryConfig config);
 
+    /**
+     * Creates a service discovery that can run its periodic work, e.g. refreshes of the instances, on the scheduler
+     * shared by all the services, instead of its own thread or timer.
+     *
+     * @param config service discovery configuration
+     * @param scheduler the shared scheduler
+     * @return the service discovery
+     */
+    default ServiceDiscovery createServiceDiscovery(ServiceDiscoveryConfig config, DuxScheduler scheduler) {
+        return createServiceDiscovery(config);
+    }
+
     String type();
 }
@@ -0,0 +1,217 @@
+package io.smallrye.dux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniEmitter;
+
+public class DuxSchedulerTest {
+
+    private final AtomicLong time = new AtomicLong();
+
+    @Test
+    void shouldRefreshThousandsOfServicesOnOneThread() {
+        int services = 5000;
+        int maxOutstanding = 32;
+        AtomicIntegerArray runs = new AtomicIntegerArray(services);
+        List<UniEmitter<? super Integer>> running = new ArrayList<>();
+        int maxRunning = 0;
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        try (DuxScheduler scheduler = new DuxScheduler(Duration.ofMillis(1), 256, maxOutstanding, time::get)) {
+            for (int i = 0; i < services; i++) {
+                int service = i;
+                scheduler.schedulePeriodically(Duration.ofMillis(500), 0.1, () -> {
+                    threads.add(Thread.currentThread().getName());
+                    runs.incrementAndGet(service);
+                    // a registry call, answering on the next millisecond
+                    return Uni.createFrom().<Integer> emitter(running::add);
+                });
+            }
+
+            for (int millis = 1; millis <= 1500; millis++) {
+                time.set(Duration.ofMillis(millis).toNanos());
+                scheduler.advance();
+                maxRunning = Math.max(maxRunning, running.size());
+                List<UniEmitter<? super Integer>> answered = new ArrayList<>(running);
+                running.clear();
+                answered.forEach(emitter -> emitter.complete(1));
+            }
+
+            assertThat(threads).containsExactly(Thread.currentThread().getName());
+            assertThat(maxRunning).isLessThanOrEqualTo(maxOutstanding);
+            for (int i = 0; i < services; i++) {
+                assertThat(runs.get(i)).as("runs of service %d", i).isGreaterThanOrEqualTo(2);
+            }
+            assertThat(scheduler.getScheduled()).isEqualTo(services);
+            assertThat(scheduler.getDispatched()).isGreaterThanOrEqualTo(2L * services);
+            assertThat(scheduler.getMeanQueueLag()).isLessThan(Duration.ofMillis(100));
+        }
+    }
+
+    @Test
+    void shouldSpreadFirstRunsOverThePeriod() {
+        List<Long> firstRuns = new ArrayList<>();
+        try (DuxScheduler scheduler = new DuxScheduler(DuxScheduler.DEFAULT_TICK, DuxScheduler.DEFAULT_WHEEL_SIZE,
+                DuxScheduler.DEFAULT_MAX_OUTSTANDING, time::get)) {
+            for (int i = 0; i < 200; i++) {
+                AtomicInteger runs = new AtomicInteger();
+                scheduler.schedulePeriodically(Duration.ofMillis(400), 0.1, () -> {
+                    if (runs.getAndIncrement() == 0) {
+                        firstRuns.add(time.get());
+                    }
+                    return null;
+                });
+            }
+            advance(scheduler, Duration.ofMillis(420));
+        }
+
+        assertThat(firstRuns).hasSize(200);
+        long inFirstQuarter = firstRuns.stream().filter(time -> time <= Duration.ofMillis(100).toNanos()).count();
+        assertThat(inFirstQuarter).isBetween(20L, 80L);
+    }
+
+    @Test
+    void shouldStopCancelledTasks() {
+        AtomicInteger runs = new AtomicInteger();
+        try (DuxScheduler scheduler = new DuxScheduler(Duration.ofMillis(1), 64, 4, time::get)) {
+            DuxScheduler.ScheduledTask task = scheduler.schedulePeriodically(Duration.ofMillis(10), 0, () -> {
+                runs.incrementAndGet();
+                return Uni.createFrom().voidItem();
+            });
+            advance(scheduler, Duration.ofMillis(35));
+            task.cancel();
+            int runsWhenCancelled = runs.get();
+            advance(scheduler, Duration.ofMillis(100));
+
+            assertThat(runsWhenCancelled).isGreaterThan(2);
+            assertThat(runs.get()).isEqualTo(runsWhenCancelled);
+            assertThat(scheduler.getScheduled()).isZero();
+        }
+    }
+
+    @Test
+    void shouldCancelRunInProgress() {
+        AtomicBoolean subscriptionCancelled = new AtomicBoolean();
+        try (DuxScheduler scheduler = new DuxScheduler(Duration.ofMillis(1), 64, 4, time::get)) {
+            DuxScheduler.ScheduledTask task = scheduler.schedule(Duration.ZERO,
+                    () -> Uni.createFrom().nothing().onCancellation().invoke(() -> subscriptionCancelled.set(true)));
+            advance(scheduler, Duration.ofMillis(2));
+            assertThat(scheduler.getOutstanding()).isEqualTo(1);
+
+            task.cancel();
+
+            assertThat(subscriptionCancelled).isTrue();
+            assertThat(scheduler.getOutstanding()).isZero();
+            assertThat(scheduler.getScheduled()).isZero();
+            assertThat(scheduler.getFailures()).isZero();
+        }
+    }
+
+    @Test
+    void shouldFailRunsThatTimeOut() {
+        AtomicInteger runs = new AtomicInteger();
+        try (DuxScheduler scheduler = new DuxScheduler(Duration.ofMillis(1), 64, 4, time::get)) {
+            scheduler.schedulePeriodically(Duration.ofMillis(10), 0, Duration.ofMillis(50), () -> {
+                runs.incrementAndGet();
+                return Uni.createFrom().nothing();
+            });
+            advance(scheduler, Duration.ofMillis(11));
+            assertThat(runs.get()).isEqualTo(1);
+
+            // the timeout of the Uni runs on the real clock
+            await(() -> scheduler.getFailures() == 1);
+            assertThat(scheduler.getOutstanding()).isZero();
+
+            // the next run is scheduled after the failed one
+            advance(scheduler, Duration.ofMillis(11));
+            assertThat(runs.get()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void shouldStopThreadWhenNoTaskIsScheduled() throws InterruptedException {
+        try (DuxScheduler scheduler = new DuxScheduler(Duration.ofMillis(1), 64, 4)) {
+            CountDownLatch first = new CountDownLatch(1);
+            scheduler.schedule(Duration.ZERO, () -> {
+                first.countDown();
+                return null;
+            });
+            assertThat(first.await(5, TimeUnit.SECONDS)).isTrue();
+            await(() -> !scheduler.isRunning());
+
+            // the next task starts the thread again
+            CountDownLatch second = new CountDownLatch(1);
+            scheduler.schedule(Duration.ZERO, () -> {
+                second.countDown();
+                return null;
+            });
+            assertThat(second.await(5, TimeUnit.SECONDS)).isTrue();
+            await(() -> !scheduler.isRunning());
+        }
+    }
+
+    @Test
+    void shouldNotLoseTaskSubmittedWhileStopping() throws InterruptedException {
+        // a large wheel, clearing it when stopping leaves time for a concurrent submit
+        try (DuxScheduler scheduler = new DuxScheduler(Duration.ofMillis(1), 1 << 18, 4, time::get)) {
+            AtomicBoolean done = new AtomicBoolean();
+            Thread driver = new Thread(() -> {
+                while (!done.get()) {
+                    time.addAndGet(Duration.ofMillis(1).toNanos());
+                    scheduler.advance();
+                }
+            });
+            driver.start();
+            try {
+                // every task is submitted while the scheduler stops after the previous one
+                for (int i = 0; i < 2000; i++) {
+                    CountDownLatch ran = new CountDownLatch(1);
+                    scheduler.schedule(Duration.ZERO, () -> {
+                        ran.countDown();
+                        return null;
+                    });
+                    assertThat(ran.await(5, TimeUnit.SECONDS)).as("task %d ran", i).isTrue();
+                }
+            } finally {
+                done.set(true);
+                driver.join();
+            }
+        }
+    }
+
+    private void advance(DuxScheduler scheduler, Duration duration) {
+        long end = time.get() + duration.toNanos();
+        while (time.get() < end) {
+            time.addAndGet(Duration.ofMillis(1).toNanos());
+            scheduler.advance();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package io.smallrye.dux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.smallrye.dux.spi.InstanceStateTable;
+import io.smallrye.dux.spi.LabelIndex;
+import io.smallrye.dux.spi.ServiceInstanceIds;
+
+public class LabelSelectorTest {
+
+    private final ServiceInstance goldV1 = instance(Map.of("tier", "gold", "version", "v1"));
+    private final ServiceInstance goldV2 = instance(Map.of("tier", "gold", "version", "v2", "canary", "true"));
+    private final ServiceInstance silverV1 = instance(Map.of("tier", "silver", "version", "v1"));
+    private final ServiceInstance unlabeled = instance(Map.of());
+
+    @Test
+    void shouldMatchRequirements() {
+        assertThat(matching("version=v1")).containsExactly(goldV1, silverV1);
+        assertThat(matching("version==v2")).containsExactly(goldV2);
+        assertThat(matching("version!=v1")).containsExactly(goldV2, unlabeled);
+        assertThat(matching("tier in (gold, silver), version=v1")).containsExactly(goldV1, silverV1);
+        assertThat(matching("tier notin (gold)")).containsExactly(silverV1, unlabeled);
+        assertThat(matching("canary")).containsExactly(goldV2);
+        assertThat(matching("!canary,tier=gold")).containsExactly(goldV1);
+        assertThat(matching("")).containsExactly(goldV1, goldV2, silverV1, unlabeled);
+        assertThat(matching("tier=bronze")).isEmpty();
+    }
+
+    @Test
+    void shouldSelectFromIndexLikeMatches() {
+        List<ServiceInstance> instances = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            instances.add(instance(Map.of("shard", String.valueOf(i % 7), "zone", i % 3 == 0 ? "a" : "b")));
+        }
+        InstanceStateTable.Snapshot snapshot = new InstanceStateTable().update(instances);
+
+        for (String expression : List.of("shard in (1,4),zone=a", "zone!=a", "!shard", "shard notin (0,1,2)")) {
+            LabelSelector selector = LabelSelector.parse(expression);
+            LabelIndex.Selection selection = snapshot.labelIndex().select(selector);
+
+            List<ServiceInstance> selected = new ArrayList<>();
+            for (int i = 0; i < selection.size(); i++) {
+                selected.add(snapshot.instance(selection.slot(i)));
+            }
+            List<ServiceInstance> expected = new ArrayList<>();
+            for (ServiceInstance instance : instances) {
+                if (selector.matches(instance)) {
+                    expected.add(instance);
+                }
+            }
+            assertThat(selected).as(expression).containsExactlyElementsOf(expected);
+            assertThat(snapshot.labelIndex().select(selector)).isSameAs(selection);
+        }
+    }
+
+    @Test
+    void shouldShareSelectionOfEqualSelectors() {
+        InstanceStateTable.Snapshot snapshot = new InstanceStateTable()
+                .update(List.of(goldV1, goldV2, silverV1, unlabeled));
+        LabelSelector selector = LabelSelector.parse("tier in (gold,silver),version=v1");
+        LabelIndex.Selection selection = snapshot.labelIndex().select(selector);
+
+        for (String expression : List.of("tier in (gold,silver),version=v1", "tier in ( silver, gold ), version==v1",
+                "tier in (gold,silver,gold),version in (v1)")) {
+            LabelSelector same = LabelSelector.parse(expression);
+            assertThat(same).as(expression).isEqualTo(selector).hasSameHashCodeAs(selector);
+            assertThat(snapshot.labelIndex().select(same)).as(expression).isSameAs(selection);
+        }
+        for (String expression : List.of("tier notin (gold,silver),version=v1", "tier in (gold,silver),version!=v1",
+                "tier in (gold),version=v1", "tier,version=v1")) {
+            assertThat(LabelSelector.parse(expression)).as(expression).isNotEqualTo(selector);
+        }
+    }
+
+    @Test
+    void shouldRejectInvalidSelectors() {
+        for (String expression : List.of("tier in gold", "tier in (gold", "tier=(gold)", "a,,b", "=v1", "tier in ()",
+                "tier within (gold)", "version=v 1")) {
+            assertThatThrownBy(() -> LabelSelector.parse(expression)).as(expression)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    private List<ServiceInstance> matching(String expression) {
+        LabelSelector selector = LabelSelector.parse(expression);
+        List<ServiceInstance> result = new ArrayList<>();
+        for (ServiceInstance instance : List.of(goldV1, goldV2, silverV1, unlabeled)) {
+            if (selector.matches(instance)) {
+                result.add(instance);
+            }
+        }
+        return result;
+    }
+
+    private static ServiceInstance instance(Map<String, String> labels) {
+        return new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8080", labels);
+    }
+}
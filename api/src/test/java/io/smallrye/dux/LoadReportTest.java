@@ -0,0 +1,33 @@
+package io.smallrye.dux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+public class LoadReportTest {
+
+    @Test
+    void shouldParseReports() {
+        LoadReport report = LoadReport.parse("cpu_utilization=0.73, queue=12");
+        assertThat(report.getUtilization()).isEqualTo(0.73);
+        assertThat(report.getQueueDepth()).isEqualTo(12);
+
+        report = LoadReport.parse("TEXT rps_fractional=120, cpu_utilization=0.5, mem_utilization=0.9");
+        assertThat(report.getUtilization()).isEqualTo(0.5);
+        assertThat(report.getQueueDepth()).isZero();
+
+        assertThat(LoadReport.parse("utilization=1.2").getUtilization()).isEqualTo(1.2);
+    }
+
+    @Test
+    void shouldRejectInvalidReports() {
+        assertThatThrownBy(() -> LoadReport.parse("queue=3")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> LoadReport.parse("cpu=high")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> LoadReport.parse("cpu=-1")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> LoadReport.parse("cpu_utilization=Infinity"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new LoadReport(0.5, Double.POSITIVE_INFINITY))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,150 @@
+package io.smallrye.dux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import io.smallrye.dux.spi.ServiceInstanceIds;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+
+public class ServiceInstanceResourcesTest {
+
+    private final ServiceInstance first = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8080");
+    private final ServiceInstance second = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8081");
+    private final ServiceInstance third = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8082");
+
+    private final AtomicReference<List<ServiceInstance>> instances = new AtomicReference<>(List.of(first, second));
+    private final ServiceDiscovery serviceDiscovery = new ServiceDiscovery() {
+        @Override
+        public Multi<ServiceInstance> getServiceInstances() {
+            return Multi.createFrom().iterable(instances.get());
+        }
+
+        @Override
+        public List<ServiceInstance> getServiceInstancesIfAvailable() {
+            return instances.get();
+        }
+    };
+
+    private final List<String> created = new CopyOnWriteArrayList<>();
+    private final List<String> closed = new CopyOnWriteArrayList<>();
+    private final AtomicLong time = new AtomicLong();
+
+    @Test
+    void shouldCreateResourcesLazily() {
+        ServiceInstanceResources<String> resources = builder().build();
+        assertThat(created).isEmpty();
+
+        assertThat(resources.get(first)).isEqualTo("pool-" + first.getValue());
+        assertThat(resources.get(first)).isEqualTo("pool-" + first.getValue());
+
+        assertThat(created).containsExactly("pool-" + first.getValue());
+    }
+
+    @Test
+    void shouldPrewarmNewInstances() {
+        ServiceInstanceResources<String> resources = builder().setPrewarm(true).build();
+        assertThat(created).containsExactlyInAnyOrder("pool-" + first.getValue(), "pool-" + second.getValue());
+
+        instances.set(List.of(first, second, third));
+        resources.get(first);
+
+        assertThat(created).hasSize(3).contains("pool-" + third.getValue());
+        assertThat(resources.size()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldCloseResourcesOfRemovedInstances() {
+        ServiceInstanceResources<String> resources = builder().build();
+        resources.get(first);
+        resources.get(second);
+
+        instances.set(List.of(second, third));
+        resources.refresh().await().atMost(Duration.ofSeconds(5));
+
+        assertThat(closed).containsExactly("pool-" + first.getValue());
+        assertThat(resources.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldIgnoreListsOlderThanTheAppliedOne() {
+        CompletableFuture<List<ServiceInstance>> slowRefresh = new CompletableFuture<>();
+        ServiceDiscovery slowDiscovery = new ServiceDiscovery() {
+            @Override
+            public Multi<ServiceInstance> getServiceInstances() {
+                return Uni.createFrom().completionStage(slowRefresh)
+                        .onItem().transformToMulti(list -> Multi.createFrom().iterable(list));
+            }
+
+            @Override
+            public List<ServiceInstance> getServiceInstancesIfAvailable() {
+                return instances.get();
+            }
+        };
+        ServiceInstanceResources<String> resources = builder(slowDiscovery).build();
+        resources.get(first);
+        CompletableFuture<Void> refreshed = resources.refresh().subscribeAsCompletionStage();
+
+        // the list changes while the refresh is waiting for the service discovery
+        instances.set(List.of(second, third));
+        resources.get(third);
+        assertThat(closed).containsExactly("pool-" + first.getValue());
+
+        slowRefresh.complete(List.of(first, second));
+        refreshed.join();
+        assertThat(closed).containsExactly("pool-" + first.getValue());
+        assertThat(resources.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldCloseIdleResources() {
+        ServiceInstanceResources<String> resources = builder().setIdleTimeout(Duration.ofMinutes(1)).build();
+        resources.get(first);
+        resources.get(second);
+
+        time.set(Duration.ofSeconds(40).toNanos());
+        resources.get(second);
+        time.set(Duration.ofSeconds(70).toNanos());
+        resources.refresh().await().atMost(Duration.ofSeconds(5));
+
+        assertThat(closed).containsExactly("pool-" + first.getValue());
+
+        // a new resource is created on the next use
+        assertThat(resources.get(first)).isEqualTo("pool-" + first.getValue());
+        assertThat(created).hasSize(3);
+    }
+
+    @Test
+    void shouldCloseEverythingOnClose() {
+        ServiceInstanceResources<String> resources = builder().setPrewarm(true).build();
+
+        resources.close();
+
+        assertThat(closed).containsExactlyInAnyOrder("pool-" + first.getValue(), "pool-" + second.getValue());
+        assertThatThrownBy(() -> resources.get(first)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private ServiceInstanceResources.Builder<String> builder() {
+        return builder(serviceDiscovery);
+    }
+
+    private ServiceInstanceResources.Builder<String> builder(ServiceDiscovery serviceDiscovery) {
+        return new ServiceInstanceResources.Builder<>(serviceDiscovery, instance -> {
+            String pool = "pool-" + instance.getValue();
+            created.add(pool);
+            return pool;
+        })
+                .setCloser(closed::add)
+                .setExecutor(Runnable::run)
+                .setTicker(time::get);
+    }
+}
@@ -0,0 +1,294 @@
+package io.smallrye.dux.spi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import io.smallrye.dux.ServiceInstance;
+
+public class InstanceStateTableTest {
+
+    private final ServiceInstance first = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8080");
+    private final ServiceInstance second = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8081");
+    private final ServiceInstance third = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8082");
+
+    @Test
+    void shouldAssignDenseSlots() {
+        InstanceStateTable table = new InstanceStateTable();
+        InstanceStateTable.Snapshot snapshot = table.update(List.of(first, second));
+
+        assertThat(snapshot.size()).isEqualTo(2);
+        assertThat(snapshot.slotOf(first)).isEqualTo(0);
+        assertThat(snapshot.slotOf(second)).isEqualTo(1);
+        assertThat(snapshot.slotOf(third)).isEqualTo(InstanceStateTable.NO_SLOT);
+        assertThat(snapshot.instance(1)).isSameAs(second);
+    }
+
+    @Test
+    void shouldReuseSnapshotForSameInstances() {
+        InstanceStateTable table = new InstanceStateTable();
+        InstanceStateTable.Snapshot snapshot = table.update(List.of(first, second));
+
+        assertThat(table.update(List.of(first, second))).isSameAs(snapshot);
+        assertThat(table.update(List.of(second, first))).isNotSameAs(snapshot);
+    }
+
+    @Test
+    void shouldRemapCountersOnSnapshotChange() {
+        InstanceStateTable table = new InstanceStateTable();
+        InstanceStateTable.Counter counter = table.newCounter();
+
+        InstanceStateTable.Snapshot snapshot = table.update(List.of(first, second));
+        counter.addAndGet(snapshot, snapshot.slotOf(first), 5);
+        counter.addAndGet(snapshot, snapshot.slotOf(second), 7);
+        InstanceStateTable.Snapshot previous = snapshot;
+
+        snapshot = table.update(List.of(third, second));
+
+        assertThat(counter.get(snapshot, snapshot.slotOf(second))).isEqualTo(7);
+        assertThat(counter.get(snapshot, snapshot.slotOf(third))).isZero();
+
+        // a slot of the previous snapshot reaches the same instance in the current one
+        assertThat(counter.addAndGet(previous, previous.slotOf(second), 1)).isEqualTo(8);
+        assertThat(counter.get(snapshot, snapshot.slotOf(second))).isEqualTo(8);
+        assertThat(counter.addAndGet(previous, previous.slotOf(first), 1)).isZero();
+        assertThat(counter.get(snapshot, snapshot.slotOf(third))).isZero();
+    }
+
+    @Test
+    void shouldKeepWorkingAfterRejectedUpdate() {
+        InstanceStateTable table = new InstanceStateTable();
+        InstanceStateTable.Counter counter = table.newCounter();
+        AtomicBoolean failing = new AtomicBoolean();
+        table.newCounter(() -> {
+            if (failing.get()) {
+                throw new IllegalStateException("failing initial value");
+            }
+            return 1;
+        });
+        InstanceStateTable.Snapshot snapshot = table.update(List.of(first));
+        counter.set(snapshot, 0, 5);
+
+        ServiceInstance withoutId = new ServiceInstance(null, "http://localhost:9090");
+        assertThatThrownBy(() -> table.update(List.of(first, withoutId)))
+                .isInstanceOf(IllegalArgumentException.class);
+        failing.set(true);
+        assertThatThrownBy(() -> table.update(List.of(first, second))).isInstanceOf(IllegalStateException.class);
+
+        // the values are still there, and writable, instead of waiting for a successor forever
+        assertThat(table.snapshot()).isSameAs(snapshot);
+        assertThat(counter.addAndGet(snapshot, 0, 1)).isEqualTo(6);
+        failing.set(false);
+        InstanceStateTable.Snapshot next = table.update(List.of(second, first));
+        assertThat(counter.get(snapshot, 0)).isEqualTo(6);
+        assertThat(counter.get(next, next.slotOf(first))).isEqualTo(6);
+    }
+
+    @Test
+    void shouldRejectValueMarkingMovedCounters() {
+        InstanceStateTable table = new InstanceStateTable();
+        InstanceStateTable.Counter counter = table.newCounter();
+        InstanceStateTable.Snapshot snapshot = table.update(List.of(first));
+
+        assertThatThrownBy(() -> counter.set(snapshot, 0, Long.MIN_VALUE))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> counter.compareAndSet(snapshot, 0, 0, Long.MIN_VALUE))
+                .isInstanceOf(IllegalArgumentException.class);
+        counter.set(snapshot, 0, Long.MIN_VALUE + 1);
+        assertThatThrownBy(() -> counter.decrementAndGet(snapshot, 0)).isInstanceOf(ArithmeticException.class);
+        assertThat(counter.get(snapshot, 0)).isEqualTo(Long.MIN_VALUE + 1);
+    }
+
+    @Test
+    void shouldNotBeChangedByCallerReusingItsList() {
+        InstanceStateTable table = new InstanceStateTable();
+        List<ServiceInstance> instances = new ArrayList<>(List.of(first, second));
+        InstanceStateTable.Snapshot snapshot = table.update(instances);
+
+        instances.set(0, third);
+
+        assertThat(snapshot.instances()).containsExactly(first, second);
+        assertThat(table.update(instances)).isNotSameAs(snapshot);
+    }
+
+    @Test
+    void shouldDrainRemovedInstanceWithRequestsInFlight() {
+        InstanceStateTable table = new InstanceStateTable();
+        InstanceStateTable.Counter counter = table.newCounter();
+        InstanceStateTable.Snapshot snapshot = table.update(List.of(first, second, third));
+        counter.set(snapshot, snapshot.slotOf(second), 3);
+        table.requestStarted(second);
+
+        snapshot = table.update(List.of(first, third));
+
+        // second is not active anymore, but keeps its slot and state
+        assertThat(snapshot.size()).isEqualTo(2);
+        assertThat(snapshot.instances()).containsExactly(first, third);
+        assertThat(snapshot.drainingCount()).isEqualTo(1);
+        int slot = snapshot.slotOf(second);
+        assertThat(snapshot.isDraining(slot)).isTrue();
+        assertThat(counter.get(snapshot, slot)).isEqualTo(3);
+        assertThat(table.inFlight(snapshot, slot)).isEqualTo(1);
+        assertThat(table.update(List.of(first, third))).isSameAs(snapshot);
+
+        table.requestFinished(second);
+
+        // dropped by the end of its last request, without waiting for the next update
+        assertThat(table.snapshot().drainingCount()).isZero();
+        assertThat(table.snapshot().slotOf(second)).isEqualTo(InstanceStateTable.NO_SLOT);
+        assertThat(table.snapshot().instances()).containsExactly(first, third);
+        assertThat(table.update(List.of(first, third))).isSameAs(table.snapshot());
+    }
+
+    @Test
+    void shouldRemoveIdleInstanceRightAway() {
+        InstanceStateTable table = new InstanceStateTable();
+        table.update(List.of(first, second));
+        table.requestStarted(first);
+
+        InstanceStateTable.Snapshot snapshot = table.update(List.of(first));
+
+        assertThat(snapshot.drainingCount()).isZero();
+        assertThat(snapshot.slotOf(second)).isEqualTo(InstanceStateTable.NO_SLOT);
+        assertThat(table.inFlight(snapshot, snapshot.slotOf(first))).isEqualTo(1);
+    }
+
+    @Test
+    void shouldStopDrainingAfterTimeout() {
+        AtomicLong time = new AtomicLong();
+        InstanceStateTable table = new InstanceStateTable(Duration.ofSeconds(30), time::get);
+        table.update(List.of(first, second));
+        table.requestStarted(second);
+        table.update(List.of(first));
+        assertThat(table.drainingCount()).isEqualTo(1);
+
+        time.set(Duration.ofSeconds(29).toNanos());
+        table.update(List.of(first));
+        assertThat(table.drainingCount()).isEqualTo(1);
+
+        time.set(Duration.ofSeconds(30).toNanos());
+        table.update(List.of(first));
+        assertThat(table.drainingCount()).isZero();
+    }
+
+    @Test
+    void shouldStopDrainingAfterTimeoutWhenAnotherRequestFinishes() {
+        AtomicLong time = new AtomicLong();
+        InstanceStateTable table = new InstanceStateTable(Duration.ofSeconds(30), time::get);
+        table.update(List.of(first, second));
+        table.requestStarted(first);
+        table.requestStarted(first);
+        table.requestStarted(second);
+        table.update(List.of(first));
+
+        table.requestFinished(first);
+        assertThat(table.drainingCount()).isEqualTo(1);
+
+        time.set(Duration.ofSeconds(30).toNanos());
+        table.requestFinished(first);
+        assertThat(table.drainingCount()).isZero();
+        assertThat(table.inFlight(table.snapshot(), table.snapshot().slotOf(first))).isZero();
+    }
+
+    @Test
+    void shouldReactivateDrainingInstance() {
+        InstanceStateTable table = new InstanceStateTable();
+        table.update(List.of(first, second));
+        table.requestStarted(second);
+        table.update(List.of(first));
+
+        InstanceStateTable.Snapshot snapshot = table.update(List.of(first, second));
+
+        assertThat(snapshot.drainingCount()).isZero();
+        assertThat(snapshot.isDraining(snapshot.slotOf(second))).isFalse();
+        assertThat(table.inFlight(snapshot, snapshot.slotOf(second))).isEqualTo(1);
+    }
+
+    @Test
+    void shouldKeepExactCountsWhileInstancesChange() throws InterruptedException {
+        InstanceStateTable table = new InstanceStateTable();
+        InstanceStateTable.Counter counter = table.newCounter();
+        List<ServiceInstance> stable = instances(8, 9000);
+        List<ServiceInstance> churning = instances(8, 9100);
+        List<ServiceInstance> all = new ArrayList<>(stable);
+        all.addAll(churning);
+        table.update(all);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicLongArray expected = new AtomicLongArray(stable.size());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    while (running.get()) {
+                        ServiceInstance instance = all.get(random.nextInt(all.size()));
+                        table.requestStarted(instance);
+                        InstanceStateTable.Snapshot snapshot = table.snapshot();
+                        int index = stable.indexOf(instance);
+                        if (index >= 0) {
+                            counter.incrementAndGet(snapshot, snapshot.slotOf(instance));
+                            expected.incrementAndGet(index);
+                        }
+                        Thread.yield();
+                        table.requestFinished(instance);
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            try {
+                while (running.get()) {
+                    List<ServiceInstance> instances = new ArrayList<>(stable);
+                    for (ServiceInstance instance : churning) {
+                        if (random.nextBoolean()) {
+                            instances.add(instance);
+                        }
+                    }
+                    Collections.shuffle(instances, random);
+                    table.update(instances);
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        }));
+        threads.forEach(Thread::start);
+        Thread.sleep(500);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(failure.get()).isNull();
+        InstanceStateTable.Snapshot snapshot = table.update(all);
+        for (ServiceInstance instance : all) {
+            assertThat(table.inFlight(snapshot, snapshot.slotOf(instance))).as(instance.getValue()).isZero();
+        }
+        for (int i = 0; i < stable.size(); i++) {
+            assertThat(counter.get(snapshot, snapshot.slotOf(stable.get(i)))).isEqualTo(expected.get(i));
+        }
+    }
+
+    private static List<ServiceInstance> instances(int count, int firstPort) {
+        List<ServiceInstance> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            result.add(new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:" + (firstPort + i)));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,61 @@
+package io.smallrye.dux.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.smallrye.dux.Dux;
+import io.smallrye.dux.DuxTestUtils;
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.blocking.BlockingDux;
+import io.smallrye.dux.test.TestConfigProvider;
+
+/**
+ * Throughput of selecting an instance in blocking code: {@link BlockingDux} vs awaiting the load balancer's Uni.
+ * Run with e.g. {@code -t 8} to see the behavior under contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockingSelectionBenchmark {
+
+    private static final String SERVICE = "benchmarked-service";
+
+    private BlockingDux blockingDux;
+    private LoadBalancer loadBalancer;
+
+    @Setup
+    public void setUp() {
+        TestConfigProvider.clear();
+        TestConfigProvider.addServiceConfig(SERVICE, "round-robin", "static", null,
+                Map.of("1", "http://localhost:8080", "2", "http://localhost:8081", "3", "http://localhost:8082"));
+
+        Dux dux = DuxTestUtils.getNewDuxInstance();
+        blockingDux = new BlockingDux(dux);
+        loadBalancer = dux.getLoadBalancer(SERVICE);
+    }
+
+    @Benchmark
+    public ServiceInstance blockingDux() {
+        return blockingDux.select(SERVICE);
+    }
+
+    @Benchmark
+    public ServiceInstance awaitIndefinitely() {
+        return loadBalancer.selectServiceInstance().await().indefinitely();
+    }
+}
@@ -0,0 +1,117 @@
+package io.smallrye.dux.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.spi.ConfigBuilder;
+import org.eclipse.microprofile.config.spi.ConfigProviderResolver;
+import org.eclipse.microprofile.config.spi.ConfigSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.smallrye.config.ConfigValuePropertiesConfigSource;
+import io.smallrye.config.SmallRyeConfigBuilder;
+import io.smallrye.dux.config.ServiceConfig;
+import io.smallrye.dux.microprofile.MicroProfileConfigProvider;
+
+/**
+ * Startup cost of reading Dux configuration from a large MicroProfile Config.
+ * The properties are spread over several config sources, a small part of them is Dux configuration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MicroProfileConfigProviderBenchmark {
+
+    private static final int SOURCES = 5;
+
+    @Param("50000")
+    int properties;
+
+    @Param("1000")
+    int services;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Map<String, String>> sources = new ArrayList<>();
+        for (int i = 0; i < SOURCES; i++) {
+            sources.add(new HashMap<>());
+        }
+
+        int count = 0;
+        for (int service = 0; service < services; service++) {
+            Map<String, String> source = sources.get(service % SOURCES);
+            String prefix = "dux.service-" + service;
+            source.put(prefix + ".service-discovery", "static");
+            source.put(prefix + ".service-discovery.1", "http://localhost:" + (8000 + service));
+            source.put(prefix + ".service-discovery.2", "http://localhost:" + (9000 + service));
+            source.put(prefix + ".load-balancer", "round-robin");
+            count += 4;
+        }
+        for (int i = count; i < properties; i++) {
+            sources.get(i % SOURCES).put("app.module-" + (i % 100) + ".property-" + i, "value-" + i);
+        }
+
+        ConfigSource[] configSources = new ConfigSource[SOURCES];
+        for (int i = 0; i < SOURCES; i++) {
+            configSources[i] = new ConfigValuePropertiesConfigSource(sources.get(i), "source-" + i, 100 + i);
+        }
+        Config config = new SmallRyeConfigBuilder().withSources(configSources).build();
+        ConfigProviderResolver.setInstance(new FixedConfigProviderResolver(config));
+    }
+
+    @Benchmark
+    public List<ServiceConfig> parse() {
+        return new MicroProfileConfigProvider().getDuxConfigs();
+    }
+
+    private static class FixedConfigProviderResolver extends ConfigProviderResolver {
+        private final Config config;
+
+        private FixedConfigProviderResolver(Config config) {
+            this.config = config;
+        }
+
+        @Override
+        public Config getConfig() {
+            return config;
+        }
+
+        @Override
+        public Config getConfig(ClassLoader loader) {
+            return config;
+        }
+
+        @Override
+        public ConfigBuilder getBuilder() {
+            throw new IllegalStateException("method not supported");
+        }
+
+        @Override
+        public void registerConfig(Config config, ClassLoader classLoader) {
+            throw new IllegalStateException("method not supported");
+        }
+
+        @Override
+        public void releaseConfig(Config config) {
+            throw new IllegalStateException("method not supported");
+        }
+    }
+}
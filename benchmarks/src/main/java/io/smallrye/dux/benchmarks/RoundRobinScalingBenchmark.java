@@ -0,0 +1,86 @@
+package io.smallrye.dux.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.loadbalancer.roundrobin.RoundRobinLoadBalancer;
+import io.smallrye.dux.servicediscovery.staticlist.StaticListServiceDiscovery;
+import io.smallrye.dux.spi.ServiceInstanceIds;
+
+/**
+ * Throughput of {@link RoundRobinLoadBalancer} selections with a growing number of threads,
+ * with a single shared index ({@code stripes=1}) and with a striped one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundRobinScalingBenchmark {
+
+    @Param({ "1", "64" })
+    int stripes;
+
+    private LoadBalancer loadBalancer;
+
+    @Setup
+    public void setUp() {
+        StaticListServiceDiscovery serviceDiscovery = new StaticListServiceDiscovery(List.of(
+                new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8080"),
+                new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8081"),
+                new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8082")));
+        loadBalancer = new RoundRobinLoadBalancer(serviceDiscovery, stripes);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public ServiceInstance threads01() {
+        return loadBalancer.selectServiceInstanceIfAvailable();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public ServiceInstance threads02() {
+        return loadBalancer.selectServiceInstanceIfAvailable();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ServiceInstance threads04() {
+        return loadBalancer.selectServiceInstanceIfAvailable();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public ServiceInstance threads08() {
+        return loadBalancer.selectServiceInstanceIfAvailable();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public ServiceInstance threads16() {
+        return loadBalancer.selectServiceInstanceIfAvailable();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public ServiceInstance threadsMax() {
+        return loadBalancer.selectServiceInstanceIfAvailable();
+    }
+}
@@ -0,0 +1,76 @@
+package io.smallrye.dux.blocking;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.LockSupport;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniSubscriber;
+import io.smallrye.mutiny.subscription.UniSubscription;
+
+/**
+ * Subscribes to a Uni and parks the calling thread until the Uni completes.
+ * If the Uni completes during the subscription, the thread is not parked at all.
+ */
+final class Awaiter<T> implements UniSubscriber<T> {
+
+    private final Thread waiter = Thread.currentThread();
+
+    private volatile boolean done;
+    private volatile UniSubscription subscription;
+    private T item;
+    private Throwable failure;
+
+    static <T> T await(Uni<T> uni) {
+        Awaiter<T> awaiter = new Awaiter<>();
+        uni.subscribe().withSubscriber(awaiter);
+        return awaiter.get();
+    }
+
+    @Override
+    public void onSubscribe(UniSubscription subscription) {
+        this.subscription = subscription;
+    }
+
+    @Override
+    public void onItem(T item) {
+        this.item = item;
+        complete();
+    }
+
+    @Override
+    public void onFailure(Throwable failure) {
+        this.failure = failure;
+        complete();
+    }
+
+    private void complete() {
+        // the volatile write publishes item and failure
+        done = true;
+        LockSupport.unpark(waiter);
+    }
+
+    private T get() {
+        while (!done) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                if (done) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                UniSubscription current = subscription;
+                if (current != null) {
+                    current.cancel();
+                }
+                Thread.currentThread().interrupt();
+                throw new CompletionException(new InterruptedException());
+            }
+        }
+        if (failure != null) {
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            throw new CompletionException(failure);
+        }
+        return item;
+    }
+}
@@ -0,0 +1,61 @@
+package io.smallrye.dux.blocking;
+
+import java.util.List;
+
+import io.smallrye.dux.Dux;
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.ServiceInstance;
+
+/**
+ * Blocking facade over {@link Dux}, meant for code running in blocking style, e.g. on virtual threads.
+ * <p>
+ * If the load balancer or service discovery already has the data, it is returned without subscribing to
+ * the reactive pipeline. Otherwise, the calling thread is parked until the result is available.
+ * Parking uses {@link java.util.concurrent.locks.LockSupport} and never holds a monitor,
+ * so it does not pin the carrier of a virtual thread.
+ */
+public final class BlockingDux {
+
+    private final Dux dux;
+
+    public BlockingDux(Dux dux) {
+        this.dux = dux;
+    }
+
+    /**
+     * Selects a service instance with the load balancer of the service
+     *
+     * @param serviceName name of the service
+     * @return the selected instance or null if no instance is available
+     */
+    public ServiceInstance select(String serviceName) {
+        LoadBalancer loadBalancer = dux.getLoadBalancer(serviceName);
+        ServiceInstance instance = loadBalancer.selectServiceInstanceIfAvailable();
+        if (instance != null) {
+            return instance;
+        }
+        return Awaiter.await(loadBalancer.selectServiceInstance());
+    }
+
+    /**
+     * Retrieves instances of the service with its service discovery
+     *
+     * @param serviceName name of the service
+     * @return service instances
+     */
+    public List<ServiceInstance> getServiceInstances(String serviceName) {
+        ServiceDiscovery serviceDiscovery = dux.getServiceDiscovery(serviceName);
+        List<ServiceInstance> instances = serviceDiscovery.getServiceInstancesIfAvailable();
+        if (instances != null) {
+            return instances;
+        }
+        return Awaiter.await(serviceDiscovery.getServiceInstances().collect().asList());
+    }
+
+    private static final BlockingDux blockingDux = new BlockingDux(Dux.getInstance());
+
+    public static BlockingDux getInstance() {
+        return blockingDux;
+    }
+}
@@ -0,0 +1,63 @@
+package io.smallrye.dux.blocking;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.smallrye.dux.DuxTestUtils;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.test.TestConfigProvider;
+import io.smallrye.mutiny.Uni;
+
+public class BlockingDuxTest {
+
+    public static final String FST_SRVC_1 = "http://localhost:8080";
+    public static final String FST_SRVC_2 = "http://localhost:8081";
+
+    private BlockingDux blockingDux;
+
+    @BeforeEach
+    void setUp() {
+        TestConfigProvider.clear();
+        TestConfigProvider.addServiceConfig("first-service", "round-robin", "static",
+                null,
+                Map.of("1", FST_SRVC_1, "2", FST_SRVC_2));
+
+        blockingDux = new BlockingDux(DuxTestUtils.getNewDuxInstance());
+    }
+
+    @Test
+    void shouldSelectServiceInstance() {
+        assertThat(blockingDux.select("first-service").getValue()).isEqualTo(FST_SRVC_1);
+        assertThat(blockingDux.select("first-service").getValue()).isEqualTo(FST_SRVC_2);
+        assertThat(blockingDux.select("first-service").getValue()).isEqualTo(FST_SRVC_1);
+    }
+
+    @Test
+    void shouldGetServiceInstances() {
+        assertThat(blockingDux.getServiceInstances("first-service"))
+                .extracting(ServiceInstance::getValue)
+                .containsExactly(FST_SRVC_1, FST_SRVC_2);
+    }
+
+    @Test
+    void shouldWaitForAsynchronousResult() {
+        Uni<String> delayed = Uni.createFrom().item("result").onItem().delayIt().by(Duration.ofMillis(100));
+
+        assertThat(Awaiter.await(delayed)).isEqualTo("result");
+    }
+
+    @Test
+    void shouldPropagateFailure() {
+        Uni<String> failing = Uni.createFrom().item("result").onItem().delayIt().by(Duration.ofMillis(100))
+                .onItem().failWith(item -> new IllegalStateException("failed"));
+
+        assertThatThrownBy(() -> Awaiter.await(failing)).isInstanceOf(IllegalStateException.class)
+                .hasMessage("failed");
+    }
+}
@@ -0,0 +1,248 @@
+package io.smallrye.dux.loadbalancer.deadlineaware;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import io.smallrye.dux.LabelSelector;
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.LoadReport;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.spi.InstanceStateTable;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Load balancer decorator that, given the deadline of a call, avoids instances that usually don't answer in time.
+ * <p>
+ * The latencies passed to {@link #requestFinished(ServiceInstance, Throwable, long)} are recorded in per-instance
+ * histograms, see {@link LatencyHistograms}. For a selection with a deadline, the instance selected by
+ * the delegate is accepted if its latency percentile fits the deadline, or if it doesn't have enough
+ * recorded latencies yet. Otherwise the delegate is asked again, up to {@link #MAX_ATTEMPTS} times, and then
+ * the instance with the lowest percentile is used.
+ * <p>
+ * The percentiles are recomputed every {@code update-period} by the selecting thread that gets there first,
+ * and the histograms are halved every {@code half-life}, so that the percentiles reflect recent latencies.
+ * Selections without a deadline go to the delegate.
+ */
+public class DeadlineAwareLoadBalancer implements LoadBalancer {
+
+    static final int MAX_ATTEMPTS = 5;
+
+    private final LoadBalancer delegate;
+    private final ServiceDiscovery serviceDiscovery;
+    private final InstanceStateTable stateTable;
+    private final LatencyHistograms histograms;
+    private final long updatePeriodNanos;
+    private final long halfLifeNanos;
+    private final LongSupplier ticker;
+
+    private final AtomicLong nextUpdate;
+    // accessed only by the thread updating the histograms
+    private long nextDecay;
+
+    DeadlineAwareLoadBalancer(LoadBalancer delegate, ServiceDiscovery serviceDiscovery,
+            InstanceStateTable stateTable, double percentile, long minSamples, long updatePeriodNanos,
+            long halfLifeNanos, LongSupplier ticker) {
+        if (updatePeriodNanos <= 0 || halfLifeNanos <= 0) {
+            throw new IllegalArgumentException("Update period and half-life have to be positive, got "
+                    + updatePeriodNanos + "ns and " + halfLifeNanos + "ns");
+        }
+        this.delegate = delegate;
+        this.serviceDiscovery = serviceDiscovery;
+        this.stateTable = stateTable;
+        this.histograms = new LatencyHistograms(stateTable, percentile, minSamples);
+        this.updatePeriodNanos = updatePeriodNanos;
+        this.halfLifeNanos = halfLifeNanos;
+        this.ticker = ticker;
+
+        long now = ticker.getAsLong();
+        this.nextUpdate = new AtomicLong(now);
+        this.nextDecay = now + halfLifeNanos;
+    }
+
+    @Override
+    public Uni<ServiceInstance> selectServiceInstance() {
+        return delegate.selectServiceInstance();
+    }
+
+    @Override
+    public ServiceInstance selectServiceInstanceIfAvailable() {
+        return delegate.selectServiceInstanceIfAvailable();
+    }
+
+    /**
+     * Selects a matching instance by the delegate load balancer, or any matching instance if the delegate
+     * doesn't find one
+     */
+    @Override
+    public Uni<ServiceInstance> selectServiceInstance(LabelSelector selector) {
+        return delegate.selectServiceInstance(selector)
+                .onItem().ifNull().switchTo(() -> serviceDiscovery.getServiceInstances().collect()
+                        .asList()
+                        .map(instances -> stateTable.update(instances).anyMatching(selector, stateTable.random())));
+    }
+
+    @Override
+    public ServiceInstance selectServiceInstanceIfAvailable(LabelSelector selector) {
+        ServiceInstance selected = delegate.selectServiceInstanceIfAvailable(selector);
+        if (selected != null) {
+            return selected;
+        }
+        List<ServiceInstance> instances = serviceDiscovery.getServiceInstancesIfAvailable();
+        return instances == null ? null : stateTable.update(instances).anyMatching(selector, stateTable.random());
+    }
+
+    @Override
+    public Uni<ServiceInstance> selectServiceInstance(Duration deadline) {
+        ServiceInstance selected = selectServiceInstanceIfAvailable(deadline);
+        if (selected != null) {
+            return Uni.createFrom().item(selected);
+        }
+        long deadlineNanos = deadline.toNanos();
+        return serviceDiscovery.getServiceInstances().collect().asList()
+                .onItem().transformToUni(instances -> select(snapshot(instances), deadlineNanos, null, 1));
+    }
+
+    @Override
+    public ServiceInstance selectServiceInstanceIfAvailable(Duration deadline) {
+        List<ServiceInstance> instances = serviceDiscovery.getServiceInstancesIfAvailable();
+        if (instances == null) {
+            return null;
+        }
+        InstanceStateTable.Snapshot snapshot = snapshot(instances);
+        long deadlineNanos = deadline.toNanos();
+        ServiceInstance selected = delegate.selectServiceInstanceIfAvailable();
+        if (selected == null) {
+            return null;
+        }
+        for (int attempt = 1; attempt < MAX_ATTEMPTS && !fits(snapshot, selected, deadlineNanos); attempt++) {
+            ServiceInstance candidate = delegate.selectServiceInstanceIfAvailable();
+            if (candidate == null) {
+                break;
+            }
+            selected = candidate;
+        }
+        return choose(snapshot, selected, deadlineNanos);
+    }
+
+    @Override
+    public void requestStarted(ServiceInstance instance) {
+        delegate.requestStarted(instance);
+    }
+
+    @Override
+    public void requestFinished(ServiceInstance instance, Throwable failure) {
+        delegate.requestFinished(instance, failure);
+    }
+
+    @Override
+    public void requestFinished(ServiceInstance instance, Throwable failure, long latencyNanos) {
+        InstanceStateTable.Snapshot snapshot = snapshotOf(instance);
+        int slot = snapshot.slotOf(instance);
+        if (slot != InstanceStateTable.NO_SLOT) {
+            histograms.record(snapshot, slot, latencyNanos);
+        }
+        delegate.requestFinished(instance, failure, latencyNanos);
+    }
+
+    @Override
+    public void loadReported(ServiceInstance instance, LoadReport report) {
+        delegate.loadReported(instance, report);
+    }
+
+    /**
+     * @param instance service instance
+     * @return the latency percentile of the instance as of the last update, or null if it isn't known
+     */
+    Duration latencyPercentile(ServiceInstance instance) {
+        InstanceStateTable.Snapshot snapshot = stateTable.snapshot();
+        int slot = snapshot.slotOf(instance);
+        long nanos = slot == InstanceStateTable.NO_SLOT
+                ? LatencyHistograms.UNKNOWN
+                : histograms.percentileNanos(snapshot, slot);
+        return nanos == LatencyHistograms.UNKNOWN ? null : Duration.ofNanos(nanos);
+    }
+
+    /**
+     * Asks the delegate again while the selected instance doesn't fit the deadline, like
+     * {@link #selectServiceInstanceIfAvailable(Duration)}
+     */
+    private Uni<ServiceInstance> select(InstanceStateTable.Snapshot snapshot, long deadlineNanos,
+            ServiceInstance selected, int attempt) {
+        return delegate.selectServiceInstance().onItem().transformToUni(candidate -> {
+            if (candidate == null) {
+                return Uni.createFrom().item(selected == null ? null : choose(snapshot, selected, deadlineNanos));
+            }
+            if (attempt < MAX_ATTEMPTS && !fits(snapshot, candidate, deadlineNanos)) {
+                return select(snapshot, deadlineNanos, candidate, attempt + 1);
+            }
+            return Uni.createFrom().item(choose(snapshot, candidate, deadlineNanos));
+        });
+    }
+
+    /**
+     * @return the current snapshot, updated first if the instance is not a part of it
+     */
+    private InstanceStateTable.Snapshot snapshotOf(ServiceInstance instance) {
+        InstanceStateTable.Snapshot snapshot = stateTable.snapshot();
+        if (snapshot.slotOf(instance) == InstanceStateTable.NO_SLOT) {
+            // the instance may have been selected by someone else before the table caught up with discovery
+            List<ServiceInstance> instances = serviceDiscovery.getServiceInstancesIfAvailable();
+            if (instances != null) {
+                snapshot = stateTable.update(instances);
+            }
+        }
+        return snapshot;
+    }
+
+    private InstanceStateTable.Snapshot snapshot(List<ServiceInstance> instances) {
+        InstanceStateTable.Snapshot snapshot = stateTable.update(instances);
+        long now = ticker.getAsLong();
+        long next = nextUpdate.get();
+        if (now - next >= 0 && nextUpdate.compareAndSet(next, now + updatePeriodNanos)) {
+            int halvings = 0;
+            if (now - nextDecay >= 0) {
+                // once per elapsed half-life, the updates may be far apart when the load balancer is idle
+                long elapsed = (now - nextDecay) / halfLifeNanos + 1;
+                halvings = (int) Math.min(elapsed, LatencyHistograms.MAX_HALVINGS);
+                nextDecay += elapsed * halfLifeNanos;
+            }
+            histograms.update(snapshot, halvings);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the candidate if it fits the deadline, otherwise the active instance with the lowest percentile
+     */
+    private ServiceInstance choose(InstanceStateTable.Snapshot snapshot, ServiceInstance candidate,
+            long deadlineNanos) {
+        if (fits(snapshot, candidate, deadlineNanos)) {
+            return candidate;
+        }
+        int best = InstanceStateTable.NO_SLOT;
+        long bestLatency = Long.MAX_VALUE;
+        for (int slot = 0; slot < snapshot.size(); slot++) {
+            long latency = histograms.percentileNanos(snapshot, slot);
+            if (latency == LatencyHistograms.UNKNOWN) {
+                latency = 0;
+            }
+            if (latency < bestLatency) {
+                best = slot;
+                bestLatency = latency;
+            }
+        }
+        return best == InstanceStateTable.NO_SLOT ? candidate : snapshot.instance(best);
+    }
+
+    private boolean fits(InstanceStateTable.Snapshot snapshot, ServiceInstance instance, long deadlineNanos) {
+        int slot = snapshot.slotOf(instance);
+        if (slot == InstanceStateTable.NO_SLOT) {
+            return true;
+        }
+        long latency = histograms.percentileNanos(snapshot, slot);
+        return latency == LatencyHistograms.UNKNOWN || latency <= deadlineNanos;
+    }
+}
@@ -0,0 +1,49 @@
+package io.smallrye.dux.loadbalancer.deadlineaware;
+
+import java.time.Duration;
+import java.util.Map;
+
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.config.LoadBalancerConfig;
+import io.smallrye.dux.spi.InstanceStateTable;
+import io.smallrye.dux.spi.LoadBalancerProvider;
+import io.smallrye.dux.spi.Providers;
+
+public class DeadlineAwareLoadBalancerProvider implements LoadBalancerProvider {
+
+    public static final String PERCENTILE = "percentile";
+    public static final String MIN_SAMPLES = "min-samples";
+    public static final String UPDATE_PERIOD = "update-period";
+    public static final String HALF_LIFE = "half-life";
+
+    @Override
+    public LoadBalancer createLoadBalancer(LoadBalancerConfig config, ServiceDiscovery serviceDiscovery) {
+        return createLoadBalancer(config, serviceDiscovery, new InstanceStateTable());
+    }
+
+    @Override
+    public LoadBalancer createLoadBalancer(LoadBalancerConfig config, ServiceDiscovery serviceDiscovery,
+            InstanceStateTable stateTable) {
+        // dux.<service-name>.load-balancer=deadline-aware
+        // dux.<service-name>.load-balancer.percentile=0.99
+        // dux.<service-name>.load-balancer.min-samples=20 (latencies recorded before the percentile is trusted)
+        // dux.<service-name>.load-balancer.update-period=100 (ms)
+        // dux.<service-name>.load-balancer.half-life=30 (seconds)
+        // dux.<service-name>.load-balancer.delegate=round-robin
+        Map<String, String> parameters = config.parameters();
+        double percentile = Double.parseDouble(parameters.getOrDefault(PERCENTILE, "0.99"));
+        long minSamples = Long.parseLong(parameters.getOrDefault(MIN_SAMPLES, "20"));
+        Duration updatePeriod = Duration.ofMillis(Long.parseLong(parameters.getOrDefault(UPDATE_PERIOD, "100")));
+        Duration halfLife = Duration.ofSeconds(Long.parseLong(parameters.getOrDefault(HALF_LIFE, "30")));
+
+        LoadBalancer delegate = Providers.createDelegateLoadBalancer(config, serviceDiscovery, stateTable);
+        return new DeadlineAwareLoadBalancer(delegate, serviceDiscovery, stateTable, percentile, minSamples,
+                updatePeriod.toNanos(), halfLife.toNanos(), stateTable.ticker());
+    }
+
+    @Override
+    public String type() {
+        return "deadline-aware";
+    }
+}
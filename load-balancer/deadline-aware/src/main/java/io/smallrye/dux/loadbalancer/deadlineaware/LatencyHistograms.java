@@ -0,0 +1,119 @@
+package io.smallrye.dux.loadbalancer.deadlineaware;
+
+import io.smallrye.dux.spi.InstanceStateTable;
+
+/**
+ * Latency histograms of the instances, kept in a wide counter of the instance state table.
+ * <p>
+ * Latencies are recorded in microseconds, in logarithmic buckets: every power of two is split into
+ * {@link #SUB_BUCKETS} buckets, which bounds the relative error to 25%, up to {@code 2^26} microseconds, about
+ * 67 seconds, longer latencies go to the last bucket. Recording is two index computations and an atomic
+ * increment.
+ * <p>
+ * The percentile of every instance is computed by {@link #update(InstanceStateTable.Snapshot, int)} and cached
+ * next to its buckets, so that reading it is a single counter read. The update can also halve all the buckets,
+ * once per elapsed half-life, to decay the histograms over time.
+ */
+final class LatencyHistograms {
+
+    static final int SUB_BUCKET_BITS = 2;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int MAX_EXPONENT = 25;
+    static final int BUCKETS = MAX_EXPONENT * SUB_BUCKETS;
+    static final long MAX_MICROS = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    static final long UNKNOWN = -1;
+
+    // halving more empties any bucket
+    static final int MAX_HALVINGS = Long.SIZE - 1;
+
+    // index of the cached percentile, in microseconds plus one, 0 if unknown
+    private static final int PERCENTILE = BUCKETS;
+
+    private final InstanceStateTable.Counter buckets;
+    private final double percentile;
+    private final long minSamples;
+
+    /**
+     * @param stateTable state table of the service
+     * @param percentile the percentile to compute, e.g. 0.99
+     * @param minSamples number of recorded latencies below which the percentile of an instance is unknown
+     */
+    LatencyHistograms(InstanceStateTable stateTable, double percentile, long minSamples) {
+        if (percentile <= 0 || percentile > 1) {
+            throw new IllegalArgumentException("Latency percentile has to be in (0, 1], got " + percentile);
+        }
+        this.buckets = stateTable.newCounter(BUCKETS + 1);
+        this.percentile = percentile;
+        this.minSamples = Math.max(minSamples, 1);
+    }
+
+    void record(InstanceStateTable.Snapshot snapshot, int slot, long latencyNanos) {
+        buckets.addAndGet(snapshot, slot, bucket(latencyNanos / 1000), 1);
+    }
+
+    /**
+     * @param snapshot snapshot the slot comes from
+     * @param slot slot of the instance
+     * @return the percentile latency of the instance as of the last update, in nanoseconds, or {@link #UNKNOWN}
+     */
+    long percentileNanos(InstanceStateTable.Snapshot snapshot, int slot) {
+        long micros = buckets.get(snapshot, slot, PERCENTILE) - 1;
+        return micros < 0 ? UNKNOWN : micros * 1000;
+    }
+
+    /**
+     * Recomputes the percentiles of the instances
+     *
+     * @param snapshot current snapshot
+     * @param halvings number of times to halve the buckets first, up to {@link #MAX_HALVINGS}
+     */
+    void update(InstanceStateTable.Snapshot snapshot, int halvings) {
+        for (int slot = 0; slot < snapshot.slotCount(); slot++) {
+            long total = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                long count = buckets.get(snapshot, slot, bucket);
+                if (halvings > 0 && count > 0) {
+                    // concurrent increments are kept, only what was read is decayed
+                    count = buckets.addAndGet(snapshot, slot, bucket, -(count - (count >> halvings)));
+                }
+                total += count;
+            }
+            buckets.set(snapshot, slot, PERCENTILE, total < minSamples ? 0 : percentileMicros(snapshot, slot, total) + 1);
+        }
+    }
+
+    private long percentileMicros(InstanceStateTable.Snapshot snapshot, int slot, long total) {
+        long threshold = (long) Math.ceil(total * percentile);
+        long cumulative = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            cumulative += buckets.get(snapshot, slot, bucket);
+            if (cumulative >= threshold) {
+                return upperBound(bucket);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    static int bucket(long micros) {
+        long value = Math.min(Math.max(micros, 0), MAX_MICROS);
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the exclusive upper bound of the bucket, in microseconds
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+}
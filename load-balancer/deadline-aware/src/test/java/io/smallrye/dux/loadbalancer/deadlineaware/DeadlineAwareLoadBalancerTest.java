@@ -0,0 +1,190 @@
+package io.smallrye.dux.loadbalancer.deadlineaware;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.loadbalancer.roundrobin.RoundRobinLoadBalancer;
+import io.smallrye.dux.servicediscovery.staticlist.StaticListServiceDiscovery;
+import io.smallrye.dux.spi.InstanceStateTable;
+import io.smallrye.dux.spi.ServiceInstanceIds;
+
+public class DeadlineAwareLoadBalancerTest {
+
+    private static final long UPDATE_PERIOD = Duration.ofMillis(100).toNanos();
+    private static final long HALF_LIFE = Duration.ofSeconds(30).toNanos();
+
+    private final ServiceInstance slow = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8080");
+    private final ServiceInstance fast1 = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8081");
+    private final ServiceInstance fast2 = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8082");
+
+    private final ServiceDiscovery serviceDiscovery = new StaticListServiceDiscovery(List.of(slow, fast1, fast2));
+    private final InstanceStateTable stateTable = new InstanceStateTable();
+    private final AtomicLong time = new AtomicLong();
+    private final DeadlineAwareLoadBalancer loadBalancer = new DeadlineAwareLoadBalancer(
+            new RoundRobinLoadBalancer(serviceDiscovery, 1, stateTable), serviceDiscovery, stateTable, 0.99, 20,
+            UPDATE_PERIOD, HALF_LIFE, time::get);
+
+    @Test
+    void shouldAvoidInstancesTooSlowForTheDeadline() {
+        recordLatencies();
+
+        Map<String, Integer> selections = select(Duration.ofMillis(20), 100);
+
+        assertThat(selections).doesNotContainKey(slow.getValue());
+        assertThat(selections.get(fast1.getValue())).isBetween(40, 60);
+        assertThat(loadBalancer.latencyPercentile(slow)).isBetween(Duration.ofMillis(50), Duration.ofMillis(63));
+    }
+
+    @Test
+    void shouldUseAllInstancesWhenTheyFitTheDeadline() {
+        recordLatencies();
+
+        Map<String, Integer> selections = select(Duration.ofSeconds(1), 300);
+
+        assertThat(selections.values()).containsOnly(100);
+        // no deadline, no filtering
+        assertThat(loadBalancer.selectServiceInstanceIfAvailable()).isNotNull();
+    }
+
+    @Test
+    void shouldFallBackToTheFastestInstance() {
+        recordLatencies();
+        for (int i = 0; i < 100; i++) {
+            loadBalancer.requestFinished(fast2, null, Duration.ofMillis(7).toNanos());
+        }
+        time.addAndGet(UPDATE_PERIOD);
+
+        Map<String, Integer> selections = select(Duration.ofMillis(1), 30);
+
+        assertThat(selections).containsOnlyKeys(fast1.getValue());
+    }
+
+    @Test
+    void shouldRetrySlowInstancesWhenSelectingReactively() {
+        // a delegate that can only select through the reactive pipeline
+        RoundRobinLoadBalancer roundRobin = new RoundRobinLoadBalancer(serviceDiscovery, 1, stateTable);
+        LoadBalancer reactiveOnly = roundRobin::selectServiceInstance;
+        DeadlineAwareLoadBalancer loadBalancer = new DeadlineAwareLoadBalancer(reactiveOnly, serviceDiscovery,
+                stateTable, 0.99, 20, UPDATE_PERIOD, HALF_LIFE, time::get);
+        for (int i = 0; i < 30; i++) {
+            loadBalancer.requestFinished(slow, null, Duration.ofMillis(50).toNanos());
+            loadBalancer.requestFinished(fast1, null, Duration.ofMillis(5).toNanos());
+            // the fastest instance, that would get the selections of the slow one without a retry
+            loadBalancer.requestFinished(fast2, null, Duration.ofMillis(2).toNanos());
+        }
+        time.addAndGet(UPDATE_PERIOD);
+
+        Map<String, Integer> selections = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            ServiceInstance selected = loadBalancer.selectServiceInstance(Duration.ofMillis(20))
+                    .await().atMost(Duration.ofSeconds(5));
+            selections.merge(selected.getValue(), 1, Integer::sum);
+        }
+
+        // the slow instance is skipped for the next one, not replaced by the fastest one
+        assertThat(selections).doesNotContainKey(slow.getValue());
+        assertThat(selections.get(fast1.getValue())).isBetween(40, 60);
+    }
+
+    @Test
+    void shouldForgetOldLatencies() {
+        recordLatencies();
+        select(Duration.ofMillis(20), 1);
+        assertThat(loadBalancer.latencyPercentile(slow)).isNotNull();
+
+        // 30 samples are halved below the 20 required
+        time.addAndGet(HALF_LIFE);
+        select(Duration.ofMillis(20), 1);
+
+        assertThat(loadBalancer.latencyPercentile(slow)).isNull();
+        assertThat(select(Duration.ofMillis(20), 300).values()).containsOnly(100);
+    }
+
+    @Test
+    void shouldHalveOncePerElapsedHalfLife() {
+        for (int i = 0; i < 160; i++) {
+            loadBalancer.requestFinished(slow, null, Duration.ofMillis(50).toNanos());
+        }
+        time.addAndGet(UPDATE_PERIOD);
+        select(Duration.ofMillis(20), 1);
+        assertThat(loadBalancer.latencyPercentile(slow)).isNotNull();
+
+        // idle for 4 half-lives, 160 samples are halved to 10
+        time.addAndGet(4 * HALF_LIFE + UPDATE_PERIOD);
+        select(Duration.ofMillis(20), 1);
+        assertThat(loadBalancer.latencyPercentile(slow)).isNull();
+
+        // the next half-life is not over yet, 10 + 10 samples are enough
+        for (int i = 0; i < 10; i++) {
+            loadBalancer.requestFinished(slow, null, Duration.ofMillis(50).toNanos());
+        }
+        time.addAndGet(UPDATE_PERIOD);
+        select(Duration.ofMillis(20), 1);
+        assertThat(loadBalancer.latencyPercentile(slow)).isNotNull();
+    }
+
+    @Test
+    void shouldRecordAndSelectWithoutAllocating() {
+        recordLatencies();
+        Duration deadline = Duration.ofMillis(20);
+        long latency = Duration.ofMillis(5).toNanos();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        int iterations = 100_000;
+        for (int warmup = 0; warmup < 3; warmup++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < iterations; i++) {
+                ServiceInstance selected = loadBalancer.selectServiceInstanceIfAvailable(deadline);
+                loadBalancer.requestFinished(selected, null, latency);
+            }
+            long allocated = threads.getThreadAllocatedBytes(thread) - before;
+            if (warmup == 2) {
+                // what remains is measurement noise, far below an object per iteration
+                assertThat(allocated).isLessThan(iterations);
+            }
+        }
+    }
+
+    @Test
+    void shouldBucketLatencies() {
+        for (long micros : new long[] { 0, 1, 3, 4, 5, 7, 8, 9, 100, 1023, 1024, 12_345, 1_000_000, 60_000_000 }) {
+            int bucket = LatencyHistograms.bucket(micros);
+            assertThat(LatencyHistograms.upperBound(bucket)).as("upper bound of %d", micros).isGreaterThan(micros)
+                    .isLessThanOrEqualTo(Math.max(micros + 1, micros * 5 / 4 + 1));
+            if (bucket > 0) {
+                assertThat(LatencyHistograms.upperBound(bucket - 1)).isLessThanOrEqualTo(micros);
+            }
+        }
+        assertThat(LatencyHistograms.bucket(Long.MAX_VALUE)).isEqualTo(LatencyHistograms.BUCKETS - 1);
+    }
+
+    private void recordLatencies() {
+        for (int i = 0; i < 30; i++) {
+            loadBalancer.requestFinished(slow, null, Duration.ofMillis(50).toNanos());
+            loadBalancer.requestFinished(fast1, null, Duration.ofMillis(5).toNanos());
+            loadBalancer.requestFinished(fast2, null, Duration.ofMillis(5).toNanos());
+        }
+        time.addAndGet(UPDATE_PERIOD);
+    }
+
+    private Map<String, Integer> select(Duration deadline, int count) {
+        Map<String, Integer> result = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            result.merge(loadBalancer.selectServiceInstanceIfAvailable(deadline).getValue(), 1, Integer::sum);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,307 @@
+package io.smallrye.dux.loadbalancer.priority;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.jboss.logging.Logger;
+
+import io.smallrye.dux.LabelSelector;
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.spi.InstanceStateTable;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Load balancer sending traffic to the highest priority tier of instances, and spilling it over to lower tiers
+ * when the higher ones can't take it.
+ * <p>
+ * The tier of an instance is read from its metadata, lower value meaning higher priority. An instance with
+ * an invalid priority is logged and put in the lowest priority tier.
+ * Like Envoy's priority levels, every tier gets {@code min(1, availability * overprovisioning factor)} of
+ * the traffic that is left by the higher tiers. Availability is the fraction of healthy instances in the tier,
+ * scaled down further when the tier has more requests in flight than {@code max-in-flight} per instance.
+ * An instance is unhealthy for the ejection time after {@code failure-threshold} consecutive failures.
+ * <p>
+ * Load and health are tracked with {@link #requestStarted(ServiceInstance)} and
+ * {@link #requestFinished(ServiceInstance, Throwable)}. The split into tiers is computed once per discovery snapshot,
+ * the share of traffic of every tier every {@code availability-update-period}, or as soon as an instance is ejected,
+ * so that a selection does not scan the instances of all the tiers.
+ */
+public class PriorityLoadBalancer implements LoadBalancer {
+
+    private static final Logger log = Logger.getLogger(PriorityLoadBalancer.class);
+
+    // consecutive multiples of the golden ratio spread evenly over [0, 1)
+    private static final double GOLDEN_RATIO_FRACTION = 0.6180339887498949;
+
+    private final ServiceDiscovery serviceDiscovery;
+    private final InstanceStateTable stateTable;
+    private final String priorityKey;
+    private final double overprovisioningFactor;
+    private final long maxInFlight;
+    private final long failureThreshold;
+    private final long ejectionNanos;
+    private final long availabilityUpdateNanos;
+    private final LongSupplier ticker;
+    private final long start;
+
+    private final InstanceStateTable.Counter consecutiveFailures;
+    private final InstanceStateTable.Counter ejectedUntil;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private volatile Tiers tiers;
+
+    PriorityLoadBalancer(ServiceDiscovery serviceDiscovery, InstanceStateTable stateTable, String priorityKey,
+            double overprovisioningFactor, long maxInFlight, long failureThreshold, long ejectionNanos,
+            long availabilityUpdateNanos, LongSupplier ticker) {
+        this.serviceDiscovery = serviceDiscovery;
+        this.stateTable = stateTable;
+        this.priorityKey = priorityKey;
+        this.overprovisioningFactor = overprovisioningFactor;
+        this.maxInFlight = maxInFlight;
+        this.failureThreshold = failureThreshold;
+        this.ejectionNanos = ejectionNanos;
+        this.availabilityUpdateNanos = availabilityUpdateNanos;
+        this.ticker = ticker;
+        this.start = ticker.getAsLong();
+
+        consecutiveFailures = stateTable.newCounter();
+        ejectedUntil = stateTable.newCounter();
+    }
+
+    @Override
+    public Uni<ServiceInstance> selectServiceInstance() {
+        return serviceDiscovery.getServiceInstances().collect()
+                .asList()
+                .map(this::select);
+    }
+
+    @Override
+    public ServiceInstance selectServiceInstanceIfAvailable() {
+        List<ServiceInstance> instances = serviceDiscovery.getServiceInstancesIfAvailable();
+        return instances == null ? null : select(instances);
+    }
+
+    /**
+     * Selects a matching instance with the strategy of the load balancer, or any matching instance if
+     * {@link #MAX_LABEL_SELECTIONS} selections don't match
+     */
+    @Override
+    public Uni<ServiceInstance> selectServiceInstance(LabelSelector selector) {
+        return serviceDiscovery.getServiceInstances().collect()
+                .asList()
+                .map(instances -> select(instances, selector));
+    }
+
+    @Override
+    public ServiceInstance selectServiceInstanceIfAvailable(LabelSelector selector) {
+        List<ServiceInstance> instances = serviceDiscovery.getServiceInstancesIfAvailable();
+        return instances == null ? null : select(instances, selector);
+    }
+
+    @Override
+    public void requestStarted(ServiceInstance instance) {
+        snapshotOf(instance);
+        stateTable.requestStarted(instance);
+    }
+
+    @Override
+    public void requestFinished(ServiceInstance instance, Throwable failure) {
+        InstanceStateTable.Snapshot snapshot = snapshotOf(instance);
+        int slot = snapshot.slotOf(instance);
+        if (slot == InstanceStateTable.NO_SLOT) {
+            return;
+        }
+        stateTable.requestFinished(instance);
+
+        if (failure == null) {
+            consecutiveFailures.set(snapshot, slot, 0);
+        } else if (consecutiveFailures.incrementAndGet(snapshot, slot) >= failureThreshold) {
+            consecutiveFailures.set(snapshot, slot, 0);
+            ejectedUntil.set(snapshot, slot, now() + ejectionNanos);
+            Tiers current = tiers;
+            if (current != null) {
+                // the loads of the tiers are recomputed with the instance ejected
+                current.loads = null;
+            }
+        }
+    }
+
+    /**
+     * @return the current snapshot, updated first if the instance is not a part of it
+     */
+    private InstanceStateTable.Snapshot snapshotOf(ServiceInstance instance) {
+        InstanceStateTable.Snapshot snapshot = stateTable.snapshot();
+        if (snapshot.slotOf(instance) == InstanceStateTable.NO_SLOT) {
+            // the instance may have been selected by someone else before the table caught up with discovery
+            List<ServiceInstance> instances = serviceDiscovery.getServiceInstancesIfAvailable();
+            if (instances != null) {
+                snapshot = stateTable.update(instances);
+            }
+        }
+        return snapshot;
+    }
+
+    private ServiceInstance select(List<ServiceInstance> instances) {
+        if (instances.isEmpty()) {
+            return null;
+        }
+        InstanceStateTable.Snapshot snapshot = stateTable.update(instances);
+        Tiers current = tiers(snapshot);
+        long now = now();
+        Loads loads = current.loads;
+        if (loads == null || now - loads.computedAt >= availabilityUpdateNanos) {
+            loads = computeLoads(current, now);
+            current.loads = loads;
+        }
+
+        int tierCount = current.slots.length;
+        int selectedTier = 0;
+        if (loads.total > 0) {
+            // the loads of the tiers are normalized if they don't sum up to 1
+            double point = (sequence.getAndIncrement() * GOLDEN_RATIO_FRACTION) % 1 * loads.total;
+            for (double sum = 0; selectedTier < tierCount - 1; selectedTier++) {
+                sum += loads.byTier[selectedTier];
+                if (point < sum) {
+                    break;
+                }
+            }
+        }
+        return snapshot.instance(selectInTier(current, selectedTier, now));
+    }
+
+    private ServiceInstance select(List<ServiceInstance> instances, LabelSelector selector) {
+        for (int attempt = 0; attempt < MAX_LABEL_SELECTIONS; attempt++) {
+            ServiceInstance selected = select(instances);
+            if (selected == null) {
+                break;
+            }
+            if (selector.matches(selected)) {
+                return selected;
+            }
+        }
+        // the selector matches few instances, if any
+        return stateTable.update(instances).anyMatching(selector, stateTable.random());
+    }
+
+    private Loads computeLoads(Tiers current, long now) {
+        int tierCount = current.slots.length;
+        double[] loads = new double[tierCount];
+        double remaining = 1;
+        for (int tier = 0; tier < tierCount && remaining > 0; tier++) {
+            loads[tier] = Math.min(remaining,
+                    availability(current.snapshot, current.slots[tier], now) * overprovisioningFactor);
+            remaining -= loads[tier];
+        }
+        return new Loads(loads, 1 - remaining, now);
+    }
+
+    private double availability(InstanceStateTable.Snapshot snapshot, int[] slots, long now) {
+        int healthy = 0;
+        long requests = 0;
+        for (int slot : slots) {
+            if (!isEjected(snapshot, slot, now)) {
+                healthy++;
+                requests += stateTable.inFlight(snapshot, slot);
+            }
+        }
+        double availability = (double) healthy / slots.length;
+        if (maxInFlight > 0 && requests > healthy * maxInFlight) {
+            availability = availability * healthy * maxInFlight / requests;
+        }
+        return availability;
+    }
+
+    private int selectInTier(Tiers current, int tier, long now) {
+        int[] slots = current.slots[tier];
+        int first = (current.counters[tier].getAndIncrement() & Integer.MAX_VALUE) % slots.length;
+        for (int i = 0; i < slots.length; i++) {
+            int slot = slots[(first + i) % slots.length];
+            if (!isEjected(current.snapshot, slot, now)) {
+                return slot;
+            }
+        }
+        // all the instances in the tier are unhealthy, and so are the other tiers
+        return slots[first];
+    }
+
+    private boolean isEjected(InstanceStateTable.Snapshot snapshot, int slot, long now) {
+        return ejectedUntil.get(snapshot, slot) > now;
+    }
+
+    private long now() {
+        return ticker.getAsLong() - start;
+    }
+
+    private Tiers tiers(InstanceStateTable.Snapshot snapshot) {
+        Tiers current = tiers;
+        if (current == null || current.snapshot != snapshot) {
+            current = new Tiers(snapshot, priorityKey);
+            tiers = current;
+        }
+        return current;
+    }
+
+    /**
+     * Slots of the instances of a snapshot, grouped by their priority, highest priority first
+     */
+    private static final class Tiers {
+        private final InstanceStateTable.Snapshot snapshot;
+        private final int[][] slots;
+        private final AtomicInteger[] counters;
+        /**
+         * Share of the traffic of every tier, null when it has to be recomputed
+         */
+        private volatile Loads loads;
+
+        private Tiers(InstanceStateTable.Snapshot snapshot, String priorityKey) {
+            this.snapshot = snapshot;
+            Map<Integer, List<Integer>> slotsByPriority = new TreeMap<>();
+            for (int slot = 0; slot < snapshot.size(); slot++) {
+                int priority = priority(snapshot.instance(slot), priorityKey);
+                slotsByPriority.computeIfAbsent(priority, ignored -> new ArrayList<>()).add(slot);
+            }
+
+            slots = new int[slotsByPriority.size()][];
+            counters = new AtomicInteger[slots.length];
+            int tier = 0;
+            for (List<Integer> tierSlots : slotsByPriority.values()) {
+                slots[tier] = tierSlots.stream().mapToInt(Integer::intValue).toArray();
+                counters[tier] = new AtomicInteger();
+                tier++;
+            }
+        }
+
+        private static int priority(ServiceInstance instance, String priorityKey) {
+            String priority = instance.getMetadata().get(priorityKey);
+            if (priority == null) {
+                return 0;
+            }
+            try {
+                return Integer.parseInt(priority.trim());
+            } catch (NumberFormatException e) {
+                log.warnf("Invalid priority '%s' of service instance %s, using the lowest priority", priority,
+                        instance.getValue());
+                return Integer.MAX_VALUE;
+            }
+        }
+    }
+
+    private static final class Loads {
+        private final double[] byTier;
+        private final double total;
+        private final long computedAt;
+
+        private Loads(double[] byTier, double total, long computedAt) {
+            this.byTier = byTier;
+            this.total = total;
+            this.computedAt = computedAt;
+        }
+    }
+}
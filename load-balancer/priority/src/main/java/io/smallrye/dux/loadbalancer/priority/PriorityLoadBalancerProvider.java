@@ -0,0 +1,51 @@
+package io.smallrye.dux.loadbalancer.priority;
+
+import java.time.Duration;
+import java.util.Map;
+
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.config.LoadBalancerConfig;
+import io.smallrye.dux.spi.InstanceStateTable;
+import io.smallrye.dux.spi.LoadBalancerProvider;
+
+public class PriorityLoadBalancerProvider implements LoadBalancerProvider {
+
+    public static final String PRIORITY_KEY = "priority-key";
+    public static final String OVERPROVISIONING_FACTOR = "overprovisioning-factor";
+    public static final String MAX_IN_FLIGHT = "max-in-flight";
+    public static final String FAILURE_THRESHOLD = "failure-threshold";
+    public static final String EJECTION_TIME = "ejection-time";
+    public static final String AVAILABILITY_UPDATE_PERIOD = "availability-update-period";
+
+    @Override
+    public LoadBalancer createLoadBalancer(LoadBalancerConfig config, ServiceDiscovery serviceDiscovery) {
+        return createLoadBalancer(config, serviceDiscovery, new InstanceStateTable());
+    }
+
+    @Override
+    public LoadBalancer createLoadBalancer(LoadBalancerConfig config, ServiceDiscovery serviceDiscovery,
+            InstanceStateTable stateTable) {
+        // dux.<service-name>.load-balancer=priority
+        // dux.<service-name>.load-balancer.priority-key=priority (metadata key holding the tier of an instance)
+        // dux.<service-name>.load-balancer.overprovisioning-factor=1.4
+        // dux.<service-name>.load-balancer.max-in-flight=0 (per instance, 0 means no limit)
+        // dux.<service-name>.load-balancer.failure-threshold=5
+        // dux.<service-name>.load-balancer.ejection-time=30 (seconds)
+        // dux.<service-name>.load-balancer.availability-update-period=100 (ms)
+        Map<String, String> parameters = config.parameters();
+        return new PriorityLoadBalancer(serviceDiscovery, stateTable,
+                parameters.getOrDefault(PRIORITY_KEY, "priority"),
+                Double.parseDouble(parameters.getOrDefault(OVERPROVISIONING_FACTOR, "1.4")),
+                Long.parseLong(parameters.getOrDefault(MAX_IN_FLIGHT, "0")),
+                Long.parseLong(parameters.getOrDefault(FAILURE_THRESHOLD, "5")),
+                Duration.ofSeconds(Long.parseLong(parameters.getOrDefault(EJECTION_TIME, "30"))).toNanos(),
+                Duration.ofMillis(Long.parseLong(parameters.getOrDefault(AVAILABILITY_UPDATE_PERIOD, "100"))).toNanos(),
+                stateTable.ticker());
+    }
+
+    @Override
+    public String type() {
+        return "priority";
+    }
+}
@@ -0,0 +1,152 @@
+package io.smallrye.dux.loadbalancer.priority;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.smallrye.dux.LabelSelector;
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.servicediscovery.staticlist.StaticListServiceDiscoveryProvider;
+import io.smallrye.dux.spi.SimpleServiceConfig;
+
+public class PriorityLoadBalancerTest {
+
+    public static final String PRIMARY_1 = "http://localhost:8080";
+    public static final String PRIMARY_2 = "http://localhost:8081";
+    public static final String SECONDARY = "http://localhost:9090";
+
+    private ServiceDiscovery serviceDiscovery;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("1", PRIMARY_1);
+        parameters.put("2", PRIMARY_2);
+        parameters.put("3", SECONDARY);
+        parameters.put("3.priority", "1");
+        serviceDiscovery = new StaticListServiceDiscoveryProvider().createServiceDiscovery(
+                new SimpleServiceConfig.SimpleServiceDiscoveryConfig("static", parameters));
+    }
+
+    @Test
+    void shouldSendEverythingToTopTier() {
+        LoadBalancer loadBalancer = createLoadBalancer(Map.of());
+
+        Map<String, Integer> selections = select(loadBalancer, 1000);
+
+        assertThat(selections).containsOnlyKeys(PRIMARY_1, PRIMARY_2);
+        assertThat(selections.get(PRIMARY_1)).isEqualTo(500);
+    }
+
+    @Test
+    void shouldSpillOverWhenTopTierIsUnhealthy() {
+        LoadBalancer loadBalancer = createLoadBalancer(Map.of("failure-threshold", "3"));
+        ServiceInstance primary = instance(PRIMARY_1);
+        for (int i = 0; i < 3; i++) {
+            loadBalancer.requestStarted(primary);
+            loadBalancer.requestFinished(primary, new RuntimeException("failure"));
+        }
+
+        Map<String, Integer> selections = select(loadBalancer, 1000);
+
+        // half of the top tier is healthy, with the default overprovisioning factor it takes 70% of the traffic
+        assertThat(selections).doesNotContainKey(PRIMARY_1);
+        assertThat(selections.get(PRIMARY_2)).isBetween(690, 710);
+        assertThat(selections.get(SECONDARY)).isBetween(290, 310);
+    }
+
+    @Test
+    void shouldSpillOverGraduallyWhenTopTierIsOverloaded() {
+        LoadBalancer loadBalancer = createLoadBalancer(Map.of("max-in-flight", "10"));
+        for (int i = 0; i < 15; i++) {
+            loadBalancer.requestStarted(instance(PRIMARY_1));
+            loadBalancer.requestStarted(instance(PRIMARY_2));
+        }
+
+        Map<String, Integer> selections = select(loadBalancer, 1000);
+
+        // 30 requests in flight for a capacity of 20, availability 2/3, times 1.4
+        assertThat(selections.get(SECONDARY)).isBetween(55, 80);
+    }
+
+    @Test
+    void shouldRecomputeLoadsPeriodicallyOrOnEjection() {
+        LoadBalancer loadBalancer = createLoadBalancer(Map.of("max-in-flight", "10", "failure-threshold", "1",
+                "availability-update-period", "3600000"));
+        select(loadBalancer, 1);
+        for (int i = 0; i < 15; i++) {
+            loadBalancer.requestStarted(instance(PRIMARY_1));
+            loadBalancer.requestStarted(instance(PRIMARY_2));
+        }
+
+        // the loads computed before the requests started are still used
+        assertThat(select(loadBalancer, 1000)).doesNotContainKey(SECONDARY);
+
+        ServiceInstance primary = instance(PRIMARY_1);
+        loadBalancer.requestStarted(primary);
+        loadBalancer.requestFinished(primary, new RuntimeException("failure"));
+
+        // an ejection is taken into account at once
+        assertThat(select(loadBalancer, 1000).get(SECONDARY)).isPositive();
+    }
+
+    @Test
+    void shouldPutInstancesWithInvalidPriorityInLowestTier() {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("1", PRIMARY_1);
+        parameters.put("2", SECONDARY);
+        parameters.put("2.priority", "high");
+        serviceDiscovery = new StaticListServiceDiscoveryProvider().createServiceDiscovery(
+                new SimpleServiceConfig.SimpleServiceDiscoveryConfig("static", parameters));
+        LoadBalancer loadBalancer = createLoadBalancer(Map.of());
+
+        assertThat(select(loadBalancer, 100)).containsOnlyKeys(PRIMARY_1);
+    }
+
+    @Test
+    void shouldSelectInstanceWithRareLabel() {
+        Map<String, String> parameters = new HashMap<>();
+        for (int i = 1; i <= 50; i++) {
+            parameters.put(String.valueOf(i), "http://localhost:" + (8080 + i));
+        }
+        parameters.put("50.version", "v2");
+        serviceDiscovery = new StaticListServiceDiscoveryProvider().createServiceDiscovery(
+                new SimpleServiceConfig.SimpleServiceDiscoveryConfig("static", parameters));
+        LoadBalancer loadBalancer = createLoadBalancer(Map.of());
+        LabelSelector canary = LabelSelector.parse("version=v2");
+
+        // far fewer than 1 in MAX_LABEL_SELECTIONS instances match, the fallback finds the canary every time
+        for (int i = 0; i < 100; i++) {
+            assertThat(loadBalancer.selectServiceInstanceIfAvailable(canary).getValue())
+                    .isEqualTo("http://localhost:8130");
+        }
+        assertThat(loadBalancer.selectServiceInstance(canary).await().indefinitely().getValue())
+                .isEqualTo("http://localhost:8130");
+        assertThat(loadBalancer.selectServiceInstanceIfAvailable(LabelSelector.parse("version=v3"))).isNull();
+    }
+
+    private LoadBalancer createLoadBalancer(Map<String, String> parameters) {
+        return new PriorityLoadBalancerProvider().createLoadBalancer(
+                new SimpleServiceConfig.SimpleLoadBalancerConfig("priority", parameters), serviceDiscovery);
+    }
+
+    private ServiceInstance instance(String address) {
+        return serviceDiscovery.getServiceInstancesIfAvailable().stream()
+                .filter(instance -> instance.getValue().equals(address))
+                .findFirst().orElseThrow();
+    }
+
+    private Map<String, Integer> select(LoadBalancer loadBalancer, int count) {
+        Map<String, Integer> result = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            result.merge(loadBalancer.selectServiceInstanceIfAvailable().getValue(), 1, Integer::sum);
+        }
+        return result;
+    }
+}
@@ -3,19 +3,67 @@ package io.smallrye.dux.loadbalancer.roundrobin;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import io.smallrye.dux.LabelSelector;
 import io.smallrye.dux.LoadBalancer;
 import io.smallrye.dux.ServiceDiscovery;
 import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.spi.InstanceStateTable;
+import io.smallrye.dux.spi.LabelIndex;
 import io.smallrye.mutiny.Uni;
 
+/**
+ * Load balancer returning the instances one after another.
+ * <p>
+ * By default, a single counter is shared by all the selecting threads. With many cores selecting concurrently,
+ * the counter can be striped, see {@link StripedCounter}: the distribution is then only close to even,
+ * instead of strictly alternating.
+ * <p>
+ * Requests in flight are tracked in the state table of the service, so that an instance removed from the service
+ * discovery is not selected anymore but drains, see {@link InstanceStateTable}.
+ * <p>
+ * With a label selector, the load balancer goes round the matching instances, looked up in the label index
+ * of the current snapshot.
+ */
 public class RoundRobinLoadBalancer implements LoadBalancer {
 
-    private final AtomicInteger index = new AtomicInteger();
+    private final AtomicInteger index;
+    private final StripedCounter stripedIndex;
 
     private final ServiceDiscovery serviceDiscovery;
+    private final InstanceStateTable stateTable;
 
     public RoundRobinLoadBalancer(ServiceDiscovery serviceDiscovery) {
+        this(serviceDiscovery, 1);
+    }
+
+    /**
+     * @param serviceDiscovery service discovery of the service
+     * @param stripes number of counters the index is spread over, 1 for a single shared counter
+     */
+    public RoundRobinLoadBalancer(ServiceDiscovery serviceDiscovery, int stripes) {
+        this(serviceDiscovery, stripes, new InstanceStateTable());
+    }
+
+    /**
+     * @param serviceDiscovery service discovery of the service
+     * @param stripes number of counters the index is spread over, 1 for a single shared counter
+     * @param stateTable state table of the service
+     */
+    public RoundRobinLoadBalancer(ServiceDiscovery serviceDiscovery, int stripes, InstanceStateTable stateTable) {
+        this(serviceDiscovery, stripes, stateTable, 0);
+    }
+
+    RoundRobinLoadBalancer(ServiceDiscovery serviceDiscovery, int stripes, InstanceStateTable stateTable,
+            int initialIndex) {
         this.serviceDiscovery = serviceDiscovery;
+        this.stateTable = stateTable;
+        if (stripes > 1) {
+            this.index = null;
+            this.stripedIndex = new StripedCounter(stripes, initialIndex);
+        } else {
+            this.index = new AtomicInteger(initialIndex);
+            this.stripedIndex = null;
+        }
     }
 
     @Override
@@ -25,11 +73,62 @@ public class RoundRobinLoadBalancer implements LoadBalancer {
                 .map(this::select);
     }
 
+    @Override
+    public ServiceInstance selectServiceInstanceIfAvailable() {
+        List<ServiceInstance> instances = serviceDiscovery.getServiceInstancesIfAvailable();
+        return instances == null ? null : select(instances);
+    }
+
+    @Override
+    public Uni<ServiceInstance> selectServiceInstance(LabelSelector selector) {
+        return serviceDiscovery.getServiceInstances().collect()
+                .asList()
+                .map(instances -> select(instances, selector));
+    }
+
+    @Override
+    public ServiceInstance selectServiceInstanceIfAvailable(LabelSelector selector) {
+        List<ServiceInstance> instances = serviceDiscovery.getServiceInstancesIfAvailable();
+        return instances == null ? null : select(instances, selector);
+    }
+
+    @Override
+    public void requestStarted(ServiceInstance instance) {
+        if (stateTable.snapshot().slotOf(instance) == InstanceStateTable.NO_SLOT) {
+            // selected by someone else before the table caught up with discovery, the request would not be counted
+            List<ServiceInstance> instances = serviceDiscovery.getServiceInstancesIfAvailable();
+            if (instances != null) {
+                stateTable.update(instances);
+            }
+        }
+        stateTable.requestStarted(instance);
+    }
+
+    @Override
+    public void requestFinished(ServiceInstance instance, Throwable failure) {
+        stateTable.requestFinished(instance);
+    }
+
     private ServiceInstance select(List<ServiceInstance> instances) {
+        // cheap unless the instances changed or a draining instance is done
+        stateTable.update(instances);
         if (instances.isEmpty()) {
             return null;
         }
 
-        return instances.get(index.getAndIncrement() % instances.size());
+        return instances.get(next() % instances.size());
+    }
+
+    private ServiceInstance select(List<ServiceInstance> instances, LabelSelector selector) {
+        InstanceStateTable.Snapshot snapshot = stateTable.update(instances);
+        LabelIndex.Selection selection = snapshot.labelIndex().select(selector);
+        if (selection.size() == 0) {
+            return null;
+        }
+        return snapshot.instance(selection.slot(next() % selection.size()));
+    }
+
+    private int next() {
+        return stripedIndex == null ? index.getAndIncrement() & Integer.MAX_VALUE : stripedIndex.next();
     }
 }
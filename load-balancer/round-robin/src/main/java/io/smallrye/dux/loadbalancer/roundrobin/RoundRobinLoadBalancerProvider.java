@@ -1,15 +1,38 @@
 package io.smallrye.dux.loadbalancer.roundrobin;
 
+import java.util.Map;
+
 import io.smallrye.dux.LoadBalancer;
 import io.smallrye.dux.ServiceDiscovery;
 import io.smallrye.dux.config.LoadBalancerConfig;
+import io.smallrye.dux.spi.InstanceStateTable;
 import io.smallrye.dux.spi.LoadBalancerProvider;
 
 public class RoundRobinLoadBalancerProvider implements LoadBalancerProvider {
 
+    public static final String STRIPES = "stripes";
+
     @Override
     public LoadBalancer createLoadBalancer(LoadBalancerConfig config, ServiceDiscovery serviceDiscovery) {
-        return new RoundRobinLoadBalancer(serviceDiscovery);
+        return createLoadBalancer(config, serviceDiscovery, new InstanceStateTable());
+    }
+
+    @Override
+    public LoadBalancer createLoadBalancer(LoadBalancerConfig config, ServiceDiscovery serviceDiscovery,
+            InstanceStateTable stateTable) {
+        // dux.<service-name>.load-balancer=round-robin
+        // dux.<service-name>.load-balancer.stripes=1 (number of index counters, "auto" for twice the number of cores)
+        Map<String, String> parameters = config.parameters();
+        String stripes = parameters == null ? null : parameters.get(STRIPES);
+        int stripeCount;
+        if (stripes == null) {
+            stripeCount = 1;
+        } else if ("auto".equals(stripes)) {
+            stripeCount = 2 * Runtime.getRuntime().availableProcessors();
+        } else {
+            stripeCount = Integer.parseInt(stripes);
+        }
+        return new RoundRobinLoadBalancer(serviceDiscovery, stripeCount, stateTable);
     }
 
     @Override
@@ -0,0 +1,57 @@
+package io.smallrye.dux.loadbalancer.roundrobin;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Round-robin index spread over several counters, each on its own cache line, so that threads selecting
+ * concurrently don't all increment the same memory location.
+ * <p>
+ * A thread always uses the same stripe, picked from its id. Stripe {@code s} starts at {@code s}, so that stripes
+ * start their rounds at different instances. Each stripe walks through all the instances, which keeps the overall
+ * distribution close to even, the difference between two instances is at most the number of stripes.
+ */
+class StripedCounter {
+
+    /**
+     * Number of longs between two stripes, 8 longs take a 64 byte cache line.
+     * The first and the last stripes are padded too, to keep them away from neighbouring objects.
+     */
+    private static final int STRIDE = 8;
+
+    private final AtomicLongArray values;
+    private final int mask;
+
+    /**
+     * @param stripes number of stripes, rounded up to a power of two
+     * @param initial value the first stripe starts from, the other ones are staggered from it
+     */
+    StripedCounter(int stripes, int initial) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("Number of stripes has to be positive, got " + stripes);
+        }
+        int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        mask = size - 1;
+        values = new AtomicLongArray((size + 1) * STRIDE);
+        for (int stripe = 0; stripe < size; stripe++) {
+            values.set(index(stripe), (long) initial + stripe);
+        }
+    }
+
+    /**
+     * @return next non-negative value of the stripe of the current thread
+     */
+    int next() {
+        int stripe = mix(Thread.currentThread().getId()) & mask;
+        return (int) values.getAndIncrement(index(stripe)) & Integer.MAX_VALUE;
+    }
+
+    private static int index(int stripe) {
+        return (stripe + 1) * STRIDE;
+    }
+
+    private static int mix(long threadId) {
+        // thread ids are sequential, spread them over the stripes
+        long h = threadId * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32);
+    }
+}
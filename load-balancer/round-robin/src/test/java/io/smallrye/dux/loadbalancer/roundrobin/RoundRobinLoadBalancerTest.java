@@ -3,15 +3,26 @@ package io.smallrye.dux.loadbalancer.roundrobin;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import io.smallrye.dux.Dux;
 import io.smallrye.dux.DuxTestUtils;
+import io.smallrye.dux.LabelSelector;
 import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.servicediscovery.staticlist.StaticListServiceDiscovery;
+import io.smallrye.dux.spi.InstanceStateTable;
+import io.smallrye.dux.spi.ServiceInstanceIds;
 import io.smallrye.dux.test.TestConfigProvider;
+import io.smallrye.mutiny.Multi;
 
 public class RoundRobinLoadBalancerTest {
 
@@ -45,4 +56,112 @@ public class RoundRobinLoadBalancerTest {
         assertThat(loadBalancer.selectServiceInstance().await().atMost(Duration.ofSeconds(5)).getValue()).isEqualTo(FST_SRVC_2);
         assertThat(loadBalancer.selectServiceInstance().await().atMost(Duration.ofSeconds(5)).getValue()).isEqualTo(FST_SRVC_1);
     }
+
+    @Test
+    public void shouldKeepSelectingWhenIndexOverflows() {
+        LoadBalancer loadBalancer = new RoundRobinLoadBalancer(threeInstances(), 1, new InstanceStateTable(),
+                Integer.MAX_VALUE - 1);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(loadBalancer.selectServiceInstanceIfAvailable()).isNotNull();
+        }
+    }
+
+    @Test
+    public void shouldKeepSelectingWhenStripedIndexOverflows() {
+        LoadBalancer loadBalancer = new RoundRobinLoadBalancer(threeInstances(), 4, new InstanceStateTable(),
+                Integer.MAX_VALUE - 1);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(loadBalancer.selectServiceInstanceIfAvailable()).isNotNull();
+        }
+    }
+
+    @Test
+    public void shouldSpreadEvenlyWithStripes() throws InterruptedException {
+        LoadBalancer loadBalancer = new RoundRobinLoadBalancer(threeInstances(), 8);
+        Map<String, LongAdder> selections = new ConcurrentHashMap<>();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 30_000; i++) {
+                    String value = loadBalancer.selectServiceInstanceIfAvailable().getValue();
+                    selections.computeIfAbsent(value, ignored -> new LongAdder()).increment();
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(selections).hasSize(3);
+        for (LongAdder count : selections.values()) {
+            // each stripe is off by at most one from an even split
+            assertThat(count.sum()).isBetween(80_000L - 8, 80_000L + 8);
+        }
+    }
+
+    @Test
+    public void shouldDrainRemovedInstance() {
+        ServiceInstance staying = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8080");
+        ServiceInstance leaving = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8081");
+        List<ServiceInstance> current = new ArrayList<>(List.of(staying, leaving));
+        ServiceDiscovery serviceDiscovery = new ServiceDiscovery() {
+            @Override
+            public Multi<ServiceInstance> getServiceInstances() {
+                return Multi.createFrom().iterable(getServiceInstancesIfAvailable());
+            }
+
+            @Override
+            public List<ServiceInstance> getServiceInstancesIfAvailable() {
+                return List.copyOf(current);
+            }
+        };
+        InstanceStateTable stateTable = new InstanceStateTable();
+        LoadBalancer loadBalancer = new RoundRobinLoadBalancer(serviceDiscovery, 1, stateTable);
+
+        loadBalancer.selectServiceInstanceIfAvailable();
+        loadBalancer.requestStarted(leaving);
+        loadBalancer.requestStarted(leaving);
+        current.remove(leaving);
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(loadBalancer.selectServiceInstanceIfAvailable()).isSameAs(staying);
+        }
+        assertThat(stateTable.drainingCount()).isEqualTo(1);
+
+        loadBalancer.requestFinished(leaving, null);
+        loadBalancer.selectServiceInstanceIfAvailable();
+        assertThat(stateTable.drainingCount()).isEqualTo(1);
+
+        loadBalancer.requestFinished(leaving, null);
+        loadBalancer.selectServiceInstanceIfAvailable();
+        assertThat(stateTable.drainingCount()).isZero();
+    }
+
+    @Test
+    public void shouldGoRoundMatchingInstances() {
+        List<ServiceInstance> instances = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            instances.add(new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:" + (8080 + i),
+                    Map.of("version", i % 3 == 0 ? "v2" : "v1")));
+        }
+        LoadBalancer loadBalancer = new RoundRobinLoadBalancer(new StaticListServiceDiscovery(instances));
+        LabelSelector canary = LabelSelector.parse("version=v2");
+
+        assertThat(loadBalancer.selectServiceInstanceIfAvailable(canary).getValue()).isEqualTo("http://localhost:8080");
+        assertThat(loadBalancer.selectServiceInstanceIfAvailable(canary).getValue()).isEqualTo("http://localhost:8083");
+        assertThat(loadBalancer.selectServiceInstance(canary).await().atMost(Duration.ofSeconds(5)).getValue())
+                .isEqualTo("http://localhost:8080");
+        assertThat(loadBalancer.selectServiceInstanceIfAvailable(LabelSelector.parse("version=v3"))).isNull();
+    }
+
+    private static StaticListServiceDiscovery threeInstances() {
+        return new StaticListServiceDiscovery(List.of(
+                new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8080"),
+                new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8081"),
+                new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8082")));
+    }
 }
@@ -0,0 +1,241 @@
+package io.smallrye.dux.loadbalancer.slowstart;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import io.smallrye.dux.LabelSelector;
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.LoadReport;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.spi.InstanceStateTable;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Load balancer decorator that ramps up the traffic sent to newly discovered instances.
+ * <p>
+ * The time an instance is first seen is recorded by the instance state table update that adds the instance,
+ * whichever load balancer or decorator sharing the table makes it. During the slow start window,
+ * the weight of the instance grows from {@code min-weight} to 1 as {@code (elapsed / window)^(1 / aggression)}:
+ * 1 gives a linear ramp, greater values send more traffic early. An instance selected by the delegate is accepted
+ * with the probability of its weight, otherwise the delegate is asked again, up to {@link #MAX_ATTEMPTS} times.
+ * <p>
+ * Instances of the first non-empty list of instances, and the ones already in the table when the load balancer is
+ * created, are considered warm, so that a freshly started client does not slow start the whole service.
+ * Instances out of their window cost one counter read per selection.
+ */
+public class SlowStartLoadBalancer implements LoadBalancer {
+
+    static final int MAX_ATTEMPTS = 5;
+
+    // consecutive multiples of the golden ratio spread evenly over [0, 1)
+    private static final double GOLDEN_RATIO_FRACTION = 0.6180339887498949;
+
+    private static final long PRESENT_AT_START = 0;
+    private static final long WARM = Long.MAX_VALUE;
+
+    private final LoadBalancer delegate;
+    private final ServiceDiscovery serviceDiscovery;
+    private final InstanceStateTable stateTable;
+    private final long windowNanos;
+    private final double exponent;
+    private final double minWeight;
+    private final LongSupplier ticker;
+    private final long start;
+
+    /**
+     * Time an instance was first seen, relative to {@link #start}, plus one, or one of {@link #PRESENT_AT_START}
+     * and {@link #WARM}
+     */
+    private final InstanceStateTable.Counter firstSeen;
+    private final AtomicLong sequence = new AtomicLong();
+
+    // guarded by the state table, read by its updates only
+    private boolean instancesSeen;
+
+    SlowStartLoadBalancer(LoadBalancer delegate, ServiceDiscovery serviceDiscovery, InstanceStateTable stateTable,
+            long windowNanos, double aggression, double minWeight, LongSupplier ticker) {
+        if (windowNanos <= 0) {
+            throw new IllegalArgumentException("Slow start window has to be positive, got " + windowNanos + "ns");
+        }
+        if (aggression <= 0) {
+            throw new IllegalArgumentException("Slow start aggression has to be positive, got " + aggression);
+        }
+        if (minWeight <= 0 || minWeight > 1) {
+            throw new IllegalArgumentException("Slow start min weight has to be in (0, 1], got " + minWeight);
+        }
+        this.delegate = delegate;
+        this.serviceDiscovery = serviceDiscovery;
+        this.stateTable = stateTable;
+        this.windowNanos = windowNanos;
+        this.exponent = 1 / aggression;
+        this.minWeight = minWeight;
+        this.ticker = ticker;
+        this.start = ticker.getAsLong();
+
+        instancesSeen = stateTable.snapshot().size() > 0;
+        firstSeen = stateTable.newCounter(this::firstSeenValue);
+    }
+
+    @Override
+    public Uni<ServiceInstance> selectServiceInstance() {
+        return select(null);
+    }
+
+    @Override
+    public ServiceInstance selectServiceInstanceIfAvailable() {
+        return selectIfAvailable(null);
+    }
+
+    @Override
+    public Uni<ServiceInstance> selectServiceInstance(LabelSelector selector) {
+        return select(selector);
+    }
+
+    @Override
+    public ServiceInstance selectServiceInstanceIfAvailable(LabelSelector selector) {
+        return selectIfAvailable(selector);
+    }
+
+    /**
+     * Selects an instance for a session by the delegate: an instance the session is pinned to is not slow started
+     */
+    @Override
+    public Uni<ServiceInstance> selectServiceInstance(String sessionKey) {
+        return delegate.selectServiceInstance(sessionKey);
+    }
+
+    @Override
+    public ServiceInstance selectServiceInstanceIfAvailable(String sessionKey) {
+        return delegate.selectServiceInstanceIfAvailable(sessionKey);
+    }
+
+    @Override
+    public void requestStarted(ServiceInstance instance) {
+        delegate.requestStarted(instance);
+    }
+
+    @Override
+    public void requestFinished(ServiceInstance instance, Throwable failure) {
+        delegate.requestFinished(instance, failure);
+    }
+
+    @Override
+    public void requestFinished(ServiceInstance instance, Throwable failure, long latencyNanos) {
+        delegate.requestFinished(instance, failure, latencyNanos);
+    }
+
+    @Override
+    public void loadReported(ServiceInstance instance, LoadReport report) {
+        delegate.loadReported(instance, report);
+    }
+
+    private Uni<ServiceInstance> select(LabelSelector selector) {
+        ServiceInstance selected = selectIfAvailable(selector);
+        if (selected != null) {
+            return Uni.createFrom().item(selected);
+        }
+        Uni<ServiceInstance> delegateSelection = selector == null
+                ? delegate.selectServiceInstance()
+                : delegate.selectServiceInstance(selector);
+        return delegateSelection.map(instance -> {
+            if (instance == null || accept(instance)) {
+                return instance;
+            }
+            ServiceInstance other = retry(selector);
+            return other == null ? instance : other;
+        });
+    }
+
+    private ServiceInstance selectIfAvailable(LabelSelector selector) {
+        ServiceInstance selected = candidate(selector);
+        if (selected == null || accept(selected)) {
+            return selected;
+        }
+        ServiceInstance other = retry(selector);
+        return other == null ? selected : other;
+    }
+
+    private ServiceInstance candidate(LabelSelector selector) {
+        return selector == null
+                ? delegate.selectServiceInstanceIfAvailable()
+                : delegate.selectServiceInstanceIfAvailable(selector);
+    }
+
+    /**
+     * Asks the delegate for other instances after a rejection.
+     *
+     * @param selector label selector the instances have to match, or null
+     * @return the first accepted instance, the last one selected if none was accepted, or null if the delegate
+     *         cannot select synchronously
+     */
+    private ServiceInstance retry(LabelSelector selector) {
+        ServiceInstance selected = null;
+        for (int attempt = 1; attempt < MAX_ATTEMPTS; attempt++) {
+            ServiceInstance candidate = candidate(selector);
+            if (candidate == null) {
+                return selected;
+            }
+            selected = candidate;
+            if (accept(candidate)) {
+                break;
+            }
+        }
+        return selected;
+    }
+
+    private boolean accept(ServiceInstance instance) {
+        double weight = weight(instance);
+        return weight >= 1 || (sequence.getAndIncrement() * GOLDEN_RATIO_FRACTION) % 1 < weight;
+    }
+
+    double weight(ServiceInstance instance) {
+        InstanceStateTable.Snapshot snapshot = snapshotOf(instance);
+        int slot = snapshot.slotOf(instance);
+        if (slot == InstanceStateTable.NO_SLOT) {
+            return 1;
+        }
+        long seen = firstSeen.get(snapshot, slot);
+        if (seen == WARM || seen == PRESENT_AT_START) {
+            return 1;
+        }
+        long now = ticker.getAsLong() - start;
+        long elapsed = now - (seen - 1);
+        if (elapsed >= windowNanos) {
+            // no need to look at the clock for this instance anymore
+            firstSeen.compareAndSet(snapshot, slot, seen, WARM);
+            return 1;
+        }
+        double timeFactor = (double) Math.max(elapsed, 0) / windowNanos;
+        return Math.max(minWeight, exponent == 1 ? timeFactor : Math.pow(timeFactor, exponent));
+    }
+
+    /**
+     * Called by the state table, under its lock, once per update adding instances
+     *
+     * @return the first seen value of the added instances
+     */
+    private long firstSeenValue() {
+        if (!instancesSeen) {
+            // the first instances of the service
+            instancesSeen = true;
+            return WARM;
+        }
+        return ticker.getAsLong() - start + 1;
+    }
+
+    /**
+     * @return the current snapshot, updated first if the instance is not a part of it
+     */
+    private InstanceStateTable.Snapshot snapshotOf(ServiceInstance instance) {
+        InstanceStateTable.Snapshot snapshot = stateTable.snapshot();
+        if (snapshot.slotOf(instance) == InstanceStateTable.NO_SLOT) {
+            List<ServiceInstance> instances = serviceDiscovery.getServiceInstancesIfAvailable();
+            if (instances != null) {
+                snapshot = stateTable.update(instances);
+            }
+        }
+        return snapshot;
+    }
+}
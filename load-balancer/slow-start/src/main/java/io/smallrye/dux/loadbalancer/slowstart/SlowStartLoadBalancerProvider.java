@@ -0,0 +1,46 @@
+package io.smallrye.dux.loadbalancer.slowstart;
+
+import java.time.Duration;
+import java.util.Map;
+
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.config.LoadBalancerConfig;
+import io.smallrye.dux.spi.InstanceStateTable;
+import io.smallrye.dux.spi.LoadBalancerProvider;
+import io.smallrye.dux.spi.Providers;
+
+public class SlowStartLoadBalancerProvider implements LoadBalancerProvider {
+
+    public static final String WINDOW = "window";
+    public static final String AGGRESSION = "aggression";
+    public static final String MIN_WEIGHT = "min-weight";
+
+    @Override
+    public LoadBalancer createLoadBalancer(LoadBalancerConfig config, ServiceDiscovery serviceDiscovery) {
+        return createLoadBalancer(config, serviceDiscovery, new InstanceStateTable());
+    }
+
+    @Override
+    public LoadBalancer createLoadBalancer(LoadBalancerConfig config, ServiceDiscovery serviceDiscovery,
+            InstanceStateTable stateTable) {
+        // dux.<service-name>.load-balancer=slow-start
+        // dux.<service-name>.load-balancer.window=30 (seconds)
+        // dux.<service-name>.load-balancer.aggression=1.0 (1 is linear, greater values ramp up faster at first)
+        // dux.<service-name>.load-balancer.min-weight=0.1
+        // dux.<service-name>.load-balancer.delegate=round-robin
+        Map<String, String> parameters = config.parameters();
+        Duration window = Duration.ofSeconds(Long.parseLong(parameters.getOrDefault(WINDOW, "30")));
+        double aggression = Double.parseDouble(parameters.getOrDefault(AGGRESSION, "1.0"));
+        double minWeight = Double.parseDouble(parameters.getOrDefault(MIN_WEIGHT, "0.1"));
+
+        LoadBalancer delegate = Providers.createDelegateLoadBalancer(config, serviceDiscovery, stateTable);
+        return new SlowStartLoadBalancer(delegate, serviceDiscovery, stateTable, window.toNanos(), aggression,
+                minWeight, stateTable.ticker());
+    }
+
+    @Override
+    public String type() {
+        return "slow-start";
+    }
+}
@@ -0,0 +1,117 @@
+package io.smallrye.dux.loadbalancer.slowstart;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.loadbalancer.roundrobin.RoundRobinLoadBalancer;
+import io.smallrye.dux.spi.InstanceStateTable;
+import io.smallrye.dux.spi.ServiceInstanceIds;
+import io.smallrye.mutiny.Multi;
+
+public class SlowStartLoadBalancerTest {
+
+    private static final long WINDOW = Duration.ofSeconds(30).toNanos();
+
+    private final ServiceInstance first = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8080");
+    private final ServiceInstance second = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8081");
+    private final ServiceInstance third = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8082");
+
+    private final AtomicReference<List<ServiceInstance>> instances = new AtomicReference<>(List.of(first, second));
+    private final ServiceDiscovery serviceDiscovery = new ServiceDiscovery() {
+        @Override
+        public Multi<ServiceInstance> getServiceInstances() {
+            return Multi.createFrom().iterable(instances.get());
+        }
+
+        @Override
+        public List<ServiceInstance> getServiceInstancesIfAvailable() {
+            return instances.get();
+        }
+    };
+
+    private final AtomicLong time = new AtomicLong();
+
+    @Test
+    void shouldNotSlowStartInitialInstances() {
+        LoadBalancer loadBalancer = createLoadBalancer(1.0);
+
+        Map<String, Integer> selections = select(loadBalancer, 1000);
+
+        assertThat(selections.get(first.getValue())).isEqualTo(500);
+        assertThat(selections.get(second.getValue())).isEqualTo(500);
+    }
+
+    @Test
+    void shouldRampUpNewInstances() {
+        LoadBalancer loadBalancer = createLoadBalancer(1.0);
+        select(loadBalancer, 10);
+        instances.set(List.of(first, second, third));
+
+        assertThat(select(loadBalancer, 3000).get(third.getValue())).isBetween(40, 110);
+
+        time.set(WINDOW / 2);
+        assertThat(select(loadBalancer, 3000).get(third.getValue())).isBetween(500, 700);
+
+        time.set(WINDOW);
+        assertThat(select(loadBalancer, 3000).get(third.getValue())).isEqualTo(1000);
+    }
+
+    @Test
+    void shouldRampUpFasterWithHigherAggression() {
+        SlowStartLoadBalancer linear = createLoadBalancer(1.0);
+        SlowStartLoadBalancer aggressive = createLoadBalancer(2.0);
+        select(linear, 10);
+        select(aggressive, 10);
+        instances.set(List.of(first, second, third));
+        linear.weight(third);
+        aggressive.weight(third);
+
+        time.set(WINDOW / 4);
+
+        assertThat(linear.weight(third)).isCloseTo(0.25, within(0.001));
+        assertThat(aggressive.weight(third)).isCloseTo(0.5, within(0.001));
+    }
+
+    @Test
+    void shouldStartWindowWhenInstanceIsAddedToTable() {
+        InstanceStateTable stateTable = new InstanceStateTable();
+        SlowStartLoadBalancer loadBalancer = createLoadBalancer(1.0, stateTable);
+        select(loadBalancer, 10);
+
+        // another load balancer sharing the table sees the new instance first
+        instances.set(List.of(first, second, third));
+        stateTable.update(instances.get());
+
+        time.set(WINDOW / 2);
+        assertThat(loadBalancer.weight(third)).isCloseTo(0.5, within(0.001));
+    }
+
+    private SlowStartLoadBalancer createLoadBalancer(double aggression) {
+        return createLoadBalancer(aggression, new InstanceStateTable());
+    }
+
+    private SlowStartLoadBalancer createLoadBalancer(double aggression, InstanceStateTable stateTable) {
+        return new SlowStartLoadBalancer(new RoundRobinLoadBalancer(serviceDiscovery), serviceDiscovery,
+                stateTable, WINDOW, aggression, 0.05, time::get);
+    }
+
+    private Map<String, Integer> select(LoadBalancer loadBalancer, int count) {
+        Map<String, Integer> result = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            result.merge(loadBalancer.selectServiceInstanceIfAvailable().getValue(), 1, Integer::sum);
+        }
+        return result;
+    }
+}
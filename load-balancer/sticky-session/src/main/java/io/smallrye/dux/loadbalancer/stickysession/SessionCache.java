@@ -0,0 +1,128 @@
+package io.smallrye.dux.loadbalancer.stickysession;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded map of session keys to instance ids.
+ * <p>
+ * The keys are spread over segments, each being an LRU map guarded by its own lock, so that lookups
+ * of different keys rarely contend and no operation takes a lock on the whole cache.
+ * Entries not accessed for longer than the idle timeout are treated as missing.
+ */
+final class SessionCache {
+
+    static final long NO_INSTANCE = -1;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final long idleTimeoutNanos;
+    private final LongSupplier ticker;
+
+    SessionCache(int maxSessions, long idleTimeoutNanos, LongSupplier ticker) {
+        int segmentCount = Integer.highestOneBit(Math.max(1, Math.min(64, maxSessions / 16)));
+        int segmentCapacity = Math.max(1, maxSessions / segmentCount);
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+        segmentMask = segmentCount - 1;
+        this.idleTimeoutNanos = idleTimeoutNanos;
+        this.ticker = ticker;
+    }
+
+    /**
+     * @param key session key
+     * @return id of the instance the session is pinned to, or {@link #NO_INSTANCE}
+     */
+    long get(String key) {
+        Segment segment = segment(key);
+        long now = ticker.getAsLong();
+        segment.lock.lock();
+        try {
+            Session session = segment.entries.get(key);
+            if (session == null) {
+                return NO_INSTANCE;
+            }
+            if (now - session.lastAccess > idleTimeoutNanos) {
+                segment.entries.remove(key);
+                return NO_INSTANCE;
+            }
+            session.lastAccess = now;
+            return session.instanceId;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    void put(String key, long instanceId) {
+        Segment segment = segment(key);
+        long now = ticker.getAsLong();
+        segment.lock.lock();
+        try {
+            Session session = segment.entries.get(key);
+            if (session == null) {
+                segment.entries.put(key, new Session(instanceId, now));
+            } else {
+                session.instanceId = instanceId;
+                session.lastAccess = now;
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    void remove(String key) {
+        Segment segment = segment(key);
+        segment.lock.lock();
+        try {
+            segment.entries.remove(key);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    int size() {
+        int result = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                result += segment.entries.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return result;
+    }
+
+    private Segment segment(String key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & segmentMask];
+    }
+
+    private static final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, Session> entries;
+
+        private Segment(int capacity) {
+            entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+    }
+
+    private static final class Session {
+        private long instanceId;
+        private long lastAccess;
+
+        private Session(long instanceId, long lastAccess) {
+            this.instanceId = instanceId;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
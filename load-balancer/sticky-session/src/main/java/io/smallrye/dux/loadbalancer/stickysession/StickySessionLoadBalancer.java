@@ -0,0 +1,146 @@
+package io.smallrye.dux.loadbalancer.stickysession;
+
+import java.util.List;
+
+import io.smallrye.dux.LabelSelector;
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.LoadReport;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.spi.InstanceStateTable;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Load balancer decorator that pins session keys to instances.
+ * <p>
+ * The first selection for a key is done by the delegate load balancer, and the selected instance is remembered.
+ * Following selections for the key return the same instance, as long as it is still returned by the service
+ * discovery and the session has not been idle for too long. Otherwise, the delegate selects a new instance.
+ */
+public class StickySessionLoadBalancer implements LoadBalancer {
+
+    private final LoadBalancer delegate;
+    private final ServiceDiscovery serviceDiscovery;
+    private final InstanceStateTable stateTable;
+    private final SessionCache sessions;
+
+    StickySessionLoadBalancer(LoadBalancer delegate, ServiceDiscovery serviceDiscovery,
+            InstanceStateTable stateTable, SessionCache sessions) {
+        this.delegate = delegate;
+        this.serviceDiscovery = serviceDiscovery;
+        this.stateTable = stateTable;
+        this.sessions = sessions;
+    }
+
+    /**
+     * Selects an instance without a session key, by the delegate load balancer
+     */
+    @Override
+    public Uni<ServiceInstance> selectServiceInstance() {
+        return delegate.selectServiceInstance();
+    }
+
+    @Override
+    public ServiceInstance selectServiceInstanceIfAvailable() {
+        return delegate.selectServiceInstanceIfAvailable();
+    }
+
+    /**
+     * Selects a matching instance by the delegate load balancer, or any matching instance if the delegate
+     * doesn't find one
+     */
+    @Override
+    public Uni<ServiceInstance> selectServiceInstance(LabelSelector selector) {
+        return delegate.selectServiceInstance(selector)
+                .onItem().ifNull().switchTo(() -> serviceDiscovery.getServiceInstances().collect()
+                        .asList()
+                        .map(instances -> stateTable.update(instances).anyMatching(selector, stateTable.random())));
+    }
+
+    @Override
+    public ServiceInstance selectServiceInstanceIfAvailable(LabelSelector selector) {
+        ServiceInstance selected = delegate.selectServiceInstanceIfAvailable(selector);
+        if (selected != null) {
+            return selected;
+        }
+        List<ServiceInstance> instances = serviceDiscovery.getServiceInstancesIfAvailable();
+        return instances == null ? null : stateTable.update(instances).anyMatching(selector, stateTable.random());
+    }
+
+    @Override
+    public void requestStarted(ServiceInstance instance) {
+        delegate.requestStarted(instance);
+    }
+
+    @Override
+    public void requestFinished(ServiceInstance instance, Throwable failure) {
+        delegate.requestFinished(instance, failure);
+    }
+
+    @Override
+    public void requestFinished(ServiceInstance instance, Throwable failure, long latencyNanos) {
+        delegate.requestFinished(instance, failure, latencyNanos);
+    }
+
+    @Override
+    public void loadReported(ServiceInstance instance, LoadReport report) {
+        delegate.loadReported(instance, report);
+    }
+
+    /**
+     * Selects the instance the session is pinned to, or pins the session to an instance selected by the delegate
+     *
+     * @param sessionKey session key, e.g. a client or a session id
+     * @return the selected instance
+     */
+    @Override
+    public Uni<ServiceInstance> selectServiceInstance(String sessionKey) {
+        ServiceInstance selected = selectServiceInstanceIfAvailable(sessionKey);
+        if (selected != null) {
+            return Uni.createFrom().item(selected);
+        }
+        return serviceDiscovery.getServiceInstances().collect().asList()
+                .onItem().transformToUni(instances -> {
+                    ServiceInstance pinned = pinned(sessionKey, instances);
+                    if (pinned != null) {
+                        return Uni.createFrom().item(pinned);
+                    }
+                    return delegate.selectServiceInstance().map(instance -> pin(sessionKey, instance));
+                });
+    }
+
+    @Override
+    public ServiceInstance selectServiceInstanceIfAvailable(String sessionKey) {
+        List<ServiceInstance> instances = serviceDiscovery.getServiceInstancesIfAvailable();
+        if (instances == null) {
+            return null;
+        }
+        ServiceInstance pinned = pinned(sessionKey, instances);
+        return pinned != null ? pinned : pin(sessionKey, delegate.selectServiceInstanceIfAvailable());
+    }
+
+    /**
+     * @return the instance the session is pinned to, or null if there is none, or it is gone or draining
+     */
+    private ServiceInstance pinned(String sessionKey, List<ServiceInstance> instances) {
+        long instanceId = sessions.get(sessionKey);
+        if (instanceId == SessionCache.NO_INSTANCE) {
+            return null;
+        }
+        InstanceStateTable.Snapshot snapshot = stateTable.update(instances);
+        int slot = snapshot.slotOf(instanceId);
+        if (slot != InstanceStateTable.NO_SLOT && !snapshot.isDraining(slot)) {
+            return snapshot.instance(slot);
+        }
+        // the instance is gone, or draining
+        sessions.remove(sessionKey);
+        return null;
+    }
+
+    private ServiceInstance pin(String sessionKey, ServiceInstance instance) {
+        if (instance != null) {
+            sessions.put(sessionKey, instance.getId());
+        }
+        return instance;
+    }
+}
@@ -0,0 +1,43 @@
+package io.smallrye.dux.loadbalancer.stickysession;
+
+import java.time.Duration;
+import java.util.Map;
+
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.config.LoadBalancerConfig;
+import io.smallrye.dux.spi.InstanceStateTable;
+import io.smallrye.dux.spi.LoadBalancerProvider;
+import io.smallrye.dux.spi.Providers;
+
+public class StickySessionLoadBalancerProvider implements LoadBalancerProvider {
+
+    public static final String MAX_SESSIONS = "max-sessions";
+    public static final String IDLE_TIMEOUT = "idle-timeout";
+
+    @Override
+    public LoadBalancer createLoadBalancer(LoadBalancerConfig config, ServiceDiscovery serviceDiscovery) {
+        return createLoadBalancer(config, serviceDiscovery, new InstanceStateTable());
+    }
+
+    @Override
+    public LoadBalancer createLoadBalancer(LoadBalancerConfig config, ServiceDiscovery serviceDiscovery,
+            InstanceStateTable stateTable) {
+        // dux.<service-name>.load-balancer=sticky-session
+        // dux.<service-name>.load-balancer.max-sessions=100000
+        // dux.<service-name>.load-balancer.idle-timeout=1800 (seconds)
+        // dux.<service-name>.load-balancer.delegate=round-robin
+        Map<String, String> parameters = config.parameters();
+        int maxSessions = Integer.parseInt(parameters.getOrDefault(MAX_SESSIONS, "100000"));
+        Duration idleTimeout = Duration.ofSeconds(Long.parseLong(parameters.getOrDefault(IDLE_TIMEOUT, "1800")));
+
+        LoadBalancer delegate = Providers.createDelegateLoadBalancer(config, serviceDiscovery, stateTable);
+        return new StickySessionLoadBalancer(delegate, serviceDiscovery, stateTable,
+                new SessionCache(maxSessions, idleTimeout.toNanos(), stateTable.ticker()));
+    }
+
+    @Override
+    public String type() {
+        return "sticky-session";
+    }
+}
@@ -0,0 +1,90 @@
+package io.smallrye.dux.loadbalancer.stickysession;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.spi.ServiceInstanceIds;
+import io.smallrye.dux.spi.SimpleServiceConfig;
+import io.smallrye.mutiny.Multi;
+
+public class StickySessionLoadBalancerTest {
+
+    private final ServiceInstance first = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8080");
+    private final ServiceInstance second = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8081");
+    private final ServiceInstance third = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8082");
+
+    private final AtomicReference<List<ServiceInstance>> instances = new AtomicReference<>(List.of(first, second));
+    private final ServiceDiscovery serviceDiscovery = () -> Multi.createFrom().iterable(instances.get());
+
+    @Test
+    void shouldPinSessionsToInstances() {
+        LoadBalancer loadBalancer = createLoadBalancer(Map.of());
+
+        ServiceInstance forA = select(loadBalancer, "a");
+        ServiceInstance forB = select(loadBalancer, "b");
+        assertThat(forA.getId()).isNotEqualTo(forB.getId());
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(select(loadBalancer, "a")).isSameAs(forA);
+            assertThat(select(loadBalancer, "b")).isSameAs(forB);
+        }
+    }
+
+    @Test
+    void shouldRepinWhenInstanceIsGone() {
+        LoadBalancer loadBalancer = createLoadBalancer(Map.of());
+
+        ServiceInstance pinned = select(loadBalancer, "a");
+        instances.set(pinned == first ? List.of(second, third) : List.of(first, third));
+
+        ServiceInstance repinned = select(loadBalancer, "a");
+        assertThat(repinned.getId()).isNotEqualTo(pinned.getId());
+        assertThat(select(loadBalancer, "a")).isSameAs(repinned);
+    }
+
+    @Test
+    void shouldBoundNumberOfSessions() {
+        SessionCache cache = new SessionCache(1024, Long.MAX_VALUE, System::nanoTime);
+        for (int i = 0; i < 100_000; i++) {
+            cache.put("session-" + i, i);
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(1024);
+        assertThat(cache.get("session-99999")).isEqualTo(99999);
+        assertThat(cache.get("session-0")).isEqualTo(SessionCache.NO_INSTANCE);
+    }
+
+    @Test
+    void shouldExpireIdleSessions() {
+        AtomicLong time = new AtomicLong();
+        SessionCache cache = new SessionCache(1024, Duration.ofMinutes(1).toNanos(), time::get);
+        cache.put("active", 1);
+        cache.put("idle", 2);
+
+        time.set(Duration.ofSeconds(40).toNanos());
+        assertThat(cache.get("active")).isEqualTo(1);
+
+        time.set(Duration.ofSeconds(80).toNanos());
+        assertThat(cache.get("active")).isEqualTo(1);
+        assertThat(cache.get("idle")).isEqualTo(SessionCache.NO_INSTANCE);
+    }
+
+    private LoadBalancer createLoadBalancer(Map<String, String> parameters) {
+        return new StickySessionLoadBalancerProvider().createLoadBalancer(
+                new SimpleServiceConfig.SimpleLoadBalancerConfig("sticky-session", parameters), serviceDiscovery);
+    }
+
+    private ServiceInstance select(LoadBalancer loadBalancer, String sessionKey) {
+        return loadBalancer.selectServiceInstance(sessionKey).await().atMost(Duration.ofSeconds(5));
+    }
+}
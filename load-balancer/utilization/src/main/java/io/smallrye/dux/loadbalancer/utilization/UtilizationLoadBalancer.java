@@ -0,0 +1,246 @@
+package io.smallrye.dux.loadbalancer.utilization;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import io.smallrye.dux.LabelSelector;
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.LoadReport;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.spi.InstanceStateTable;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Load balancer weighting instances by the load they report about themselves.
+ * <p>
+ * Load reports are passed with {@link #loadReported(ServiceInstance, LoadReport)}, the load of a report is
+ * its utilization plus {@code queue-penalty} per queued request. Reports of an instance are smoothed with
+ * an exponentially weighted moving average with the given half-life. The weight of an instance is the inverse
+ * of its smoothed load, and instances are selected at random, proportionally to their weights.
+ * <p>
+ * A report older than {@code stale-after} is ignored: instances without a fresh report get the mean weight of the
+ * instances with one. If no instance has a fresh report, instances are selected in round-robin.
+ * <p>
+ * Weights are recomputed every {@code weight-update-period}, or when the instances change, so that a selection
+ * only costs a random number and a binary search.
+ */
+public class UtilizationLoadBalancer implements LoadBalancer {
+
+    /**
+     * Load below which instances are considered equally idle, it bounds the weight of idle instances
+     */
+    static final double MIN_LOAD = 0.01;
+
+    private final ServiceDiscovery serviceDiscovery;
+    private final InstanceStateTable stateTable;
+    private final long halfLifeNanos;
+    private final long staleNanos;
+    private final double queuePenalty;
+    private final long weightUpdateNanos;
+    private final LongSupplier ticker;
+    private final long start;
+
+    /**
+     * Smoothed load, as {@link Double#doubleToRawLongBits(double)}
+     */
+    private final InstanceStateTable.Counter load;
+    /**
+     * Time of the last report, relative to {@link #start}, plus one, 0 if the instance never reported
+     */
+    private final InstanceStateTable.Counter reportedAt;
+    private final AtomicInteger index = new AtomicInteger();
+
+    private volatile Weights weights;
+
+    UtilizationLoadBalancer(ServiceDiscovery serviceDiscovery, InstanceStateTable stateTable, long halfLifeNanos,
+            long staleNanos, double queuePenalty, long weightUpdateNanos, LongSupplier ticker) {
+        this.serviceDiscovery = serviceDiscovery;
+        this.stateTable = stateTable;
+        this.halfLifeNanos = halfLifeNanos;
+        this.staleNanos = staleNanos;
+        this.queuePenalty = queuePenalty;
+        this.weightUpdateNanos = weightUpdateNanos;
+        this.ticker = ticker;
+        this.start = ticker.getAsLong();
+
+        load = stateTable.newCounter();
+        reportedAt = stateTable.newCounter();
+    }
+
+    @Override
+    public Uni<ServiceInstance> selectServiceInstance() {
+        return serviceDiscovery.getServiceInstances().collect()
+                .asList()
+                .map(this::select);
+    }
+
+    @Override
+    public ServiceInstance selectServiceInstanceIfAvailable() {
+        List<ServiceInstance> instances = serviceDiscovery.getServiceInstancesIfAvailable();
+        return instances == null ? null : select(instances);
+    }
+
+    /**
+     * Selects a matching instance with the strategy of the load balancer, or any matching instance if
+     * {@link #MAX_LABEL_SELECTIONS} selections don't match
+     */
+    @Override
+    public Uni<ServiceInstance> selectServiceInstance(LabelSelector selector) {
+        return serviceDiscovery.getServiceInstances().collect()
+                .asList()
+                .map(instances -> select(instances, selector));
+    }
+
+    @Override
+    public ServiceInstance selectServiceInstanceIfAvailable(LabelSelector selector) {
+        List<ServiceInstance> instances = serviceDiscovery.getServiceInstancesIfAvailable();
+        return instances == null ? null : select(instances, selector);
+    }
+
+    @Override
+    public void requestStarted(ServiceInstance instance) {
+        snapshotOf(instance);
+        stateTable.requestStarted(instance);
+    }
+
+    @Override
+    public void requestFinished(ServiceInstance instance, Throwable failure) {
+        stateTable.requestFinished(instance);
+    }
+
+    @Override
+    public void loadReported(ServiceInstance instance, LoadReport report) {
+        InstanceStateTable.Snapshot snapshot = snapshotOf(instance);
+        int slot = snapshot.slotOf(instance);
+        if (slot == InstanceStateTable.NO_SLOT) {
+            return;
+        }
+        long now = now();
+        double reported = report.getUtilization() + queuePenalty * report.getQueueDepth();
+
+        double smoothed = reported;
+        long previous = reportedAt.get(snapshot, slot);
+        if (previous != 0 && halfLifeNanos > 0) {
+            long elapsed = now - (previous - 1);
+            if (elapsed < staleNanos) {
+                double alpha = 1 - Math.exp(-Math.log(2) * Math.max(elapsed, 0) / halfLifeNanos);
+                double current = Double.longBitsToDouble(load.get(snapshot, slot));
+                smoothed = current + alpha * (reported - current);
+            }
+        }
+        // concurrent reports of the same instance may overwrite each other, which is fine for a moving average
+        // adding 0 turns -0.0 into 0.0, whose bits are not the moved marker of the counters
+        load.set(snapshot, slot, Double.doubleToRawLongBits(smoothed + 0.0));
+        reportedAt.set(snapshot, slot, now + 1);
+    }
+
+    double smoothedLoad(ServiceInstance instance) {
+        InstanceStateTable.Snapshot snapshot = stateTable.snapshot();
+        int slot = snapshot.slotOf(instance);
+        return slot == InstanceStateTable.NO_SLOT ? Double.NaN : Double.longBitsToDouble(load.get(snapshot, slot));
+    }
+
+    private ServiceInstance select(List<ServiceInstance> instances) {
+        if (instances.isEmpty()) {
+            return null;
+        }
+        InstanceStateTable.Snapshot snapshot = stateTable.update(instances);
+        long now = now();
+        Weights current = weights;
+        if (current == null || current.snapshot != snapshot || now - current.computedAt >= weightUpdateNanos) {
+            current = computeWeights(snapshot, now);
+            weights = current;
+        }
+
+        if (current.cumulative == null) {
+            // no fresh reports
+            return snapshot.instance((index.getAndIncrement() & Integer.MAX_VALUE) % snapshot.size());
+        }
+        double[] cumulative = current.cumulative;
+        double point = stateTable.random().nextDouble(cumulative[cumulative.length - 1]);
+        int slot = Arrays.binarySearch(cumulative, point);
+        // an exact match falls on the upper bound of the slot, otherwise binarySearch returns -(insertion point) - 1
+        slot = slot >= 0 ? slot + 1 : -slot - 1;
+        return snapshot.instance(Math.min(slot, cumulative.length - 1));
+    }
+
+    private ServiceInstance select(List<ServiceInstance> instances, LabelSelector selector) {
+        for (int attempt = 0; attempt < MAX_LABEL_SELECTIONS; attempt++) {
+            ServiceInstance selected = select(instances);
+            if (selected == null) {
+                break;
+            }
+            if (selector.matches(selected)) {
+                return selected;
+            }
+        }
+        // the selector matches few instances, if any
+        return stateTable.update(instances).anyMatching(selector, stateTable.random());
+    }
+
+    private Weights computeWeights(InstanceStateTable.Snapshot snapshot, long now) {
+        int size = snapshot.size();
+        double[] weightsBySlot = new double[size];
+        boolean[] fresh = new boolean[size];
+        int freshCount = 0;
+        double freshSum = 0;
+        for (int slot = 0; slot < size; slot++) {
+            long reported = reportedAt.get(snapshot, slot);
+            if (reported != 0 && now - (reported - 1) < staleNanos) {
+                weightsBySlot[slot] = 1 / Math.max(MIN_LOAD, Double.longBitsToDouble(load.get(snapshot, slot)));
+                fresh[slot] = true;
+                freshCount++;
+                freshSum += weightsBySlot[slot];
+            }
+        }
+        if (freshCount == 0) {
+            return new Weights(snapshot, now, null);
+        }
+
+        double mean = freshSum / freshCount;
+        double[] cumulative = new double[size];
+        double sum = 0;
+        for (int slot = 0; slot < size; slot++) {
+            sum += fresh[slot] ? weightsBySlot[slot] : mean;
+            cumulative[slot] = sum;
+        }
+        return new Weights(snapshot, now, cumulative);
+    }
+
+    /**
+     * @return the current snapshot, updated first if the instance is not a part of it
+     */
+    private InstanceStateTable.Snapshot snapshotOf(ServiceInstance instance) {
+        InstanceStateTable.Snapshot snapshot = stateTable.snapshot();
+        if (snapshot.slotOf(instance) == InstanceStateTable.NO_SLOT) {
+            // the report may come before the first selection
+            List<ServiceInstance> instances = serviceDiscovery.getServiceInstancesIfAvailable();
+            if (instances != null) {
+                snapshot = stateTable.update(instances);
+            }
+        }
+        return snapshot;
+    }
+
+    private long now() {
+        return ticker.getAsLong() - start;
+    }
+
+    private static final class Weights {
+        private final InstanceStateTable.Snapshot snapshot;
+        private final long computedAt;
+        /**
+         * Cumulative weights by slot, null if no instance has a fresh report
+         */
+        private final double[] cumulative;
+
+        private Weights(InstanceStateTable.Snapshot snapshot, long computedAt, double[] cumulative) {
+            this.snapshot = snapshot;
+            this.computedAt = computedAt;
+            this.cumulative = cumulative;
+        }
+    }
+}
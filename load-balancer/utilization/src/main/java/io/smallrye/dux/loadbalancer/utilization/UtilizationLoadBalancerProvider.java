@@ -0,0 +1,45 @@
+package io.smallrye.dux.loadbalancer.utilization;
+
+import java.time.Duration;
+import java.util.Map;
+
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.config.LoadBalancerConfig;
+import io.smallrye.dux.spi.InstanceStateTable;
+import io.smallrye.dux.spi.LoadBalancerProvider;
+
+public class UtilizationLoadBalancerProvider implements LoadBalancerProvider {
+
+    public static final String HALF_LIFE = "half-life";
+    public static final String STALE_AFTER = "stale-after";
+    public static final String QUEUE_PENALTY = "queue-penalty";
+    public static final String WEIGHT_UPDATE_PERIOD = "weight-update-period";
+
+    @Override
+    public LoadBalancer createLoadBalancer(LoadBalancerConfig config, ServiceDiscovery serviceDiscovery) {
+        return createLoadBalancer(config, serviceDiscovery, new InstanceStateTable());
+    }
+
+    @Override
+    public LoadBalancer createLoadBalancer(LoadBalancerConfig config, ServiceDiscovery serviceDiscovery,
+            InstanceStateTable stateTable) {
+        // dux.<service-name>.load-balancer=utilization
+        // dux.<service-name>.load-balancer.half-life=2000 (ms, 0 disables smoothing)
+        // dux.<service-name>.load-balancer.stale-after=10 (seconds)
+        // dux.<service-name>.load-balancer.queue-penalty=0.1 (load added per queued request)
+        // dux.<service-name>.load-balancer.weight-update-period=100 (ms)
+        Map<String, String> parameters = config.parameters();
+        return new UtilizationLoadBalancer(serviceDiscovery, stateTable,
+                Duration.ofMillis(Long.parseLong(parameters.getOrDefault(HALF_LIFE, "2000"))).toNanos(),
+                Duration.ofSeconds(Long.parseLong(parameters.getOrDefault(STALE_AFTER, "10"))).toNanos(),
+                Double.parseDouble(parameters.getOrDefault(QUEUE_PENALTY, "0.1")),
+                Duration.ofMillis(Long.parseLong(parameters.getOrDefault(WEIGHT_UPDATE_PERIOD, "100"))).toNanos(),
+                stateTable.ticker());
+    }
+
+    @Override
+    public String type() {
+        return "utilization";
+    }
+}
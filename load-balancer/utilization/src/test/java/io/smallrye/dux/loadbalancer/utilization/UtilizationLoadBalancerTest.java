@@ -0,0 +1,127 @@
+package io.smallrye.dux.loadbalancer.utilization;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.LoadReport;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.spi.InstanceStateTable;
+import io.smallrye.dux.spi.ServiceInstanceIds;
+import io.smallrye.mutiny.Multi;
+
+public class UtilizationLoadBalancerTest {
+
+    private static final long HALF_LIFE = Duration.ofSeconds(2).toNanos();
+    private static final long STALE_AFTER = Duration.ofSeconds(10).toNanos();
+
+    private final ServiceInstance busy = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8080");
+    private final ServiceInstance idle1 = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8081");
+    private final ServiceInstance idle2 = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8082");
+
+    private final List<ServiceInstance> instances = List.of(busy, idle1, idle2);
+    private final ServiceDiscovery serviceDiscovery = new ServiceDiscovery() {
+        @Override
+        public Multi<ServiceInstance> getServiceInstances() {
+            return Multi.createFrom().iterable(instances);
+        }
+
+        @Override
+        public List<ServiceInstance> getServiceInstancesIfAvailable() {
+            return instances;
+        }
+    };
+
+    private final AtomicLong time = new AtomicLong();
+    private final UtilizationLoadBalancer loadBalancer = new UtilizationLoadBalancer(serviceDiscovery,
+            new InstanceStateTable(), HALF_LIFE, STALE_AFTER, 0.1, Duration.ofMillis(100).toNanos(), time::get);
+
+    @Test
+    void shouldSendLessTrafficToBusyInstances() {
+        loadBalancer.loadReported(busy, new LoadReport(0.9, 0));
+        loadBalancer.loadReported(idle1, new LoadReport(0.3, 0));
+        loadBalancer.loadReported(idle2, LoadReport.parse("cpu_utilization=0.2, queue=1"));
+
+        Map<String, Integer> selections = select(loadBalancer, 7000);
+
+        // weights 1/0.9, 1/0.3 and 1/0.3: the busy instance gets 1/7 of the traffic
+        assertThat(selections.get(busy.getValue())).isBetween(850, 1150);
+        assertThat(selections.get(idle1.getValue())).isBetween(2800, 3200);
+    }
+
+    @Test
+    void shouldGiveMeanWeightToInstancesWithoutReports() {
+        loadBalancer.loadReported(busy, new LoadReport(1.0, 0));
+        loadBalancer.loadReported(idle1, new LoadReport(0.25, 0));
+
+        Map<String, Integer> selections = select(loadBalancer, 7500);
+
+        // weights 1, 4 and the mean, 2.5
+        assertThat(selections.get(busy.getValue())).isBetween(850, 1150);
+        assertThat(selections.get(idle2.getValue())).isBetween(2250, 2750);
+    }
+
+    @Test
+    void shouldFallBackToRoundRobinWhenReportsAreStale() {
+        loadBalancer.loadReported(busy, new LoadReport(0.9, 0));
+        loadBalancer.loadReported(idle1, new LoadReport(0.1, 0));
+        select(loadBalancer, 10);
+
+        time.set(STALE_AFTER);
+        Map<String, Integer> selections = select(loadBalancer, 3000);
+
+        assertThat(selections.values()).containsOnly(1000);
+    }
+
+    @Test
+    void shouldSmoothReports() {
+        loadBalancer.loadReported(busy, new LoadReport(0.2, 0));
+        time.set(HALF_LIFE);
+        loadBalancer.loadReported(busy, new LoadReport(1.0, 0));
+
+        assertThat(loadBalancer.smoothedLoad(busy)).isCloseTo(0.6, within(0.001));
+
+        time.set(HALF_LIFE + STALE_AFTER);
+        loadBalancer.loadReported(busy, new LoadReport(0.4, 0));
+
+        // the previous value is stale, it is not averaged in
+        assertThat(loadBalancer.smoothedLoad(busy)).isCloseTo(0.4, within(0.001));
+    }
+
+    @Test
+    void shouldSelectTheSameWayWithTheSameSeed() {
+        assertThat(selections(new Random(7))).isEqualTo(selections(new Random(7)));
+    }
+
+    private List<String> selections(Random random) {
+        UtilizationLoadBalancer loadBalancer = new UtilizationLoadBalancer(serviceDiscovery,
+                new InstanceStateTable(InstanceStateTable.DEFAULT_DRAIN_TIMEOUT, time::get, random), HALF_LIFE,
+                STALE_AFTER, 0.1, Duration.ofMillis(100).toNanos(), time::get);
+        loadBalancer.loadReported(busy, new LoadReport(0.9, 0));
+        loadBalancer.loadReported(idle1, new LoadReport(0.3, 0));
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            result.add(loadBalancer.selectServiceInstanceIfAvailable().getValue());
+        }
+        return result;
+    }
+
+    private Map<String, Integer> select(LoadBalancer loadBalancer, int count) {
+        Map<String, Integer> result = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            result.merge(loadBalancer.selectServiceInstanceIfAvailable().getValue(), 1, Integer::sum);
+        }
+        return result;
+    }
+}
@@ -20,71 +20,99 @@ public class MicroProfileConfigProvider implements DuxConfigProvider {
     public static final String DUX = "dux";
     public static final String LOAD_BALANCER = "load-balancer";
     public static final String SERVICE_DISCOVERY = "service-discovery";
+    private static final String DUX_PREFIX = DUX + ".";
     private final List<ServiceConfig> serviceConfigs = new ArrayList<>();
 
     public MicroProfileConfigProvider() {
         Config config = ConfigProvider.getConfig();
 
-        Map<String, Map<String, String>> propertiesByServiceName = new HashMap<>();
+        // single pass over the properties, all Dux properties are of form
+        // dux.<service-name>.(load-balancer|service-discovery)[.<parameter>]
+        Map<String, ServiceProperties> propertiesByServiceName = new HashMap<>();
 
         for (String propertyName : config.getPropertyNames()) {
-            String[] property = propertyName.split("\\.");
-            if (property.length < 1 || !property[0].equals(DUX)) {
+            if (!propertyName.startsWith(DUX_PREFIX)) {
                 continue;
             }
 
-            // all properties are now of form
-            // dux.<service-name>.(load-balancer|service-discovery)...
-            if (property.length < 3) {
+            int serviceNameEnd = propertyName.indexOf('.', DUX_PREFIX.length());
+            if (serviceNameEnd < 0) {
                 log.warn("Potentially invalid property for SmallRye Dux: " + propertyName);
+                continue;
             }
 
-            String serviceName = property[1];
-            Map<String, String> serviceProperties = propertiesByServiceName.computeIfAbsent(serviceName,
-                    ignored -> new HashMap<>());
-
-            serviceProperties.put(propertyName.substring(property[0].length() + property[1].length() + 2),
-                    config.getValue(propertyName, String.class));
+            String serviceName = propertyName.substring(DUX_PREFIX.length(), serviceNameEnd);
+            ServiceProperties serviceProperties = propertiesByServiceName.computeIfAbsent(serviceName,
+                    ServiceProperties::new);
+
+            int elementStart = serviceNameEnd + 1;
+            if (isElement(propertyName, elementStart, LOAD_BALANCER)) {
+                serviceProperties.loadBalancer = add(propertyName, elementStart + LOAD_BALANCER.length(),
+                        config, serviceProperties.loadBalancer);
+            } else if (isElement(propertyName, elementStart, SERVICE_DISCOVERY)) {
+                serviceProperties.serviceDiscovery = add(propertyName, elementStart + SERVICE_DISCOVERY.length(),
+                        config, serviceProperties.serviceDiscovery);
+            } else {
+                log.warn("Potentially invalid property for SmallRye Dux: " + propertyName);
+            }
         }
 
-        for (Map.Entry<String, Map<String, String>> serviceEntry : propertiesByServiceName.entrySet()) {
+        for (ServiceProperties serviceProperties : propertiesByServiceName.values()) {
             SimpleServiceConfig.Builder builder = new SimpleServiceConfig.Builder();
+            builder.setServiceName(serviceProperties.serviceName);
 
-            Map<String, String> properties = serviceEntry.getValue();
-            String loadBalancerType = properties.get(LOAD_BALANCER);
-            builder.setServiceName(serviceEntry.getKey());
-            if (loadBalancerType != null) {
-                SimpleServiceConfig.SimpleLoadBalancerConfig loadBalancer = new SimpleServiceConfig.SimpleLoadBalancerConfig(
-                        loadBalancerType, propertiesForPrefix(LOAD_BALANCER, properties));
-
-                builder = builder.setLoadBalancer(loadBalancer);
+            ElementProperties loadBalancer = serviceProperties.loadBalancer;
+            if (loadBalancer != null && loadBalancer.type != null) {
+                builder = builder.setLoadBalancer(new SimpleServiceConfig.SimpleLoadBalancerConfig(
+                        loadBalancer.type, loadBalancer.parameters));
             }
 
-            String serviceDiscoveryType = properties.get(SERVICE_DISCOVERY);
-            if (serviceDiscoveryType != null) {
-                SimpleServiceConfig.SimpleServiceDiscoveryConfig serviceDiscovery = new SimpleServiceConfig.SimpleServiceDiscoveryConfig(
-                        serviceDiscoveryType, propertiesForPrefix(SERVICE_DISCOVERY, properties));
-
-                builder = builder.setServiceDiscovery(serviceDiscovery);
+            ElementProperties serviceDiscovery = serviceProperties.serviceDiscovery;
+            if (serviceDiscovery != null && serviceDiscovery.type != null) {
+                builder = builder.setServiceDiscovery(new SimpleServiceConfig.SimpleServiceDiscoveryConfig(
+                        serviceDiscovery.type, serviceDiscovery.parameters));
             }
 
             serviceConfigs.add(builder.build());
         }
     }
 
-    private Map<String, String> propertiesForPrefix(String prefix, Map<String, String> original) {
-        prefix = prefix.endsWith(".") ? prefix : prefix + ".";
-        Map<String, String> result = new HashMap<>();
+    /**
+     * checks if the property, starting at {@code start}, is either the element or a parameter of the element
+     */
+    private static boolean isElement(String propertyName, int start, String element) {
+        int end = start + element.length();
+        return propertyName.startsWith(element, start)
+                && (propertyName.length() == end || propertyName.charAt(end) == '.');
+    }
+
+    private static ElementProperties add(String propertyName, int elementEnd, Config config,
+            ElementProperties properties) {
+        if (properties == null) {
+            properties = new ElementProperties();
+        }
+        String value = config.getValue(propertyName, String.class);
+        if (propertyName.length() == elementEnd) {
+            properties.type = value;
+        } else {
+            properties.parameters.put(propertyName.substring(elementEnd + 1), value);
+        }
+        return properties;
+    }
+
+    private static class ServiceProperties {
+        private final String serviceName;
+        private ElementProperties loadBalancer;
+        private ElementProperties serviceDiscovery;
 
-        for (Map.Entry<String, String> entry : original.entrySet()) {
-            String propertyName = entry.getKey();
-            if (propertyName.startsWith(prefix)) {
-                String nameWithoutPrefix = propertyName.substring(prefix.length());
-                result.put(nameWithoutPrefix, entry.getValue());
-            }
+        private ServiceProperties(String serviceName) {
+            this.serviceName = serviceName;
         }
+    }
 
-        return result;
+    private static class ElementProperties {
+        private String type;
+        private final Map<String, String> parameters = new HashMap<>();
     }
 
     @Override
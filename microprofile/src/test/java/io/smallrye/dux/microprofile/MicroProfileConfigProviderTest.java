@@ -155,6 +155,33 @@ public class MicroProfileConfigProviderTest {
         assertThat(lb.getConfig().parameters()).isEmpty();
     }
 
+    @Test
+    void shouldSkipUnrelatedProperties() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("dux." + FIRST_SERVICE + ".service-discovery", "test-sd-1");
+        properties.put("dux." + FIRST_SERVICE + ".service-discovery.nested.prop", "nested-value");
+        properties.put("dux." + FIRST_SERVICE + ".load-balancer", "test-lb-1");
+        properties.put("dux." + FIRST_SERVICE + ".load-balancers.not-a-param", "ignored");
+        properties.put("dux." + FIRST_SERVICE, "ignored");
+        properties.put("duxx." + SECOND_SERVICE + ".service-discovery", "test-sd-2");
+        properties.put("some.dux." + SECOND_SERVICE + ".service-discovery", "test-sd-2");
+        for (int i = 0; i < 1000; i++) {
+            properties.put("unrelated.property." + i, "value-" + i);
+        }
+
+        Dux dux = duxForConfig(properties);
+
+        TestServiceDiscovery sd = (TestServiceDiscovery) dux.getServiceDiscovery(FIRST_SERVICE);
+        assertThat(sd.getConfig().parameters()).hasSize(1)
+                .containsAllEntriesOf(Map.of("nested.prop", "nested-value"));
+
+        TestLoadBalancer lb = (TestLoadBalancer) dux.getLoadBalancer(FIRST_SERVICE);
+        assertThat(lb.getConfig().parameters()).isEmpty();
+
+        Assertions.assertThatThrownBy(() -> dux.getServiceDiscovery(SECOND_SERVICE))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
     private Dux duxForConfig(Map<String, String> properties) {
         SmallRyeConfig config = new SmallRyeConfigBuilder()
                 .withSources(new ConfigValuePropertiesConfigSource(properties, "test-config-source", 0))
@@ -0,0 +1,193 @@
+package io.smallrye.dux.retry;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import io.smallrye.dux.Dux;
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Calls a service through its load balancer, retrying failed calls on other instances.
+ * <p>
+ * A retry waits for a jittered exponential backoff: a random time between 0 and
+ * {@code min(max-backoff, initial-backoff * 2^(attempt - 1))}. Retries are also limited by a {@link RetryBudget},
+ * so that the retries of all the callers of a service cannot multiply the load during an incident.
+ * A retrier, and its budget, is meant to be shared by all the callers of a service.
+ * <p>
+ * The load balancer is notified about the start and the end of every attempt, see
+ * {@link LoadBalancer#requestStarted(ServiceInstance)}. A cancelled attempt ends with a
+ * {@link java.util.concurrent.CancellationException}.
+ *
+ * <pre>
+ * Retrier retrier = new Retrier.Builder(dux, "my-service").build();
+ * Uni&lt;String&gt; response = retrier.execute(instance -&gt; client.get(instance.getValue()));
+ * </pre>
+ */
+public class Retrier {
+
+    /**
+     * Number of times the load balancer is asked for an instance that hasn't failed yet, before giving up
+     * and retrying on an instance that has
+     */
+    static final int MAX_SELECTIONS = 8;
+
+    private final LoadBalancer loadBalancer;
+    private final RetryBudget budget;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final Predicate<Throwable> retryOn;
+
+    private Retrier(Builder builder) {
+        this.loadBalancer = builder.loadBalancer;
+        this.budget = builder.budget;
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoffNanos = builder.initialBackoff.toNanos();
+        this.maxBackoffNanos = builder.maxBackoff.toNanos();
+        this.retryOn = builder.retryOn;
+    }
+
+    /**
+     * Calls an instance of the service, and other instances if the call fails
+     *
+     * @param call the call to an instance
+     * @param <T> type of the result
+     * @return the result of the first successful attempt, or the failure of the last one
+     */
+    public <T> Uni<T> execute(Function<ServiceInstance, Uni<T>> call) {
+        return Uni.createFrom().deferred(() -> {
+            budget.requestStarted();
+            return attempt(call, 1, Set.of());
+        });
+    }
+
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    private <T> Uni<T> attempt(Function<ServiceInstance, Uni<T>> call, int attempt, Set<Long> failed) {
+        return select(failed, MAX_SELECTIONS).onItem().transformToUni(instance -> {
+            if (instance == null) {
+                return Uni.createFrom().failure(new IllegalStateException("No service instance available"));
+            }
+            loadBalancer.requestStarted(instance);
+            long start = System.nanoTime();
+            Uni<T> result;
+            try {
+                result = call.apply(instance);
+            } catch (RuntimeException e) {
+                result = Uni.createFrom().failure(e);
+            }
+            return result
+                    // a cancelled attempt finishes the request too, so that it is not counted in flight forever
+                    .onTermination().invoke((item, failure, cancelled) -> loadBalancer.requestFinished(instance,
+                            cancelled ? new CancellationException("Attempt cancelled") : failure,
+                            System.nanoTime() - start))
+                    .onFailure().recoverWithUni(failure -> {
+                        if (attempt >= maxAttempts || !retryOn.test(failure) || !budget.tryRetry()) {
+                            return Uni.createFrom().failure(failure);
+                        }
+                        Set<Long> nowFailed = new HashSet<>(failed);
+                        nowFailed.add(instance.getId());
+                        return Uni.createFrom().item(attempt)
+                                .onItem().delayIt().by(backoff(attempt))
+                                .onItem().transformToUni(ignored -> attempt(call, attempt + 1, nowFailed));
+                    });
+        });
+    }
+
+    private Uni<ServiceInstance> select(Set<Long> failed, int remaining) {
+        ServiceInstance available = loadBalancer.selectServiceInstanceIfAvailable();
+        Uni<ServiceInstance> selected = available != null
+                ? Uni.createFrom().item(available)
+                : loadBalancer.selectServiceInstance();
+        if (failed.isEmpty()) {
+            return selected;
+        }
+        return selected.onItem().transformToUni(instance -> {
+            if (instance != null && failed.contains(instance.getId()) && remaining > 1) {
+                return select(failed, remaining - 1);
+            }
+            return Uni.createFrom().item(instance);
+        });
+    }
+
+    Duration backoff(int attempt) {
+        int shift = attempt - 1;
+        long ceiling = shift >= Long.numberOfLeadingZeros(initialBackoffNanos) - 1
+                ? maxBackoffNanos // doubling once more would overflow
+                : Math.min(maxBackoffNanos, initialBackoffNanos << shift);
+        return Duration.ofNanos(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    public static class Builder {
+        final LoadBalancer loadBalancer;
+        RetryBudget budget = new RetryBudget(0.1, 10, 100);
+        int maxAttempts = 3;
+        Duration initialBackoff = Duration.ofMillis(25);
+        Duration maxBackoff = Duration.ofSeconds(1);
+        Predicate<Throwable> retryOn = failure -> true;
+
+        public Builder(LoadBalancer loadBalancer) {
+            this.loadBalancer = loadBalancer;
+        }
+
+        public Builder(Dux dux, String serviceName) {
+            this(dux.getLoadBalancer(serviceName));
+        }
+
+        /**
+         * @param budget retry budget, by default retries are limited to 10% of requests plus 10 per second
+         * @return this builder
+         */
+        public Builder setBudget(RetryBudget budget) {
+            this.budget = budget;
+            return this;
+        }
+
+        /**
+         * @param maxAttempts maximum number of attempts, including the first one, 3 by default
+         * @return this builder
+         */
+        public Builder setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public Builder setInitialBackoff(Duration initialBackoff) {
+            this.initialBackoff = initialBackoff;
+            return this;
+        }
+
+        public Builder setMaxBackoff(Duration maxBackoff) {
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        /**
+         * @param retryOn failures worth a retry, all of them by default
+         * @return this builder
+         */
+        public Builder setRetryOn(Predicate<Throwable> retryOn) {
+            this.retryOn = retryOn;
+            return this;
+        }
+
+        public Retrier build() {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("Max attempts has to be positive, got " + maxAttempts);
+            }
+            if (initialBackoff.isNegative() || maxBackoff.compareTo(initialBackoff) < 0) {
+                throw new IllegalArgumentException("Invalid backoff: initial " + initialBackoff + ", max " + maxBackoff);
+            }
+            return new Retrier(this);
+        }
+    }
+}
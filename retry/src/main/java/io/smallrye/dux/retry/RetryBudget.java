@@ -0,0 +1,105 @@
+package io.smallrye.dux.retry;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket limiting retries to a fraction of the requests, plus a minimal rate.
+ * <p>
+ * Every request deposits {@code retry-ratio} of a token, every retry withdraws a whole token. On top of that,
+ * the bucket is refilled with {@code min-retries-per-second} tokens per second, so that a service with little
+ * traffic can still retry. The bucket holds at most {@code capacity} tokens, which bounds the burst of retries
+ * after a calm period.
+ * <p>
+ * The accounting is lock-free: the balance, kept in thousandths of a token, and the time of the last refill are
+ * updated with compare-and-set. One budget is meant to be shared by all the callers of a service.
+ */
+public class RetryBudget {
+
+    private static final long TOKEN = 1000;
+
+    private final long deposit;
+    private final long capacity;
+    private final double refillPerNano;
+    private final LongSupplier ticker;
+
+    private final AtomicLong balance;
+    private final AtomicLong lastRefill;
+
+    /**
+     * @param retryRatio ratio of retries to requests, e.g. 0.1 for retries not exceeding 10% of requests
+     * @param minRetriesPerSecond number of retries allowed per second regardless of the number of requests
+     * @param capacity maximum number of tokens
+     */
+    public RetryBudget(double retryRatio, double minRetriesPerSecond, int capacity) {
+        this(retryRatio, minRetriesPerSecond, capacity, System::nanoTime);
+    }
+
+    RetryBudget(double retryRatio, double minRetriesPerSecond, int capacity, LongSupplier ticker) {
+        if (retryRatio < 0 || minRetriesPerSecond < 0 || capacity < 1) {
+            throw new IllegalArgumentException("Invalid retry budget: retry ratio " + retryRatio
+                    + ", min retries per second " + minRetriesPerSecond + ", capacity " + capacity);
+        }
+        this.deposit = Math.round(retryRatio * TOKEN);
+        this.capacity = capacity * TOKEN;
+        this.refillPerNano = minRetriesPerSecond * TOKEN / Duration.ofSeconds(1).toNanos();
+        this.ticker = ticker;
+        this.balance = new AtomicLong(this.capacity);
+        this.lastRefill = new AtomicLong(ticker.getAsLong());
+    }
+
+    /**
+     * Records a request, i.e. a first attempt
+     */
+    public void requestStarted() {
+        add(deposit);
+    }
+
+    /**
+     * Takes a token for a retry, if there is one
+     *
+     * @return true if the retry is allowed
+     */
+    public boolean tryRetry() {
+        refill();
+        long current;
+        do {
+            current = balance.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    /**
+     * @return number of retries currently allowed
+     */
+    public long available() {
+        refill();
+        return balance.get() / TOKEN;
+    }
+
+    private void refill() {
+        if (refillPerNano == 0) {
+            return;
+        }
+        long last = lastRefill.get();
+        long now = ticker.getAsLong();
+        long amount = (long) ((now - last) * refillPerNano);
+        // only the thread that moves the refill time forward adds the tokens
+        if (amount > 0 && lastRefill.compareAndSet(last, now)) {
+            add(amount);
+        }
+    }
+
+    private void add(long amount) {
+        long current;
+        long next;
+        do {
+            current = balance.get();
+            next = Math.min(capacity, current + amount);
+        } while (next != current && !balance.compareAndSet(current, next));
+    }
+}
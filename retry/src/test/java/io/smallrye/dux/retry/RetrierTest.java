@@ -0,0 +1,151 @@
+package io.smallrye.dux.retry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.loadbalancer.roundrobin.RoundRobinLoadBalancer;
+import io.smallrye.dux.servicediscovery.staticlist.StaticListServiceDiscovery;
+import io.smallrye.dux.spi.ServiceInstanceIds;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.Cancellable;
+
+public class RetrierTest {
+
+    private final ServiceInstance first = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8080");
+    private final ServiceInstance second = new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8081");
+
+    private final LoadBalancer loadBalancer = new RoundRobinLoadBalancer(
+            new StaticListServiceDiscovery(List.of(first, first, second)));
+
+    private final List<String> attempts = new CopyOnWriteArrayList<>();
+
+    @Test
+    void shouldRetryOnOtherInstance() {
+        Retrier retrier = builder().build();
+
+        String result = retrier.execute(this::failOnFirst).await().atMost(Duration.ofSeconds(5));
+
+        assertThat(result).isEqualTo("response from " + second.getValue());
+        // the load balancer returns the first instance twice in a row, the retry skips it
+        assertThat(attempts).containsExactly(first.getValue(), second.getValue());
+    }
+
+    @Test
+    void shouldGiveUpAfterMaxAttempts() {
+        Retrier retrier = builder().setMaxAttempts(3).build();
+
+        assertThatThrownBy(() -> retrier.execute(this::failAlways).await().atMost(Duration.ofSeconds(5)))
+                .hasMessageContaining("failure");
+        assertThat(attempts).hasSize(3);
+    }
+
+    @Test
+    void shouldNotRetryUnretryableFailures() {
+        Retrier retrier = builder().setRetryOn(failure -> !(failure instanceof IllegalStateException)).build();
+
+        assertThatThrownBy(() -> retrier.execute(this::failAlways).await().atMost(Duration.ofSeconds(5)))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(attempts).hasSize(1);
+    }
+
+    @Test
+    void shouldStopRetryingWhenBudgetIsExhausted() {
+        Retrier retrier = builder().setBudget(new RetryBudget(0, 0, 2)).setMaxAttempts(10).build();
+
+        assertThatThrownBy(() -> retrier.execute(this::failAlways).await().atMost(Duration.ofSeconds(5)));
+        assertThat(attempts).hasSize(3);
+
+        attempts.clear();
+        assertThatThrownBy(() -> retrier.execute(this::failAlways).await().atMost(Duration.ofSeconds(5)));
+        assertThat(attempts).hasSize(1);
+    }
+
+    @Test
+    void shouldRefillBudgetWithRequestsAndTime() {
+        AtomicLong time = new AtomicLong();
+        RetryBudget budget = new RetryBudget(0.1, 1, 5, time::get);
+        while (budget.tryRetry()) {
+            // drain the initial tokens
+        }
+
+        for (int i = 0; i < 20; i++) {
+            budget.requestStarted();
+        }
+        assertThat(budget.available()).isEqualTo(2);
+
+        time.set(Duration.ofSeconds(2).toNanos());
+        assertThat(budget.available()).isEqualTo(4);
+
+        time.set(Duration.ofMinutes(1).toNanos());
+        assertThat(budget.available()).isEqualTo(5);
+    }
+
+    @Test
+    void shouldGrowBackoffExponentially() {
+        Retrier retrier = new Retrier.Builder(loadBalancer)
+                .setInitialBackoff(Duration.ofMillis(100))
+                .setMaxBackoff(Duration.ofMillis(300))
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(retrier.backoff(1)).isLessThanOrEqualTo(Duration.ofMillis(100));
+            assertThat(retrier.backoff(2)).isLessThanOrEqualTo(Duration.ofMillis(200));
+            assertThat(retrier.backoff(40)).isLessThanOrEqualTo(Duration.ofMillis(300));
+        }
+    }
+
+    @Test
+    void shouldFinishCancelledAttempt() {
+        List<Throwable> finished = new CopyOnWriteArrayList<>();
+        LoadBalancer recording = new LoadBalancer() {
+            @Override
+            public Uni<ServiceInstance> selectServiceInstance() {
+                return loadBalancer.selectServiceInstance();
+            }
+
+            @Override
+            public void requestFinished(ServiceInstance instance, Throwable failure) {
+                finished.add(failure);
+            }
+        };
+        Retrier retrier = new Retrier.Builder(recording).build();
+
+        Cancellable attempt = retrier.execute(instance -> Uni.createFrom().<String> nothing())
+                .subscribe().with(item -> {
+                });
+        assertThat(finished).isEmpty();
+        attempt.cancel();
+
+        assertThat(finished).hasSize(1);
+        assertThat(finished.get(0)).isInstanceOf(CancellationException.class);
+    }
+
+    private Retrier.Builder builder() {
+        return new Retrier.Builder(loadBalancer)
+                .setInitialBackoff(Duration.ofMillis(1))
+                .setMaxBackoff(Duration.ofMillis(5));
+    }
+
+    private Uni<String> failOnFirst(ServiceInstance instance) {
+        attempts.add(instance.getValue());
+        if (instance.getId() == first.getId()) {
+            return Uni.createFrom().failure(new RuntimeException("failure of " + instance.getValue()));
+        }
+        return Uni.createFrom().item("response from " + instance.getValue());
+    }
+
+    private Uni<String> failAlways(ServiceInstance instance) {
+        attempts.add(instance.getValue());
+        return Uni.createFrom().failure(new IllegalStateException("failure of " + instance.getValue()));
+    }
+}
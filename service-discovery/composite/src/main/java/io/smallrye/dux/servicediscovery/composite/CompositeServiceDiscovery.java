@@ -0,0 +1,195 @@
+package io.smallrye.dux.servicediscovery.composite;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.jboss.logging.Logger;
+
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Service discovery combining the results of several child service discoveries.
+ * <p>
+ * All the children are queried concurrently. A child that fails, or does not answer within the timeout,
+ * is treated as failing for this query, so that a single slow source cannot stall the result.
+ * In {@link Mode#FAILOVER} mode, the instances of a child are returned as soon as it answers, if all the children
+ * before it answered with no instances: the children after it are not waited for.
+ * <p>
+ * In {@link Mode#MERGE} mode, the merged list is kept and returned as long as the lists of the children do not
+ * change, so that load balancers caching state per list of instances see the same list.
+ */
+public final class CompositeServiceDiscovery implements ServiceDiscovery {
+
+    private static final Logger log = Logger.getLogger(CompositeServiceDiscovery.class);
+
+    public enum Mode {
+        /**
+         * Instances of all the children, deduplicated by address
+         */
+        MERGE,
+        /**
+         * Instances of the first child, in the configured order, that is neither failing nor empty
+         */
+        FAILOVER
+    }
+
+    private final List<ServiceDiscovery> children;
+    private final Mode mode;
+    private final Duration timeout;
+
+    private volatile Merged merged;
+
+    public CompositeServiceDiscovery(List<ServiceDiscovery> children, Mode mode, Duration timeout) {
+        this.children = new ArrayList<>(children);
+        this.mode = mode;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public Multi<ServiceInstance> getServiceInstances() {
+        Uni<List<ServiceInstance>> result;
+        if (mode == Mode.FAILOVER) {
+            result = Uni.createFrom().deferred(() -> {
+                // all the children are still queried concurrently, the lower ones in case the higher ones are empty
+                List<CompletableFuture<List<ServiceInstance>>> tiers = new ArrayList<>(children.size());
+                for (int i = 0; i < children.size(); i++) {
+                    tiers.add(query(i).subscribeAsCompletionStage());
+                }
+                return failover(tiers, 0);
+            });
+        } else {
+            List<Uni<List<ServiceInstance>>> results = new ArrayList<>(children.size());
+            for (int i = 0; i < children.size(); i++) {
+                results.add(query(i));
+            }
+            result = Uni.combine().all().unis(results).combinedWith(this::combine);
+        }
+        return result.onItem().transformToMulti(instances -> Multi.createFrom().iterable(instances));
+    }
+
+    @Override
+    public List<ServiceInstance> getServiceInstancesIfAvailable() {
+        List<List<ServiceInstance>> results = new ArrayList<>(children.size());
+        for (ServiceDiscovery child : children) {
+            List<ServiceInstance> instances = child.getServiceInstancesIfAvailable();
+            if (instances == null) {
+                return null;
+            }
+            results.add(instances);
+        }
+        return combine(results);
+    }
+
+    private Uni<List<ServiceInstance>> query(int childIndex) {
+        ServiceDiscovery child = children.get(childIndex);
+        List<ServiceInstance> available = child.getServiceInstancesIfAvailable();
+        if (available != null) {
+            return Uni.createFrom().item(available);
+        }
+        // a null item marks a failing child
+        return child.getServiceInstances().collect().asList()
+                .ifNoItem().after(timeout).recoverWithItem(() -> {
+                    log.debugf("Child service discovery %d did not respond within %s", childIndex, timeout);
+                    return null;
+                })
+                .onFailure().recoverWithItem(failure -> {
+                    log.debugf(failure, "Child service discovery %d failed", childIndex);
+                    return null;
+                });
+    }
+
+    private Uni<List<ServiceInstance>> failover(List<CompletableFuture<List<ServiceInstance>>> tiers, int tier) {
+        if (tier == tiers.size()) {
+            return Uni.createFrom().item(Collections.emptyList());
+        }
+        return Uni.createFrom().completionStage(tiers.get(tier)).onItem().transformToUni(instances -> {
+            if (instances != null && !instances.isEmpty()) {
+                // the lower tiers are not needed anymore
+                for (int i = tier + 1; i < tiers.size(); i++) {
+                    tiers.get(i).cancel(false);
+                }
+                return Uni.createFrom().item(instances);
+            }
+            return failover(tiers, tier + 1);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ServiceInstance> combine(List<?> results) {
+        if (mode == Mode.FAILOVER) {
+            for (Object result : results) {
+                List<ServiceInstance> instances = (List<ServiceInstance>) result;
+                if (instances != null && !instances.isEmpty()) {
+                    return instances;
+                }
+            }
+            return Collections.emptyList();
+        }
+
+        Merged current = merged;
+        if (current != null && current.isMergeOf(results)) {
+            return current.instances;
+        }
+        Map<String, ServiceInstance> instancesByAddress = new LinkedHashMap<>();
+        for (Object result : results) {
+            if (result != null) {
+                for (ServiceInstance instance : (List<ServiceInstance>) result) {
+                    instancesByAddress.putIfAbsent(instance.getValue(), instance);
+                }
+            }
+        }
+        current = new Merged(results.toArray(),
+                Collections.unmodifiableList(new ArrayList<>(instancesByAddress.values())));
+        merged = current;
+        return current.instances;
+    }
+
+    /**
+     * Merged list of instances, and the lists of the children it was merged from, null for a failing child
+     */
+    private static final class Merged {
+        private final Object[] sources;
+        private final List<ServiceInstance> instances;
+
+        private Merged(Object[] sources, List<ServiceInstance> instances) {
+            this.sources = sources;
+            this.instances = instances;
+        }
+
+        private boolean isMergeOf(List<?> results) {
+            if (results.size() != sources.length) {
+                return false;
+            }
+            for (int i = 0; i < sources.length; i++) {
+                if (!sameInstances((List<?>) sources[i], (List<?>) results.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean sameInstances(List<?> previous, List<?> current) {
+            if (previous == current) {
+                return true;
+            }
+            if (previous == null || current == null || previous.size() != current.size()) {
+                return false;
+            }
+            // children that copy their list on every call still have the same instances
+            for (int i = 0; i < previous.size(); i++) {
+                if (previous.get(i) != current.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package io.smallrye.dux.servicediscovery.composite;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import io.smallrye.dux.DuxScheduler;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.config.ServiceDiscoveryConfig;
+import io.smallrye.dux.spi.Providers;
+import io.smallrye.dux.spi.ServiceDiscoveryProvider;
+import io.smallrye.dux.spi.SimpleServiceConfig;
+
+public class CompositeServiceDiscoveryProvider implements ServiceDiscoveryProvider {
+
+    public static final String CHILDREN = "children";
+    public static final String MODE = "mode";
+    public static final String TIMEOUT = "timeout";
+    public static final String TYPE = "type";
+
+    @Override
+    public ServiceDiscovery createServiceDiscovery(ServiceDiscoveryConfig config) {
+        return createServiceDiscovery(config, null);
+    }
+
+    @Override
+    public ServiceDiscovery createServiceDiscovery(ServiceDiscoveryConfig config, DuxScheduler scheduler) {
+        // children are listed in the order of their priority, each child is configured with its name as prefix:
+        // dux.<service-name>.service-discovery=composite
+        // dux.<service-name>.service-discovery.children=registry,fallback
+        // dux.<service-name>.service-discovery.mode=failover (or merge)
+        // dux.<service-name>.service-discovery.timeout=1000 (milliseconds)
+        // dux.<service-name>.service-discovery.registry.type=http-watch
+        // dux.<service-name>.service-discovery.registry.url=...
+        // dux.<service-name>.service-discovery.fallback.type=static
+        // dux.<service-name>.service-discovery.fallback.1=...
+        Map<String, String> parameters = config.parameters();
+        String childNames = parameters.get(CHILDREN);
+        if (childNames == null || childNames.isBlank()) {
+            throw new IllegalArgumentException("No children defined for composite service discovery");
+        }
+
+        List<ServiceDiscovery> children = new ArrayList<>();
+        for (String childName : childNames.split(",")) {
+            children.add(createChild(childName.trim(), parameters, scheduler));
+        }
+
+        CompositeServiceDiscovery.Mode mode = CompositeServiceDiscovery.Mode
+                .valueOf(parameters.getOrDefault(MODE, "failover").toUpperCase(Locale.ROOT));
+        Duration timeout = Duration.ofMillis(Long.parseLong(parameters.getOrDefault(TIMEOUT, "1000")));
+
+        return new CompositeServiceDiscovery(children, mode, timeout);
+    }
+
+    private ServiceDiscovery createChild(String name, Map<String, String> parameters, DuxScheduler scheduler) {
+        String prefix = name + ".";
+        Map<String, String> childParameters = new HashMap<>();
+        for (Map.Entry<String, String> entry : parameters.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                childParameters.put(entry.getKey().substring(prefix.length()), entry.getValue());
+            }
+        }
+
+        String type = childParameters.remove(TYPE);
+        if (type == null) {
+            throw new IllegalArgumentException("Service discovery type not defined for composite child " + name);
+        }
+        ServiceDiscoveryProvider provider = Providers.serviceDiscoveryProvider(type);
+        ServiceDiscoveryConfig childConfig = new SimpleServiceConfig.SimpleServiceDiscoveryConfig(type, childParameters);
+        // the scheduler is passed on when there is one, children may run their refreshes on it
+        return scheduler == null
+                ? provider.createServiceDiscovery(childConfig)
+                : provider.createServiceDiscovery(childConfig, scheduler);
+    }
+
+    @Override
+    public String type() {
+        return "composite";
+    }
+}
@@ -0,0 +1,133 @@
+package io.smallrye.dux.servicediscovery.composite;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.spi.ServiceInstanceIds;
+import io.smallrye.dux.spi.SimpleServiceConfig;
+import io.smallrye.mutiny.Multi;
+
+public class CompositeServiceDiscoveryTest {
+
+    @Test
+    void shouldMergeAndDeduplicateByAddress() {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("children", "first,second");
+        parameters.put("mode", "merge");
+        parameters.put("first.type", "static");
+        parameters.put("first.1", "http://localhost:8080");
+        parameters.put("first.2", "http://localhost:8081");
+        parameters.put("second.type", "static");
+        parameters.put("second.1", "http://localhost:8081");
+        parameters.put("second.2", "http://localhost:8082");
+
+        assertThat(instances(parameters)).extracting(ServiceInstance::getValue)
+                .containsExactly("http://localhost:8080", "http://localhost:8081", "http://localhost:8082");
+    }
+
+    @Test
+    void shouldReturnSameMergedListUntilChildrenChange() {
+        MutableServiceDiscovery first = new MutableServiceDiscovery("http://localhost:8080");
+        MutableServiceDiscovery second = new MutableServiceDiscovery("http://localhost:8081");
+        ServiceDiscovery serviceDiscovery = new CompositeServiceDiscovery(List.of(first, second),
+                CompositeServiceDiscovery.Mode.MERGE, Duration.ofSeconds(1));
+
+        List<ServiceInstance> merged = serviceDiscovery.getServiceInstancesIfAvailable();
+        assertThat(serviceDiscovery.getServiceInstancesIfAvailable()).isSameAs(merged);
+        // a copy of the same instances is not a change
+        second.instances = List.copyOf(second.instances);
+        assertThat(serviceDiscovery.getServiceInstancesIfAvailable()).isSameAs(merged);
+
+        second.setAddresses("http://localhost:8081", "http://localhost:8082");
+        List<ServiceInstance> changed = serviceDiscovery.getServiceInstancesIfAvailable();
+        assertThat(changed).isNotSameAs(merged).extracting(ServiceInstance::getValue)
+                .containsExactly("http://localhost:8080", "http://localhost:8081", "http://localhost:8082");
+        assertThat(serviceDiscovery.getServiceInstances().collect().asList().await().atMost(Duration.ofSeconds(5)))
+                .containsExactlyElementsOf(changed);
+    }
+
+    @Test
+    void shouldFailOverToLowerTierWhenHigherTierIsEmptyOrFailing() {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("children", "empty,failing,fallback,unused");
+        parameters.put("empty.type", "static");
+        parameters.put("failing.type", "failing");
+        parameters.put("fallback.type", "static");
+        parameters.put("fallback.1", "http://localhost:8080");
+        parameters.put("unused.type", "static");
+        parameters.put("unused.1", "http://localhost:9090");
+
+        assertThat(instances(parameters)).extracting(ServiceInstance::getValue)
+                .containsExactly("http://localhost:8080");
+    }
+
+    @Test
+    void shouldNotBeStalledBySlowChild() {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("children", "slow,fallback");
+        parameters.put("timeout", "100");
+        parameters.put("slow.type", "never-responding");
+        parameters.put("fallback.type", "static");
+        parameters.put("fallback.1", "http://localhost:8080");
+
+        assertThat(instances(parameters)).extracting(ServiceInstance::getValue)
+                .containsExactly("http://localhost:8080");
+    }
+
+    @Test
+    void shouldNotWaitForLowerTierWhenHigherTierAnswers() {
+        ServiceDiscovery healthy = new MutableServiceDiscovery("http://localhost:8080");
+        ServiceDiscovery hanging = new ServiceDiscovery() {
+            @Override
+            public Multi<ServiceInstance> getServiceInstances() {
+                return Multi.createFrom().nothing();
+            }
+        };
+        ServiceDiscovery serviceDiscovery = new CompositeServiceDiscovery(List.of(healthy, hanging),
+                CompositeServiceDiscovery.Mode.FAILOVER, Duration.ofSeconds(30));
+
+        assertThat(serviceDiscovery.getServiceInstances().collect().asList().await().atMost(Duration.ofSeconds(1)))
+                .extracting(ServiceInstance::getValue).containsExactly("http://localhost:8080");
+    }
+
+    private List<ServiceInstance> instances(Map<String, String> parameters) {
+        ServiceDiscovery serviceDiscovery = new CompositeServiceDiscoveryProvider().createServiceDiscovery(
+                new SimpleServiceConfig.SimpleServiceDiscoveryConfig("composite", parameters));
+        return serviceDiscovery.getServiceInstances().collect().asList().await().atMost(Duration.ofSeconds(5));
+    }
+
+    private static class MutableServiceDiscovery implements ServiceDiscovery {
+        private volatile List<ServiceInstance> instances;
+
+        MutableServiceDiscovery(String... addresses) {
+            setAddresses(addresses);
+        }
+
+        void setAddresses(String... addresses) {
+            List<ServiceInstance> newInstances = new ArrayList<>();
+            for (String address : addresses) {
+                newInstances.add(new ServiceInstance(ServiceInstanceIds.next(), address));
+            }
+            instances = newInstances;
+        }
+
+        @Override
+        public Multi<ServiceInstance> getServiceInstances() {
+            return Multi.createFrom().iterable(instances);
+        }
+
+        @Override
+        public List<ServiceInstance> getServiceInstancesIfAvailable() {
+            return instances;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package io.smallrye.dux.servicediscovery.composite;
+
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.config.ServiceDiscoveryConfig;
+import io.smallrye.dux.spi.ServiceDiscoveryProvider;
+import io.smallrye.mutiny.Multi;
+
+public class NeverRespondingServiceDiscoveryProvider implements ServiceDiscoveryProvider {
+
+    @Override
+    public ServiceDiscovery createServiceDiscovery(ServiceDiscoveryConfig config) {
+        return () -> Multi.createFrom().nothing();
+    }
+
+    @Override
+    public String type() {
+        return "never-responding";
+    }
+}
@@ -0,0 +1,253 @@
+package io.smallrye.dux.servicediscovery.httpwatch;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.logging.Logger;
+
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.spi.ServiceInstanceIds;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Service discovery that watches a registry with blocking queries.
+ * <p>
+ * A single long-poll request is kept open for the service. The registry holds the request until the list of
+ * instances changes or the wait time elapses, and identifies versions of the list by an index header
+ * (sent back as the {@code index} query parameter) or an ETag (sent back in {@code If-None-Match}).
+ * The response body lists instance addresses, one per line. This plain text format is not the JSON of the catalog
+ * API of e.g. Consul, a registry answering in another format needs an endpoint, or a proxy, serving this one.
+ * <p>
+ * A registry that answers at once instead of holding the request, e.g. with a 304 for an unchanged ETag, is not
+ * asked again before {@code min-poll-interval} since the previous request. An index lower than the previous one,
+ * e.g. after a registry restart, resets the watch: the next request asks for the current list without an index.
+ * <p>
+ * Failed requests are retried with exponential backoff with jitter. Until the first list is received,
+ * {@link #getServiceInstances()} fails after {@code initial-timeout}, with the last failure in its message.
+ * Instances that are present in consecutive snapshots keep their ids.
+ */
+public final class HttpWatchServiceDiscovery implements ServiceDiscovery {
+
+    private static final Logger log = Logger.getLogger(HttpWatchServiceDiscovery.class);
+
+    private final HttpClient httpClient;
+    private final String url;
+    private final String indexHeader;
+    private final Duration wait;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long minPollIntervalNanos;
+    private final Duration initialTimeout;
+
+    private final CompletableFuture<List<ServiceInstance>> firstSnapshot = new CompletableFuture<>();
+    private volatile List<ServiceInstance> instances;
+
+    // accessed only by the watch loop, which never runs concurrently with itself
+    private Map<String, ServiceInstance> instancesByAddress = Collections.emptyMap();
+    private String index;
+    private String etag;
+    private long backoffMillis;
+    private long pollStartedAt;
+
+    private volatile String lastFailure;
+    private volatile boolean closed;
+    private volatile CompletableFuture<?> pending;
+
+    HttpWatchServiceDiscovery(HttpClient httpClient, String url, String indexHeader, Duration wait,
+            Duration initialBackoff, Duration maxBackoff, Duration minPollInterval, Duration initialTimeout) {
+        this.httpClient = httpClient;
+        this.url = url;
+        this.indexHeader = indexHeader;
+        this.wait = wait;
+        this.initialBackoffMillis = initialBackoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+        this.backoffMillis = initialBackoffMillis;
+        this.minPollIntervalNanos = minPollInterval.toNanos();
+        this.initialTimeout = initialTimeout;
+    }
+
+    @Override
+    public Multi<ServiceInstance> getServiceInstances() {
+        List<ServiceInstance> current = instances;
+        if (current != null) {
+            return Multi.createFrom().iterable(current);
+        }
+        // a copy, so that a subscriber giving up doesn't cancel the first snapshot for the others
+        return Uni.createFrom().completionStage(firstSnapshot::copy)
+                .ifNoItem().after(initialTimeout).failWith(() -> new IllegalStateException("No service instances from "
+                        + url + " within " + initialTimeout.toMillis() + " ms, last failure: " + lastFailure))
+                .onItem().transformToMulti(list -> Multi.createFrom().iterable(list));
+    }
+
+    @Override
+    public List<ServiceInstance> getServiceInstancesIfAvailable() {
+        return instances;
+    }
+
+    /**
+     * Stops watching the registry
+     */
+    public void close() {
+        closed = true;
+        CompletableFuture<?> current = pending;
+        if (current != null) {
+            current.cancel(true);
+        }
+    }
+
+    void start() {
+        poll();
+    }
+
+    private void poll() {
+        if (closed) {
+            return;
+        }
+        pollStartedAt = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> response;
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(requestUri())
+                    // the registry may hold the request for the whole wait time, give it some slack
+                    .timeout(wait.plusSeconds(10))
+                    .GET();
+            if (etag != null) {
+                request.header("If-None-Match", etag);
+            }
+            response = httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString());
+        } catch (RuntimeException e) {
+            // the watch would stop silently if the exception were left to the executor running the poll
+            retry("request could not be sent: " + e);
+            return;
+        }
+        pending = response.whenComplete(this::complete);
+    }
+
+    private void complete(HttpResponse<String> response, Throwable failure) {
+        // an exception thrown here would be swallowed by the future, and stop the watch
+        try {
+            if (failure != null) {
+                retry("request failed: " + failure.getMessage());
+            } else if (response.statusCode() == 304) {
+                pollAfterInterval();
+            } else if (response.statusCode() != 200) {
+                retry("unexpected response status " + response.statusCode());
+            } else if (handle(response)) {
+                backoffMillis = initialBackoffMillis;
+                poll();
+            } else {
+                pollAfterInterval();
+            }
+        } catch (RuntimeException e) {
+            retry("response could not be handled: " + e);
+        }
+    }
+
+    private URI requestUri() {
+        StringBuilder result = new StringBuilder(url)
+                .append(url.indexOf('?') < 0 ? '?' : '&')
+                .append("wait=").append(wait.toSeconds()).append('s');
+        if (index != null) {
+            result.append("&index=").append(URLEncoder.encode(index, StandardCharsets.UTF_8));
+        }
+        return URI.create(result.toString());
+    }
+
+    /**
+     * Polls again when the previous request returned without a change, at most once per {@code min-poll-interval}
+     */
+    private void pollAfterInterval() {
+        backoffMillis = initialBackoffMillis;
+        long delay = minPollIntervalNanos - (System.nanoTime() - pollStartedAt);
+        if (delay <= 0) {
+            poll();
+        } else {
+            pending = CompletableFuture.runAsync(this::poll,
+                    CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS));
+        }
+    }
+
+    /**
+     * @return true if the response contains a new list of instances
+     */
+    private boolean handle(HttpResponse<String> response) {
+        Optional<String> newIndex = response.headers().firstValue(indexHeader);
+        Optional<String> newEtag = response.headers().firstValue("ETag");
+
+        if (instances != null) {
+            if (newIndex.isPresent() ? newIndex.get().equals(index)
+                    : newEtag.isPresent() && newEtag.get().equals(etag)) {
+                // the wait time elapsed without any change
+                return false;
+            }
+        }
+        if (newIndex.isPresent() && isLower(newIndex.get(), index)) {
+            log.debugf("Watching %s, index went back from %s to %s, resetting", url, index, newIndex.get());
+            index = null;
+        } else {
+            index = newIndex.orElse(null);
+        }
+        etag = newEtag.orElse(null);
+
+        Map<String, ServiceInstance> newInstancesByAddress = new HashMap<>();
+        List<ServiceInstance> newInstances = new ArrayList<>();
+        for (String line : response.body().split("\n")) {
+            String address = line.trim();
+            if (address.isEmpty() || newInstancesByAddress.containsKey(address)) {
+                continue;
+            }
+            ServiceInstance instance = instancesByAddress.get(address);
+            if (instance == null) {
+                instance = new ServiceInstance(ServiceInstanceIds.next(), address);
+            }
+            newInstancesByAddress.put(address, instance);
+            newInstances.add(instance);
+        }
+
+        instancesByAddress = newInstancesByAddress;
+        List<ServiceInstance> snapshot = Collections.unmodifiableList(newInstances);
+        instances = snapshot;
+        firstSnapshot.complete(snapshot);
+        return true;
+    }
+
+    private static boolean isLower(String newIndex, String previousIndex) {
+        if (previousIndex == null) {
+            return false;
+        }
+        try {
+            return Long.parseLong(newIndex) < Long.parseLong(previousIndex);
+        } catch (NumberFormatException e) {
+            // not a numeric index, only compared for equality
+            return false;
+        }
+    }
+
+    private void retry(String reason) {
+        if (closed) {
+            return;
+        }
+        // full jitter, to avoid many watches retrying in sync after a registry outage
+        long delay = ThreadLocalRandom.current().nextLong(backoffMillis + 1);
+        lastFailure = reason;
+        log.debugf("Watching %s %s, retrying in %d ms", url, reason, delay);
+        backoffMillis = Math.min(backoffMillis * 2, maxBackoffMillis);
+
+        pending = CompletableFuture.runAsync(this::poll, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,58 @@
+package io.smallrye.dux.servicediscovery.httpwatch;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Map;
+
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.config.ServiceDiscoveryConfig;
+import io.smallrye.dux.spi.ServiceDiscoveryProvider;
+
+public class HttpWatchServiceDiscoveryProvider implements ServiceDiscoveryProvider {
+
+    public static final String URL = "url";
+    public static final String INDEX_HEADER = "index-header";
+    public static final String WAIT = "wait";
+    public static final String INITIAL_BACKOFF = "initial-backoff";
+    public static final String MAX_BACKOFF = "max-backoff";
+    public static final String MIN_POLL_INTERVAL = "min-poll-interval";
+    public static final String INITIAL_TIMEOUT = "initial-timeout";
+
+    /**
+     * A single client, and its connection pool, is shared by the watches of all the services
+     */
+    private static class Holder {
+        private static final HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @Override
+    public ServiceDiscovery createServiceDiscovery(ServiceDiscoveryConfig config) {
+        // dux.<service-name>.service-discovery=http-watch
+        // dux.<service-name>.service-discovery.url=http://registry:8080/v1/service/my-service
+        // dux.<service-name>.service-discovery.wait=30 (seconds, optional)
+        // dux.<service-name>.service-discovery.min-poll-interval=1000 (ms, between requests that returned no change)
+        // dux.<service-name>.service-discovery.initial-timeout=10000 (ms, for the first list of instances)
+        Map<String, String> parameters = config.parameters();
+        String url = parameters.get(URL);
+        if (url == null) {
+            throw new IllegalArgumentException("No url defined for http-watch service discovery");
+        }
+
+        HttpWatchServiceDiscovery serviceDiscovery = new HttpWatchServiceDiscovery(Holder.httpClient, url,
+                parameters.getOrDefault(INDEX_HEADER, "X-Index"),
+                Duration.ofSeconds(Long.parseLong(parameters.getOrDefault(WAIT, "30"))),
+                Duration.ofMillis(Long.parseLong(parameters.getOrDefault(INITIAL_BACKOFF, "100"))),
+                Duration.ofMillis(Long.parseLong(parameters.getOrDefault(MAX_BACKOFF, "30000"))),
+                Duration.ofMillis(Long.parseLong(parameters.getOrDefault(MIN_POLL_INTERVAL, "1000"))),
+                Duration.ofMillis(Long.parseLong(parameters.getOrDefault(INITIAL_TIMEOUT, "10000"))));
+        serviceDiscovery.start();
+        return serviceDiscovery;
+    }
+
+    @Override
+    public String type() {
+        return "http-watch";
+    }
+}
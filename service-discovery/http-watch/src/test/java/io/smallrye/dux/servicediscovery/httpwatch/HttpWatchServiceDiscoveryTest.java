@@ -0,0 +1,301 @@
+package io.smallrye.dux.servicediscovery.httpwatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.spi.SimpleServiceConfig;
+
+public class HttpWatchServiceDiscoveryTest {
+
+    private HttpServer server;
+    private final Registry registry = new Registry();
+    private HttpWatchServiceDiscovery serviceDiscovery;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/v1/service/my-service", registry::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (serviceDiscovery != null) {
+            serviceDiscovery.close();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    void shouldReceiveChangesWithoutPolling() {
+        registry.setAddresses("http://localhost:8080", "http://localhost:8081");
+        serviceDiscovery = createServiceDiscovery();
+
+        List<ServiceInstance> instances = serviceDiscovery.getServiceInstances().collect().asList().await()
+                .atMost(Duration.ofSeconds(5));
+        assertThat(instances).extracting(ServiceInstance::getValue)
+                .containsExactly("http://localhost:8080", "http://localhost:8081");
+
+        registry.setAddresses("http://localhost:8081", "http://localhost:8082");
+
+        List<ServiceInstance> changed = awaitInstances(
+                current -> current.size() == 2 && current.get(1).getValue().equals("http://localhost:8082"));
+        // the instance that stayed keeps its id
+        assertThat(changed.get(0).getId()).isEqualTo(instances.get(1).getId());
+        // one request for the initial state, one for the change, and one waiting for the next change
+        assertThat(registry.requests.get()).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void shouldRetryAfterErrors() {
+        registry.setAddresses("http://localhost:8080");
+        registry.failures.set(3);
+        serviceDiscovery = createServiceDiscovery();
+
+        List<ServiceInstance> instances = serviceDiscovery.getServiceInstances().collect().asList().await()
+                .atMost(Duration.ofSeconds(5));
+        assertThat(instances).extracting(ServiceInstance::getValue).containsExactly("http://localhost:8080");
+        assertThat(registry.failures.get()).isZero();
+    }
+
+    @Test
+    void shouldNotPollUnchangedEtagInALoop() throws InterruptedException {
+        registry.etagOnly = true;
+        registry.setAddresses("http://localhost:8080");
+        serviceDiscovery = createServiceDiscovery(Map.of(HttpWatchServiceDiscoveryProvider.MIN_POLL_INTERVAL, "200"));
+
+        List<ServiceInstance> instances = serviceDiscovery.getServiceInstances().collect().asList().await()
+                .atMost(Duration.ofSeconds(5));
+        assertThat(instances).extracting(ServiceInstance::getValue).containsExactly("http://localhost:8080");
+
+        // the registry answers every request at once, with a 304 once the client has the current ETag
+        List<Long> notModifiedAt = registry.awaitNotModified(3);
+        for (int i = 1; i < notModifiedAt.size(); i++) {
+            // some slack for the time the requests take to reach the registry
+            assertThat(notModifiedAt.get(i) - notModifiedAt.get(i - 1))
+                    .isGreaterThanOrEqualTo(Duration.ofMillis(150).toNanos());
+        }
+
+        registry.setAddresses("http://localhost:8080", "http://localhost:8081");
+        List<ServiceInstance> changed = awaitInstances(current -> current.size() == 2);
+        assertThat(changed.get(0).getId()).isEqualTo(instances.get(0).getId());
+    }
+
+    @Test
+    void shouldResetIndexWhenItGoesBack() throws InterruptedException {
+        registry.setAddresses("http://localhost:8080");
+        registry.setAddresses("http://localhost:8080", "http://localhost:8081");
+        serviceDiscovery = createServiceDiscovery();
+        awaitInstances(current -> current.size() == 2);
+        registry.awaitHeldRequest();
+
+        // the registry restarted and lost its index
+        registry.restart("http://localhost:8082");
+        awaitInstances(current -> current.size() == 1 && current.get(0).getValue().equals("http://localhost:8082"));
+
+        registry.setAddresses("http://localhost:8082", "http://localhost:8083");
+        awaitInstances(current -> current.size() == 2);
+        // the initial state, a change, the restart, the reset read, a change and one waiting for the next change
+        assertThat(registry.requests.get()).isLessThanOrEqualTo(7);
+    }
+
+    @Test
+    void shouldWatchIndexThatIsNotAValidUriPart() {
+        registry.indexPrefix = "gen 1|";
+        registry.setAddresses("http://localhost:8080");
+        serviceDiscovery = createServiceDiscovery();
+        awaitInstances(current -> current.size() == 1);
+
+        registry.setAddresses("http://localhost:8080", "http://localhost:8081");
+        awaitInstances(current -> current.size() == 2);
+    }
+
+    @Test
+    void shouldFailWhenNoInstancesAreReceivedInTime() {
+        registry.failures.set(Integer.MAX_VALUE);
+        serviceDiscovery = createServiceDiscovery(Map.of(HttpWatchServiceDiscoveryProvider.INITIAL_TIMEOUT, "300"));
+
+        assertThatThrownBy(() -> serviceDiscovery.getServiceInstances().collect().asList().await()
+                .atMost(Duration.ofSeconds(5)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("unexpected response status 500");
+
+        // a later list is still received
+        registry.setAddresses("http://localhost:8080");
+        registry.failures.set(0);
+        List<ServiceInstance> instances = serviceDiscovery.getServiceInstances().collect().asList().await()
+                .atMost(Duration.ofSeconds(5));
+        assertThat(instances).extracting(ServiceInstance::getValue).containsExactly("http://localhost:8080");
+    }
+
+    private HttpWatchServiceDiscovery createServiceDiscovery() {
+        return createServiceDiscovery(Map.of());
+    }
+
+    private HttpWatchServiceDiscovery createServiceDiscovery(Map<String, String> extraParameters) {
+        String url = "http://localhost:" + server.getAddress().getPort() + "/v1/service/my-service";
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put(HttpWatchServiceDiscoveryProvider.URL, url);
+        parameters.put(HttpWatchServiceDiscoveryProvider.WAIT, "5");
+        parameters.put(HttpWatchServiceDiscoveryProvider.INITIAL_BACKOFF, "10");
+        parameters.put(HttpWatchServiceDiscoveryProvider.MAX_BACKOFF, "100");
+        parameters.putAll(extraParameters);
+        return (HttpWatchServiceDiscovery) new HttpWatchServiceDiscoveryProvider().createServiceDiscovery(
+                new SimpleServiceConfig.SimpleServiceDiscoveryConfig("http-watch", parameters));
+    }
+
+    private List<ServiceInstance> awaitInstances(Predicate<List<ServiceInstance>> condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (System.nanoTime() < deadline) {
+            List<ServiceInstance> current = serviceDiscovery.getServiceInstancesIfAvailable();
+            if (current != null && condition.test(current)) {
+                return current;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        throw new AssertionError("Service instances did not reach the expected state");
+    }
+
+    /**
+     * Registry stub answering blocking queries, or only conditional requests with ETags
+     */
+    private static class Registry {
+        private final AtomicInteger requests = new AtomicInteger();
+        private final List<Long> notModifiedAt = new ArrayList<>();
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile boolean etagOnly;
+        private volatile String indexPrefix = "";
+        private long index;
+        private long restarts;
+        private int held;
+        private String body = "";
+
+        synchronized void setAddresses(String... addresses) {
+            index++;
+            body = String.join("\n", addresses);
+            notifyAll();
+        }
+
+        synchronized void restart(String... addresses) {
+            // the requests held before the restart are answered with the new, lower, index
+            restarts++;
+            index = 1;
+            body = String.join("\n", addresses);
+            notifyAll();
+        }
+
+        void handle(HttpExchange exchange) throws IOException {
+            if (failures.getAndUpdate(current -> Math.max(0, current - 1)) > 0) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+            requests.incrementAndGet();
+            if (etagOnly) {
+                handleConditional(exchange);
+                return;
+            }
+            String query = exchange.getRequestURI().getQuery();
+            long requestedIndex = 0;
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("index=")) {
+                    String value = URLDecoder.decode(parameter.substring("index=".length()), StandardCharsets.UTF_8);
+                    requestedIndex = Long.parseLong(value.substring(indexPrefix.length()));
+                }
+            }
+
+            byte[] response;
+            long currentIndex;
+            synchronized (this) {
+                long deadline = System.currentTimeMillis() + 5000;
+                long restartsBefore = restarts;
+                held++;
+                notifyAll();
+                while (index <= requestedIndex && restarts == restartsBefore
+                        && System.currentTimeMillis() < deadline) {
+                    try {
+                        wait(deadline - System.currentTimeMillis());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                held--;
+                response = body.getBytes(StandardCharsets.UTF_8);
+                currentIndex = index;
+            }
+
+            exchange.getResponseHeaders().add("X-Index", indexPrefix + currentIndex);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(response);
+            }
+        }
+
+        synchronized List<Long> awaitNotModified(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (notModifiedAt.size() < count && System.currentTimeMillis() < deadline) {
+                wait(deadline - System.currentTimeMillis());
+            }
+            assertThat(notModifiedAt).hasSizeGreaterThanOrEqualTo(count);
+            return new ArrayList<>(notModifiedAt);
+        }
+
+        synchronized void awaitHeldRequest() throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (held == 0 && System.currentTimeMillis() < deadline) {
+                wait(deadline - System.currentTimeMillis());
+            }
+        }
+
+        private void handleConditional(HttpExchange exchange) throws IOException {
+            byte[] response;
+            String etag;
+            synchronized (this) {
+                response = body.getBytes(StandardCharsets.UTF_8);
+                etag = "\"" + index + "\"";
+            }
+            exchange.getResponseHeaders().add("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                synchronized (this) {
+                    notModifiedAt.add(System.nanoTime());
+                    notifyAll();
+                }
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(response);
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package io.smallrye.dux.servicediscovery.sharedsnapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jboss.logging.Logger;
+
+import io.smallrye.dux.DuxScheduler;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Service discovery sharing the instances found by a delegate service discovery with the other processes of
+ * the host, through a memory-mapped snapshot file.
+ * <p>
+ * One process, the one holding the lock of the file, queries the delegate and writes the instances to the file.
+ * The other processes read the instances from the file and don't query the delegate, unless no snapshot
+ * has been written yet. If the writer exits, another process takes the lock and becomes the writer on its next
+ * refresh. Since the file outlives the processes, a process starting up uses the last snapshot right away,
+ * even if it takes the lock, and then queries the delegate in the background.
+ * <p>
+ * With a scheduler, the writer refreshes the snapshot periodically, and readers periodically try to take over
+ * the writing. Without one, this happens on {@link #getServiceInstances()}.
+ */
+public final class SharedSnapshotServiceDiscovery implements ServiceDiscovery, AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(SharedSnapshotServiceDiscovery.class);
+
+    private final ServiceDiscovery delegate;
+    private final SnapshotFile file;
+    private final DuxScheduler.ScheduledTask refresh;
+    // whether the lock was taken on start, when the snapshot in the file may be from a previous run
+    private final boolean writerOnStart;
+
+    private final AtomicBoolean firstQueryRunning = new AtomicBoolean();
+    // written under the lock of this
+    private volatile List<ServiceInstance> lastPublished;
+    private byte[] lastPayload;
+
+    /**
+     * @param delegate service discovery querying the registry
+     * @param path path of the snapshot file, e.g. in {@code /dev/shm}
+     * @param capacity maximum size of the snapshot file, in bytes
+     */
+    public SharedSnapshotServiceDiscovery(ServiceDiscovery delegate, Path path, int capacity) {
+        this(delegate, path, capacity, null, null);
+    }
+
+    /**
+     * @param delegate service discovery querying the registry
+     * @param path path of the snapshot file, e.g. in {@code /dev/shm}
+     * @param capacity maximum size of the snapshot file, in bytes
+     * @param scheduler scheduler running the refreshes, or null to refresh on {@link #getServiceInstances()} only
+     * @param refreshPeriod period of the refreshes
+     */
+    public SharedSnapshotServiceDiscovery(ServiceDiscovery delegate, Path path, int capacity, DuxScheduler scheduler,
+            Duration refreshPeriod) {
+        this.delegate = delegate;
+        try {
+            this.file = new SnapshotFile(path, capacity);
+            this.writerOnStart = file.tryLock();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open snapshot file " + path, e);
+        }
+        refresh = scheduler == null ? null : scheduler.schedulePeriodically(refreshPeriod, 0.1, this::refresh);
+    }
+
+    @Override
+    public Multi<ServiceInstance> getServiceInstances() {
+        if (!tryLock()) {
+            List<ServiceInstance> shared = file.read();
+            if (shared != null) {
+                return Multi.createFrom().iterable(shared);
+            }
+            // nothing was written yet
+            return delegate.getServiceInstances();
+        }
+        if (writerOnStart && lastPublished == null) {
+            List<ServiceInstance> shared = file.read();
+            if (shared != null) {
+                // the snapshot of a previous run, used instead of waiting for the first query
+                startFirstQuery();
+                return Multi.createFrom().iterable(shared);
+            }
+        }
+        return query().onItem().transformToMulti(instances -> Multi.createFrom().iterable(instances));
+    }
+
+    @Override
+    public List<ServiceInstance> getServiceInstancesIfAvailable() {
+        if (file.isWriter()) {
+            List<ServiceInstance> instances = delegate.getServiceInstancesIfAvailable();
+            if (instances != null) {
+                publish(instances);
+                return instances;
+            }
+        }
+        return file.read();
+    }
+
+    /**
+     * Queries the delegate and writes the snapshot if this process is the writer, or tries to become the writer
+     *
+     * @return a Uni completed when the refresh is done, or null if there was nothing to do
+     */
+    public Uni<?> refresh() {
+        return tryLock() ? query() : null;
+    }
+
+    /**
+     * @return whether this process writes the snapshot
+     */
+    public boolean isWriter() {
+        return file.isWriter();
+    }
+
+    /**
+     * @return the time the current snapshot was written, or null if none was written
+     */
+    public Instant getSnapshotTime() {
+        long writtenAt = file.writtenAt();
+        return writtenAt == 0 ? null : Instant.ofEpochMilli(writtenAt);
+    }
+
+    /**
+     * Stops the refreshes and releases the snapshot file, another process can become the writer
+     */
+    @Override
+    public void close() {
+        if (refresh != null) {
+            refresh.cancel();
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            log.debugf(e, "Failed to close the snapshot file");
+        }
+    }
+
+    private boolean tryLock() {
+        try {
+            return file.tryLock();
+        } catch (IOException e) {
+            log.debugf(e, "Failed to lock the snapshot file");
+            return false;
+        }
+    }
+
+    private void startFirstQuery() {
+        if (firstQueryRunning.compareAndSet(false, true)) {
+            query().onTermination().invoke(() -> firstQueryRunning.set(false))
+                    .subscribe().with(instances -> {
+                    }, failure -> log.debugf(failure, "Failed to query the service instances"));
+        }
+    }
+
+    private Uni<List<ServiceInstance>> query() {
+        return delegate.getServiceInstances().collect().asList()
+                .onItem().invoke(this::publish)
+                .onFailure().recoverWithUni(failure -> {
+                    // the last known good snapshot is better than nothing
+                    List<ServiceInstance> shared = file.read();
+                    return shared == null ? Uni.createFrom().failure(failure) : Uni.createFrom().item(shared);
+                });
+    }
+
+    private synchronized void publish(List<ServiceInstance> instances) {
+        if (instances == lastPublished) {
+            return;
+        }
+        byte[] payload = SnapshotFile.encode(instances);
+        if (!Arrays.equals(payload, lastPayload)) {
+            if (!file.write(payload)) {
+                log.warnf("Snapshot of %d instances does not fit in the snapshot file, it is not shared",
+                        instances.size());
+                return;
+            }
+            lastPayload = payload;
+        }
+        lastPublished = instances;
+    }
+}
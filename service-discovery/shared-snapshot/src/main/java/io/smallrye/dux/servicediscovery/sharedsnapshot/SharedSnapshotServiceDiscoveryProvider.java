@@ -0,0 +1,52 @@
+package io.smallrye.dux.servicediscovery.sharedsnapshot;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+import io.smallrye.dux.DuxScheduler;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.config.ServiceDiscoveryConfig;
+import io.smallrye.dux.spi.Providers;
+import io.smallrye.dux.spi.ServiceDiscoveryProvider;
+
+public class SharedSnapshotServiceDiscoveryProvider implements ServiceDiscoveryProvider {
+
+    public static final String PATH = "path";
+    public static final String CAPACITY = "capacity";
+    public static final String REFRESH_PERIOD = "refresh-period";
+    public static final String DELEGATE = Providers.DELEGATE;
+    public static final String TYPE = Providers.TYPE;
+
+    @Override
+    public ServiceDiscovery createServiceDiscovery(ServiceDiscoveryConfig config) {
+        return createServiceDiscovery(config, null);
+    }
+
+    @Override
+    public ServiceDiscovery createServiceDiscovery(ServiceDiscoveryConfig config, DuxScheduler scheduler) {
+        // the delegate is configured with "delegate." as prefix:
+        // dux.<service-name>.service-discovery=shared-snapshot
+        // dux.<service-name>.service-discovery.path=/dev/shm/dux-my-service
+        // dux.<service-name>.service-discovery.capacity=1048576 (bytes)
+        // dux.<service-name>.service-discovery.refresh-period=5000 (milliseconds, with the shared scheduler)
+        // dux.<service-name>.service-discovery.delegate.type=http-watch
+        // dux.<service-name>.service-discovery.delegate.url=...
+        Map<String, String> parameters = config.parameters();
+        String path = parameters.get(PATH);
+        if (path == null) {
+            throw new IllegalArgumentException("No path defined for shared-snapshot service discovery");
+        }
+
+        ServiceDiscovery delegate = Providers.createDelegateServiceDiscovery(config, scheduler);
+
+        return new SharedSnapshotServiceDiscovery(delegate, Path.of(path),
+                Integer.parseInt(parameters.getOrDefault(CAPACITY, "1048576")),
+                scheduler, Duration.ofMillis(Long.parseLong(parameters.getOrDefault(REFRESH_PERIOD, "5000"))));
+    }
+
+    @Override
+    public String type() {
+        return "shared-snapshot";
+    }
+}
@@ -0,0 +1,279 @@
+package io.smallrye.dux.servicediscovery.sharedsnapshot;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.spi.ServiceInstanceIds;
+
+/**
+ * Memory-mapped file holding the last snapshot of service instances, shared by the processes of a host.
+ * <p>
+ * Layout, big endian:
+ *
+ * <pre>
+ *  0  int   magic
+ *  4  int   format version
+ *  8  long  sequence, odd while a snapshot is being written, 0 if none was written yet
+ * 16  long  time the snapshot was written, in epoch milliseconds
+ * 24  int   payload length
+ * 28  int   reserved
+ * 32  payload: int instance count, then for each instance its value and its metadata count and entries,
+ *     strings are written as an int byte count followed by the UTF-8 bytes
+ * </pre>
+ *
+ * The sequence is a seqlock: a reader copies the payload out and retries if the sequence was odd or changed
+ * meanwhile. Only the process holding the lock file writes, see {@link #tryLock()}.
+ */
+final class SnapshotFile implements AutoCloseable {
+
+    static final int MAGIC = 0x44555853;
+    static final int FORMAT_VERSION = 1;
+
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int SEQUENCE_OFFSET = 8;
+    static final int WRITTEN_AT_OFFSET = 16;
+    static final int LENGTH_OFFSET = 24;
+    static final int HEADER_SIZE = 32;
+
+    private static final int MAX_READ_ATTEMPTS = 1000;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final FileChannel channel;
+    private final FileChannel lockChannel;
+    private final MappedByteBuffer buffer;
+
+    private FileLock lock;
+
+    // the last snapshot read, reused as long as the sequence doesn't change
+    private volatile Read lastRead = Read.NONE;
+
+    SnapshotFile(Path path, int capacity) throws IOException {
+        if (capacity <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Snapshot file capacity too small: " + capacity);
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        lockChannel = FileChannel.open(path.resolveSibling(path.getFileName() + ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // mapping extends the file if needed, the content stays zeroed until a writer initializes it
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), capacity));
+    }
+
+    /**
+     * Tries to become the writer of the file. The lock is released when the process exits, so another process
+     * takes over the writing if the writer dies.
+     *
+     * @return whether this process is the writer
+     */
+    synchronized boolean tryLock() throws IOException {
+        if (lock == null) {
+            try {
+                lock = lockChannel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                // held by another snapshot file of this process
+                return false;
+            }
+            if (lock != null && (buffer.getInt(MAGIC_OFFSET) != MAGIC
+                    || buffer.getInt(VERSION_OFFSET) != FORMAT_VERSION)) {
+                LONGS.setVolatile(buffer, SEQUENCE_OFFSET, 0L);
+                buffer.putInt(VERSION_OFFSET, FORMAT_VERSION);
+                buffer.putInt(MAGIC_OFFSET, MAGIC);
+            }
+        }
+        return lock != null;
+    }
+
+    synchronized boolean isWriter() {
+        return lock != null;
+    }
+
+    /**
+     * Writes the snapshot, must only be called by the writer
+     *
+     * @param payload encoded instances, see {@link #encode(List)}
+     * @return false if the payload doesn't fit in the file
+     */
+    synchronized boolean write(byte[] payload) {
+        if (lock == null) {
+            throw new IllegalStateException("Not the writer of the snapshot file");
+        }
+        if (payload.length > buffer.capacity() - HEADER_SIZE) {
+            return false;
+        }
+        long sequence = (long) LONGS.getVolatile(buffer, SEQUENCE_OFFSET);
+        // the previous writer may have died in the middle of a write
+        long start = (sequence & 1) == 0 ? sequence : sequence + 1;
+        LONGS.setVolatile(buffer, SEQUENCE_OFFSET, start + 1);
+        VarHandle.storeStoreFence();
+
+        ByteBuffer target = buffer.duplicate();
+        target.position(HEADER_SIZE);
+        target.put(payload);
+        buffer.putLong(WRITTEN_AT_OFFSET, System.currentTimeMillis());
+        buffer.putInt(LENGTH_OFFSET, payload.length);
+
+        LONGS.setRelease(buffer, SEQUENCE_OFFSET, start + 2);
+        return true;
+    }
+
+    /**
+     * Reads the current snapshot. If it hasn't changed since the last read, the previously decoded instances,
+     * with their ids, are returned without copying or decoding anything.
+     * Instances found in the previous snapshot keep their ids.
+     *
+     * @return the instances or null if no snapshot was written, or none could be read consistently
+     */
+    List<ServiceInstance> read() {
+        Read previous = lastRead;
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            long sequence = (long) LONGS.getAcquire(buffer, SEQUENCE_OFFSET);
+            if (sequence == previous.sequence) {
+                return previous.instances;
+            }
+            if ((sequence & 1) == 1) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (sequence == 0 || buffer.getInt(MAGIC_OFFSET) != MAGIC
+                    || buffer.getInt(VERSION_OFFSET) != FORMAT_VERSION) {
+                return null;
+            }
+            int length = buffer.getInt(LENGTH_OFFSET);
+            if (length < 0 || length > buffer.capacity() - HEADER_SIZE) {
+                Thread.onSpinWait();
+                continue;
+            }
+            byte[] payload = new byte[length];
+            ByteBuffer source = buffer.duplicate();
+            source.position(HEADER_SIZE);
+            source.get(payload);
+            VarHandle.loadLoadFence();
+            if ((long) LONGS.getVolatile(buffer, SEQUENCE_OFFSET) != sequence) {
+                continue;
+            }
+
+            Read read = new Read(sequence, decode(payload, previous.instances));
+            lastRead = read;
+            return read.instances;
+        }
+        // a writer kept interfering, the previous snapshot is still consistent
+        return previous.instances;
+    }
+
+    /**
+     * @return the time the current snapshot was written, in epoch milliseconds, 0 if none was written
+     */
+    long writtenAt() {
+        return (long) LONGS.getAcquire(buffer, SEQUENCE_OFFSET) == 0 ? 0 : buffer.getLong(WRITTEN_AT_OFFSET);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (lock != null) {
+            lock.release();
+            lock = null;
+        }
+        lockChannel.close();
+        channel.close();
+    }
+
+    static byte[] encode(List<ServiceInstance> instances) {
+        List<byte[]> strings = new ArrayList<>();
+        int size = 4;
+        for (ServiceInstance instance : instances) {
+            size += add(strings, instance.getValue()) + 4;
+            for (Map.Entry<String, String> entry : instance.getMetadata().entrySet()) {
+                size += add(strings, entry.getKey()) + add(strings, entry.getValue());
+            }
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(size);
+        payload.putInt(instances.size());
+        int string = 0;
+        for (ServiceInstance instance : instances) {
+            put(payload, strings.get(string++));
+            payload.putInt(instance.getMetadata().size());
+            for (int i = 0; i < instance.getMetadata().size(); i++) {
+                put(payload, strings.get(string++));
+                put(payload, strings.get(string++));
+            }
+        }
+        return payload.array();
+    }
+
+    static List<ServiceInstance> decode(byte[] bytes, List<ServiceInstance> previous) {
+        Map<String, ServiceInstance> previousByValue = new HashMap<>();
+        if (previous != null) {
+            for (ServiceInstance instance : previous) {
+                previousByValue.put(instance.getValue(), instance);
+            }
+        }
+
+        ByteBuffer payload = ByteBuffer.wrap(bytes);
+        int count = payload.getInt();
+        List<ServiceInstance> instances = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String value = get(payload);
+            int metadataCount = payload.getInt();
+            Map<String, String> metadata = metadataCount == 0 ? Collections.emptyMap()
+                    : new LinkedHashMap<>(metadataCount * 2);
+            for (int j = 0; j < metadataCount; j++) {
+                metadata.put(get(payload), get(payload));
+            }
+            ServiceInstance known = previousByValue.get(value);
+            instances.add(known != null && known.getMetadata().equals(metadata)
+                    ? known
+                    : new ServiceInstance(ServiceInstanceIds.next(), value, metadata));
+        }
+        return Collections.unmodifiableList(instances);
+    }
+
+    private static int add(List<byte[]> strings, String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        strings.add(bytes);
+        return 4 + bytes.length;
+    }
+
+    private static void put(ByteBuffer payload, byte[] string) {
+        payload.putInt(string.length);
+        payload.put(string);
+    }
+
+    private static String get(ByteBuffer payload) {
+        int length = payload.getInt();
+        String string = new String(payload.array(), payload.position(), length, StandardCharsets.UTF_8);
+        payload.position(payload.position() + length);
+        return string;
+    }
+
+    private static final class Read {
+        private static final Read NONE = new Read(0, null);
+
+        private final long sequence;
+        private final List<ServiceInstance> instances;
+
+        private Read(long sequence, List<ServiceInstance> instances) {
+            this.sequence = sequence;
+            this.instances = instances;
+        }
+    }
+}
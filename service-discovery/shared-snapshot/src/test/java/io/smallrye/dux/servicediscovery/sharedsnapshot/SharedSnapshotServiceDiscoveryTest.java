@@ -0,0 +1,160 @@
+package io.smallrye.dux.servicediscovery.sharedsnapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.servicediscovery.staticlist.StaticListServiceDiscovery;
+import io.smallrye.dux.spi.ServiceInstanceIds;
+import io.smallrye.mutiny.Multi;
+
+public class SharedSnapshotServiceDiscoveryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldReadSnapshotWrittenByAnotherProcessAndTakeOverWhenItExits() throws Exception {
+        Path path = directory.resolve("snapshot");
+        Process writer = start("serve", path.toString(), "http://localhost:8080", "http://localhost:8081");
+        AtomicInteger queries = new AtomicInteger();
+        ServiceDiscovery registry = countingDiscovery(queries, "http://localhost:9090");
+
+        try (SharedSnapshotServiceDiscovery serviceDiscovery = new SharedSnapshotServiceDiscovery(registry, path,
+                4096)) {
+            assertThat(serviceDiscovery.isWriter()).isFalse();
+            List<ServiceInstance> instances = serviceDiscovery.getServiceInstancesIfAvailable();
+            assertThat(instances).extracting(ServiceInstance::getValue)
+                    .containsExactly("http://localhost:8080", "http://localhost:8081");
+            // unchanged snapshot, same instances with the same ids
+            assertThat(serviceDiscovery.getServiceInstancesIfAvailable()).isSameAs(instances);
+            assertThat(values(serviceDiscovery)).containsExactly("http://localhost:8080", "http://localhost:8081");
+            assertThat(queries).hasValue(0);
+
+            writer.getOutputStream().close();
+            assertThat(writer.waitFor(10, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(values(serviceDiscovery)).containsExactly("http://localhost:9090");
+            assertThat(serviceDiscovery.isWriter()).isTrue();
+            assertThat(queries).hasValue(1);
+        } finally {
+            writer.destroyForcibly();
+        }
+    }
+
+    @Test
+    void shouldNeverReadTornSnapshot() throws Exception {
+        Path path = directory.resolve("snapshot");
+        Process writer = start("flip", path.toString(), "2000");
+        try (SnapshotFile file = new SnapshotFile(path, 4096)) {
+            Set<List<ServiceInstance>> seen = new HashSet<>();
+            long end = System.nanoTime() + Duration.ofMillis(1500).toNanos();
+            while (System.nanoTime() < end) {
+                List<ServiceInstance> instances = file.read();
+                if (instances == null) {
+                    // not written yet, or no consistent read within the retries, but never torn
+                    continue;
+                }
+                seen.add(instances);
+                assertThat(instances.size()).isIn(3, 5);
+                String host = instances.size() == 3 ? "http://a:" : "http://b:";
+                for (int i = 0; i < instances.size(); i++) {
+                    assertThat(instances.get(i).getValue()).isEqualTo(host + (8080 + i));
+                }
+            }
+            assertThat(seen.size()).isGreaterThan(10);
+        } finally {
+            assertThat(writer.waitFor(10, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    @Test
+    void shouldUseLastSnapshotOnStart() {
+        Path path = directory.resolve("snapshot");
+        List<ServiceInstance> instances = SnapshotWriterProcess.instances("a", 2);
+        try (SharedSnapshotServiceDiscovery previousRun = new SharedSnapshotServiceDiscovery(
+                new StaticListServiceDiscovery(instances), path, 4096)) {
+            previousRun.getServiceInstancesIfAvailable();
+        }
+
+        // a registry that didn't answer yet
+        AtomicInteger queries = new AtomicInteger();
+        ServiceDiscovery registry = () -> Multi.createFrom().deferred(() -> {
+            queries.incrementAndGet();
+            return Multi.createFrom().nothing();
+        });
+        try (SharedSnapshotServiceDiscovery serviceDiscovery = new SharedSnapshotServiceDiscovery(registry, path,
+                4096)) {
+            assertThat(serviceDiscovery.isWriter()).isTrue();
+            assertThat(serviceDiscovery.getSnapshotTime()).isNotNull();
+            assertThat(serviceDiscovery.getServiceInstancesIfAvailable()).extracting(ServiceInstance::getValue)
+                    .containsExactly("http://a:8080", "http://a:8081");
+            for (int i = 0; i < 3; i++) {
+                assertThat(serviceDiscovery.getServiceInstances().collect().asList().await()
+                        .atMost(Duration.ofSeconds(1))).extracting(ServiceInstance::getValue)
+                        .containsExactly("http://a:8080", "http://a:8081");
+            }
+            // the first query runs in the background, once
+            assertThat(queries.get()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void shouldShareMetadata() {
+        List<ServiceInstance> instances = List.of(
+                new ServiceInstance(ServiceInstanceIds.next(), "http://localhost:8080", Map.of("version", "v2")));
+
+        List<ServiceInstance> decoded = SnapshotFile.decode(SnapshotFile.encode(instances), null);
+
+        assertThat(decoded.get(0).getMetadata()).containsExactly(Map.entry("version", "v2"));
+        assertThat(SnapshotFile.decode(SnapshotFile.encode(instances), decoded)).containsExactlyElementsOf(decoded);
+    }
+
+    private static List<String> values(ServiceDiscovery serviceDiscovery) {
+        List<String> values = new ArrayList<>();
+        serviceDiscovery.getServiceInstances().collect().asList().await().atMost(Duration.ofSeconds(5))
+                .forEach(instance -> values.add(instance.getValue()));
+        return values;
+    }
+
+    private static ServiceDiscovery countingDiscovery(AtomicInteger queries, String value) {
+        List<ServiceInstance> instances = List.of(new ServiceInstance(ServiceInstanceIds.next(), value));
+        return () -> Multi.createFrom().deferred(() -> {
+            queries.incrementAndGet();
+            return Multi.createFrom().iterable(instances);
+        });
+    }
+
+    private static Process start(String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SnapshotWriterProcess.class.getName());
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+        BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line = output.readLine();
+        assertThat(line).isEqualTo("ready");
+        return process;
+    }
+}
@@ -0,0 +1,58 @@
+package io.smallrye.dux.servicediscovery.sharedsnapshot;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.servicediscovery.staticlist.StaticListServiceDiscovery;
+import io.smallrye.dux.spi.ServiceInstanceIds;
+
+/**
+ * Writer of a snapshot file, run in a separate JVM by {@link SharedSnapshotServiceDiscoveryTest}
+ */
+public class SnapshotWriterProcess {
+
+    public static void main(String[] args) throws Exception {
+        Path path = Path.of(args[1]);
+        if ("serve".equals(args[0])) {
+            // publishes the instances given as arguments until the standard input is closed
+            List<ServiceInstance> instances = new ArrayList<>();
+            for (int i = 2; i < args.length; i++) {
+                instances.add(new ServiceInstance(ServiceInstanceIds.next(), args[i]));
+            }
+            try (SharedSnapshotServiceDiscovery serviceDiscovery = new SharedSnapshotServiceDiscovery(
+                    new StaticListServiceDiscovery(instances), path, 4096)) {
+                serviceDiscovery.getServiceInstancesIfAvailable();
+                System.out.println(serviceDiscovery.isWriter() ? "ready" : "not the writer");
+                while (System.in.read() != -1) {
+                    // waiting for the parent to let go
+                }
+            }
+        } else {
+            // rewrites two snapshots alternately, as fast as possible, for the given number of milliseconds
+            byte[] three = SnapshotFile.encode(instances("a", 3));
+            byte[] five = SnapshotFile.encode(instances("b", 5));
+            try (SnapshotFile file = new SnapshotFile(path, 4096)) {
+                if (!file.tryLock()) {
+                    System.out.println("not the writer");
+                    return;
+                }
+                file.write(three);
+                System.out.println("ready");
+                long end = System.nanoTime() + Long.parseLong(args[2]) * 1_000_000;
+                for (long i = 0; System.nanoTime() < end; i++) {
+                    file.write(i % 2 == 0 ? five : three);
+                }
+            }
+        }
+    }
+
+    static List<ServiceInstance> instances(String prefix, int count) {
+        List<ServiceInstance> instances = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            instances.add(new ServiceInstance(ServiceInstanceIds.next(), "http://" + prefix + ":" + (8080 + i)));
+        }
+        return instances;
+    }
+}
@@ -19,4 +19,9 @@ public final class StaticListServiceDiscovery implements ServiceDiscovery {
     public Multi<ServiceInstance> getServiceInstances() {
         return Multi.createFrom().iterable(instances);
     }
+
+    @Override
+    public List<ServiceInstance> getServiceInstancesIfAvailable() {
+        return instances;
+    }
 }
@@ -1,10 +1,11 @@
 package io.smallrye.dux.servicediscovery.staticlist;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 import io.smallrye.dux.ServiceDiscovery;
 import io.smallrye.dux.ServiceInstance;
@@ -22,18 +23,50 @@ public class StaticListServiceDiscoveryProvider implements ServiceDiscoveryProvi
         // dux.<service-name>.discovery.1=...
         // dux.<service-name>.discovery.2=...
         // dux.<service-name>.discovery.3=...
+        // metadata of the instances can be added as:
+        // dux.<service-name>.discovery.1.<metadata-key>=...
         Map<String, String> parameters = config.parameters();
-        Pattern number = Pattern.compile("\\d+");
-        List<ServiceInstance> addressList = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        Map<String, Map<String, String>> metadata = new HashMap<>();
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            String key = parameter.getKey();
+            int dot = key.indexOf('.');
+            if (dot < 0) {
+                if (isNumber(key)) {
+                    keys.add(key);
+                }
+            } else {
+                String instanceKey = key.substring(0, dot);
+                if (isNumber(instanceKey)) {
+                    metadata.computeIfAbsent(instanceKey, ignored -> new HashMap<>())
+                            .put(key.substring(dot + 1), parameter.getValue());
+                }
+            }
+        }
+        keys.sort(Comparator.comparing(Integer::valueOf));
 
-        parameters.keySet().stream()
-                .filter(k -> number.matcher(k).matches())
-                .sorted(Comparator.comparing(Integer::valueOf))
-                .forEach(k -> addressList.add(new ServiceInstance(ServiceInstanceIds.next(), parameters.get(k))));
+        List<ServiceInstance> addressList = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            addressList.add(new ServiceInstance(ServiceInstanceIds.next(), parameters.get(key),
+                    metadata.getOrDefault(key, Collections.emptyMap())));
+        }
 
         return new StaticListServiceDiscovery(addressList);
     }
 
+    private static boolean isNumber(String key) {
+        if (key.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public String type() {
         return "static";
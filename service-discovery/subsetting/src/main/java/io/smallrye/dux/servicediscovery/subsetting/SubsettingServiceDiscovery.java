@@ -0,0 +1,146 @@
+package io.smallrye.dux.servicediscovery.subsetting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.mutiny.Multi;
+
+/**
+ * Service discovery returning a subset of the instances found by a delegate service discovery,
+ * so that, in a large fleet, a client connects to a bounded number of instances.
+ * <p>
+ * The subset is chosen with rendezvous hashing: every instance gets a score hashed from the client id and
+ * the address of the instance, and the subset is made of the instances with the highest scores. The subset
+ * of a client is stable, the same on every restart, and clients with different ids get independent subsets,
+ * so that the clients are spread evenly over the instances, on average. It only needs the client id, not
+ * the number of clients or the index of the client among them.
+ * <p>
+ * When an instance disappears, only the clients that had it in their subset replace it, with a single instance.
+ * When an instance appears, it displaces a single instance in the subsets of the clients it scores high for.
+ * <p>
+ * The subset keeps the order of the delegate's list. It is recomputed when the delegate returns other instances:
+ * a new list with the same instances, e.g. collected from {@link #getServiceInstances()}, gets the same subset.
+ */
+public final class SubsettingServiceDiscovery implements ServiceDiscovery {
+
+    private final ServiceDiscovery delegate;
+    private final long clientHash;
+    private final int subsetSize;
+
+    private volatile Subset last = new Subset(new long[0], Collections.emptyList());
+
+    /**
+     * @param delegate service discovery returning all the instances
+     * @param clientId id of this client, stable across restarts, e.g. the host name
+     * @param subsetSize maximum number of instances in the subset
+     */
+    public SubsettingServiceDiscovery(ServiceDiscovery delegate, String clientId, int subsetSize) {
+        if (subsetSize < 1) {
+            throw new IllegalArgumentException("Subset size has to be positive, got " + subsetSize);
+        }
+        this.delegate = delegate;
+        this.clientHash = hash(clientId);
+        this.subsetSize = subsetSize;
+    }
+
+    @Override
+    public Multi<ServiceInstance> getServiceInstances() {
+        return delegate.getServiceInstances().collect().asList()
+                .onItem().transformToMulti(instances -> Multi.createFrom().iterable(subset(instances)));
+    }
+
+    @Override
+    public List<ServiceInstance> getServiceInstancesIfAvailable() {
+        List<ServiceInstance> instances = delegate.getServiceInstancesIfAvailable();
+        return instances == null ? null : subset(instances);
+    }
+
+    List<ServiceInstance> subset(List<ServiceInstance> instances) {
+        Subset current = last;
+        if (current.isSubsetOf(instances)) {
+            return current.instances;
+        }
+        long[] ids = new long[instances.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = instances.get(i).getId();
+        }
+        List<ServiceInstance> subset = select(instances);
+        last = new Subset(ids, subset);
+        return subset;
+    }
+
+    private List<ServiceInstance> select(List<ServiceInstance> instances) {
+        int count = instances.size();
+        if (count <= subsetSize) {
+            return instances;
+        }
+        long[] scores = new long[count];
+        for (int i = 0; i < count; i++) {
+            scores[i] = mix(clientHash ^ mix(hash(instances.get(i).getValue())));
+        }
+
+        // the score of the subset's lowest ranked instance, found on a sorted copy
+        long[] sorted = scores.clone();
+        Arrays.sort(sorted);
+        long threshold = sorted[count - subsetSize];
+
+        List<ServiceInstance> subset = new ArrayList<>(subsetSize);
+        for (int i = 0; i < count && subset.size() < subsetSize; i++) {
+            if (scores[i] >= threshold) {
+                subset.add(instances.get(i));
+            }
+        }
+        return Collections.unmodifiableList(subset);
+    }
+
+    /**
+     * FNV-1a, stable across processes, unlike identity hash codes
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * SplitMix64 finalizer
+     */
+    static long mix(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Subset, and the ids of the instances it was selected from
+     */
+    private static final class Subset {
+        private final long[] sourceIds;
+        private final List<ServiceInstance> instances;
+
+        private Subset(long[] sourceIds, List<ServiceInstance> instances) {
+            this.sourceIds = sourceIds;
+            this.instances = instances;
+        }
+
+        private boolean isSubsetOf(List<ServiceInstance> source) {
+            if (source.size() != sourceIds.length) {
+                return false;
+            }
+            for (int i = 0; i < sourceIds.length; i++) {
+                if (source.get(i).getId() != sourceIds[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package io.smallrye.dux.servicediscovery.subsetting;
+
+import java.util.Map;
+
+import io.smallrye.dux.DuxScheduler;
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.config.ServiceDiscoveryConfig;
+import io.smallrye.dux.spi.Providers;
+import io.smallrye.dux.spi.ServiceDiscoveryProvider;
+
+public class SubsettingServiceDiscoveryProvider implements ServiceDiscoveryProvider {
+
+    public static final String CLIENT_ID = "client-id";
+    public static final String SUBSET_SIZE = "subset-size";
+    public static final String DELEGATE = Providers.DELEGATE;
+    public static final String TYPE = Providers.TYPE;
+
+    @Override
+    public ServiceDiscovery createServiceDiscovery(ServiceDiscoveryConfig config) {
+        return createServiceDiscovery(config, null);
+    }
+
+    @Override
+    public ServiceDiscovery createServiceDiscovery(ServiceDiscoveryConfig config, DuxScheduler scheduler) {
+        // the delegate is configured with "delegate." as prefix:
+        // dux.<service-name>.service-discovery=subsetting
+        // dux.<service-name>.service-discovery.client-id=${HOSTNAME}
+        // dux.<service-name>.service-discovery.subset-size=10
+        // dux.<service-name>.service-discovery.delegate.type=consul
+        // dux.<service-name>.service-discovery.delegate.consul-host=...
+        Map<String, String> parameters = config.parameters();
+        String clientId = parameters.get(CLIENT_ID);
+        if (clientId == null) {
+            throw new IllegalArgumentException("No client id defined for subsetting service discovery");
+        }
+
+        ServiceDiscovery delegate = Providers.createDelegateServiceDiscovery(config, scheduler);
+
+        return new SubsettingServiceDiscovery(delegate, clientId,
+                Integer.parseInt(parameters.getOrDefault(SUBSET_SIZE, "10")));
+    }
+
+    @Override
+    public String type() {
+        return "subsetting";
+    }
+}
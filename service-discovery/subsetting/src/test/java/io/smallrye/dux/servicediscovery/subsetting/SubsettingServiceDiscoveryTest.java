@@ -0,0 +1,132 @@
+package io.smallrye.dux.servicediscovery.subsetting;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.servicediscovery.staticlist.StaticListServiceDiscovery;
+import io.smallrye.dux.spi.ServiceInstanceIds;
+
+public class SubsettingServiceDiscoveryTest {
+
+    private final List<ServiceInstance> instances = instances(100);
+
+    @Test
+    void shouldReturnStableSubsetInDelegateOrder() {
+        SubsettingServiceDiscovery serviceDiscovery = discovery("client-1", instances);
+
+        List<ServiceInstance> subset = serviceDiscovery.getServiceInstancesIfAvailable();
+        assertThat(subset).hasSize(10).isSubsetOf(instances);
+        assertThat(instances).containsSubsequence(subset);
+        assertThat(serviceDiscovery.getServiceInstancesIfAvailable()).isSameAs(subset);
+        assertThat(serviceDiscovery.getServiceInstances().collect().asList().await().indefinitely())
+                .containsExactlyElementsOf(subset);
+
+        // same client id, in another process, with other instance ids
+        assertThat(values(discovery("client-1", instances(100)).getServiceInstancesIfAvailable()))
+                .containsExactlyElementsOf(values(subset));
+        assertThat(discovery("client-2", instances).getServiceInstancesIfAvailable()).isNotEqualTo(subset);
+    }
+
+    @Test
+    void shouldReuseSubsetForNewListOfSameInstances() {
+        SubsettingServiceDiscovery serviceDiscovery = discovery("client-1", instances);
+
+        // the reactive path collects a new list of the delegate's instances on every call
+        List<ServiceInstance> first = serviceDiscovery.getServiceInstances().collect().asList().await().indefinitely();
+        List<ServiceInstance> subset = serviceDiscovery.subset(new ArrayList<>(instances));
+        assertThat(serviceDiscovery.getServiceInstances().collect().asList().await().indefinitely())
+                .containsExactlyElementsOf(first);
+        assertThat(serviceDiscovery.subset(new ArrayList<>(instances))).isSameAs(subset);
+        assertThat(serviceDiscovery.getServiceInstancesIfAvailable()).isSameAs(subset);
+    }
+
+    @Test
+    void shouldReturnAllInstancesWhenThereAreFewerThanTheSubsetSize() {
+        List<ServiceInstance> few = instances(10);
+
+        assertThat(discovery("client-1", few).getServiceInstancesIfAvailable()).containsExactlyElementsOf(few);
+    }
+
+    @Test
+    void shouldSpreadClientsEvenly() {
+        Map<ServiceInstance, Integer> clients = new HashMap<>();
+        for (int client = 0; client < 1000; client++) {
+            for (ServiceInstance instance : discovery("client-" + client, instances).getServiceInstancesIfAvailable()) {
+                clients.merge(instance, 1, Integer::sum);
+            }
+        }
+
+        // 100 clients per instance on average
+        assertThat(clients).hasSize(100);
+        assertThat(clients.values()).allSatisfy(count -> assertThat(count).isBetween(60, 140));
+    }
+
+    @Test
+    void shouldChangeSubsetsMinimallyWhenInstancesChange() {
+        List<ServiceInstance> withoutFirst = new ArrayList<>(instances.subList(1, instances.size()));
+        List<ServiceInstance> withNew = new ArrayList<>(instances);
+        withNew.add(new ServiceInstance(ServiceInstanceIds.next(), "http://10.0.0.254:8080"));
+
+        int affectedByRemoval = 0;
+        for (int client = 0; client < 200; client++) {
+            SubsettingServiceDiscovery serviceDiscovery = discovery("client-" + client, instances);
+            Set<ServiceInstance> before = new HashSet<>(serviceDiscovery.subset(instances));
+
+            Set<ServiceInstance> afterRemoval = new HashSet<>(serviceDiscovery.subset(withoutFirst));
+            if (before.contains(instances.get(0))) {
+                affectedByRemoval++;
+                assertThat(difference(before, afterRemoval)).containsExactly(instances.get(0));
+                assertThat(difference(afterRemoval, before)).hasSize(1);
+            } else {
+                assertThat(afterRemoval).isEqualTo(before);
+            }
+
+            Set<ServiceInstance> afterAddition = new HashSet<>(serviceDiscovery.subset(withNew));
+            assertThat(difference(before, afterAddition).size()).isLessThanOrEqualTo(1);
+            assertThat(difference(afterAddition, before)).isSubsetOf(withNew.get(withNew.size() - 1));
+        }
+        assertThat(affectedByRemoval).isBetween(5, 40);
+    }
+
+    @Test
+    void shouldRejectInvalidSubsetSize() {
+        assertThatThrownBy(() -> new SubsettingServiceDiscovery(new StaticListServiceDiscovery(instances),
+                "client-1", 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static SubsettingServiceDiscovery discovery(String clientId, List<ServiceInstance> instances) {
+        return new SubsettingServiceDiscovery(new StaticListServiceDiscovery(instances), clientId, 10);
+    }
+
+    private static List<ServiceInstance> instances(int count) {
+        List<ServiceInstance> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            result.add(new ServiceInstance(ServiceInstanceIds.next(), "http://10.0.0." + i + ":8080"));
+        }
+        return result;
+    }
+
+    private static List<String> values(List<ServiceInstance> instances) {
+        List<String> result = new ArrayList<>();
+        for (ServiceInstance instance : instances) {
+            result.add(instance.getValue());
+        }
+        return result;
+    }
+
+    private static Set<ServiceInstance> difference(Set<ServiceInstance> left, Set<ServiceInstance> right) {
+        Set<ServiceInstance> result = new HashSet<>(left);
+        result.removeAll(right);
+        return result;
+    }
+}
@@ -0,0 +1,71 @@
+package io.smallrye.dux.simulator;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Synthetic backend of the simulation
+ */
+public final class Backend {
+
+    private final String name;
+    private final ServiceTimeDistribution serviceTime;
+    private final int concurrency;
+    private final double slowdown;
+    private final double failureProbability;
+    private final Map<String, String> metadata;
+
+    /**
+     * @param name name of the backend, used as the value of its service instance
+     * @param serviceTime distribution of service times
+     * @param concurrency number of requests the backend handles in parallel, the rest is queued
+     * @param slowdown factor the service time is multiplied by, 1 for a healthy backend
+     * @param failureProbability probability of a request failing
+     * @param metadata metadata of the service instance of the backend
+     */
+    public Backend(String name, ServiceTimeDistribution serviceTime, int concurrency, double slowdown,
+            double failureProbability, Map<String, String> metadata) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Backend concurrency has to be positive, got " + concurrency);
+        }
+        this.name = name;
+        this.serviceTime = serviceTime;
+        this.concurrency = concurrency;
+        this.slowdown = slowdown;
+        this.failureProbability = failureProbability;
+        this.metadata = metadata;
+    }
+
+    public Backend(String name, ServiceTimeDistribution serviceTime, int concurrency, double slowdown,
+            double failureProbability) {
+        this(name, serviceTime, concurrency, slowdown, failureProbability, Collections.emptyMap());
+    }
+
+    public Backend(String name, ServiceTimeDistribution serviceTime, int concurrency) {
+        this(name, serviceTime, concurrency, 1, 0);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ServiceTimeDistribution getServiceTime() {
+        return serviceTime;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public double getSlowdown() {
+        return slowdown;
+    }
+
+    public double getFailureProbability() {
+        return failureProbability;
+    }
+
+    public Map<String, String> getMetadata() {
+        return metadata;
+    }
+}
@@ -0,0 +1,33 @@
+package io.smallrye.dux.simulator;
+
+/**
+ * Backends of a running simulation, used by scripted actions to simulate churn, slow nodes and failures
+ */
+public interface Fleet {
+
+    /**
+     * Adds a backend and makes it visible in the service discovery
+     *
+     * @param backend the backend
+     */
+    void addBackend(Backend backend);
+
+    /**
+     * Removes a backend from the service discovery. Requests the backend already got are still handled.
+     *
+     * @param name name of the backend
+     */
+    void removeBackend(String name);
+
+    /**
+     * @param name name of the backend
+     * @param slowdown factor the service time of the backend is multiplied by
+     */
+    void setSlowdown(String name, double slowdown);
+
+    /**
+     * @param name name of the backend
+     * @param failureProbability probability of a request to the backend failing
+     */
+    void setFailureProbability(String name, double failureProbability);
+}
@@ -0,0 +1,43 @@
+package io.smallrye.dux.simulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.smallrye.dux.ServiceDiscovery;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.mutiny.Multi;
+
+/**
+ * Service discovery whose instances are set programmatically
+ */
+public final class ScriptableServiceDiscovery implements ServiceDiscovery {
+
+    private volatile List<ServiceInstance> instances = Collections.emptyList();
+
+    @Override
+    public Multi<ServiceInstance> getServiceInstances() {
+        return Multi.createFrom().iterable(instances);
+    }
+
+    @Override
+    public List<ServiceInstance> getServiceInstancesIfAvailable() {
+        return instances;
+    }
+
+    public synchronized void setInstances(List<ServiceInstance> instances) {
+        this.instances = Collections.unmodifiableList(new ArrayList<>(instances));
+    }
+
+    public synchronized void addInstance(ServiceInstance instance) {
+        List<ServiceInstance> result = new ArrayList<>(instances);
+        result.add(instance);
+        instances = Collections.unmodifiableList(result);
+    }
+
+    public synchronized void removeInstance(ServiceInstance instance) {
+        List<ServiceInstance> result = new ArrayList<>(instances);
+        result.removeIf(i -> i.getId().equals(instance.getId()));
+        instances = Collections.unmodifiableList(result);
+    }
+}
@@ -0,0 +1,38 @@
+package io.smallrye.dux.simulator;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * Distribution of the time a backend needs to handle a request
+ */
+public interface ServiceTimeDistribution {
+
+    /**
+     * @param random source of randomness of the simulation
+     * @return service time in nanoseconds
+     */
+    long sampleNanos(Random random);
+
+    static ServiceTimeDistribution constant(Duration serviceTime) {
+        long nanos = serviceTime.toNanos();
+        return random -> nanos;
+    }
+
+    static ServiceTimeDistribution exponential(Duration mean) {
+        double meanNanos = mean.toNanos();
+        return random -> (long) (-Math.log(1 - random.nextDouble()) * meanNanos);
+    }
+
+    /**
+     * Log-normal distribution, a good approximation of real service times with a long tail
+     *
+     * @param median median service time
+     * @param sigma standard deviation of the underlying normal distribution, the higher, the longer the tail
+     * @return the distribution
+     */
+    static ServiceTimeDistribution logNormal(Duration median, double sigma) {
+        double mu = Math.log(median.toNanos());
+        return random -> (long) Math.exp(mu + sigma * random.nextGaussian());
+    }
+}
@@ -0,0 +1,334 @@
+package io.smallrye.dux.simulator;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import io.smallrye.dux.LoadBalancer;
+import io.smallrye.dux.ServiceInstance;
+import io.smallrye.dux.config.LoadBalancerConfig;
+import io.smallrye.dux.spi.InstanceStateTable;
+import io.smallrye.dux.spi.LoadBalancerProvider;
+import io.smallrye.dux.spi.SimpleServiceConfig;
+
+/**
+ * Discrete event simulation of a load balancer in front of synthetic backends.
+ * <p>
+ * The simulation runs in virtual time: requests arrive as a Poisson process, each backend handles a limited number
+ * of requests in parallel and queues the rest. Nothing sleeps, so a simulation of minutes of traffic takes
+ * milliseconds, and runs with the same seed give the same results. The load balancer runs in virtual time too:
+ * its instance state table is created with the clock of the simulation, see {@link InstanceStateTable#ticker()},
+ * and a random source seeded from the seed of the simulation, see {@link InstanceStateTable#random()}.
+ * The instance ids are allocated per run.
+ * <p>
+ * The load balancer is notified about the start and the end of every request, so load and failure aware
+ * load balancers see the simulated backends as they would see real ones.
+ * <p>
+ * Churn, slow nodes and failures are simulated with actions scheduled at given points of virtual time,
+ * see {@link Builder#at(Duration, Consumer)}.
+ */
+public final class Simulation {
+
+    private static final Throwable SIMULATED_FAILURE = new RuntimeException("Simulated failure", null, false, false) {
+    };
+
+    private final LoadBalancerProvider loadBalancerProvider;
+    private final LoadBalancerConfig loadBalancerConfig;
+    private final List<Backend> backends;
+    private final List<ScheduledAction> actions;
+    private final double requestsPerSecond;
+    private final int requests;
+    private final long seed;
+
+    private Simulation(Builder builder) {
+        this.loadBalancerProvider = builder.loadBalancerProvider;
+        this.loadBalancerConfig = builder.loadBalancerConfig;
+        this.backends = new ArrayList<>(builder.backends);
+        this.actions = new ArrayList<>(builder.actions);
+        this.requestsPerSecond = builder.requestsPerSecond;
+        this.requests = builder.requests;
+        this.seed = builder.seed;
+    }
+
+    /**
+     * Runs the simulation. Every run starts from scratch, with a new load balancer.
+     *
+     * @return the report of the run
+     */
+    public SimulationReport run() {
+        return new Run().execute();
+    }
+
+    private final class Run implements Fleet {
+        private final Random random = new Random(seed);
+        private final PriorityQueue<Event> events = new PriorityQueue<>();
+        private final ScriptableServiceDiscovery serviceDiscovery = new ScriptableServiceDiscovery();
+        private final Map<Long, BackendState> backendsById = new HashMap<>();
+        private final Map<String, BackendState> backendsByName = new LinkedHashMap<>();
+
+        private LoadBalancer loadBalancer;
+        private long now;
+        private long sequence;
+        private long nextInstanceId;
+
+        private long[] latencies = new long[1024];
+        private int handled;
+        private long failures;
+        private long unserved;
+
+        SimulationReport execute() {
+            for (Backend backend : backends) {
+                addBackend(backend);
+            }
+            loadBalancer = loadBalancerProvider.createLoadBalancer(loadBalancerConfig, serviceDiscovery,
+                    // a random source of its own, so that the choices of the load balancer don't change the arrivals
+                    new InstanceStateTable(InstanceStateTable.DEFAULT_DRAIN_TIMEOUT, () -> now, new Random(~seed)));
+
+            for (ScheduledAction action : actions) {
+                schedule(new Event(action.time, Event.ACTION, null, 0, false, action.action));
+            }
+
+            double meanInterArrivalNanos = 1_000_000_000d / requestsPerSecond;
+            long arrival = 0;
+            for (int i = 0; i < requests; i++) {
+                arrival += (long) (-Math.log(1 - random.nextDouble()) * meanInterArrivalNanos);
+                schedule(new Event(arrival, Event.ARRIVAL, null, 0, false, null));
+            }
+
+            Event event;
+            while ((event = events.poll()) != null) {
+                now = event.time;
+                switch (event.type) {
+                    case Event.ARRIVAL:
+                        arrive();
+                        break;
+                    case Event.COMPLETION:
+                        complete(event);
+                        break;
+                    default:
+                        event.action.accept(this);
+                }
+            }
+
+            Map<String, Long> requestsPerBackend = new LinkedHashMap<>();
+            for (BackendState state : backendsByName.values()) {
+                requestsPerBackend.put(state.name, state.requests);
+            }
+            return new SimulationReport(Arrays.copyOf(latencies, handled), failures, unserved, requestsPerBackend,
+                    Duration.ofNanos(now));
+        }
+
+        private void arrive() {
+            ServiceInstance instance = loadBalancer.selectServiceInstanceIfAvailable();
+            if (instance == null) {
+                instance = loadBalancer.selectServiceInstance().await().indefinitely();
+            }
+            BackendState backend = instance == null ? null : backendsById.get(instance.getId());
+            if (backend == null) {
+                unserved++;
+                return;
+            }
+            backend.requests++;
+            loadBalancer.requestStarted(instance);
+            if (backend.busy < backend.concurrency) {
+                start(backend, now);
+            } else {
+                backend.queue.add(now);
+            }
+        }
+
+        private void start(BackendState backend, long arrivalTime) {
+            backend.busy++;
+            long serviceTime = (long) (backend.serviceTime.sampleNanos(random) * backend.slowdown);
+            boolean failed = random.nextDouble() < backend.failureProbability;
+            schedule(new Event(now + serviceTime, Event.COMPLETION, backend, arrivalTime, failed, null));
+        }
+
+        private void complete(Event completion) {
+            long latency = now - completion.arrivalTime;
+            record(latency);
+            if (completion.failed) {
+                failures++;
+            }
+            BackendState backend = completion.backend;
+            loadBalancer.requestFinished(backend.instance, completion.failed ? SIMULATED_FAILURE : null, latency);
+            backend.busy--;
+            Long queued = backend.queue.poll();
+            if (queued != null) {
+                start(backend, queued);
+            }
+        }
+
+        private void record(long latency) {
+            if (handled == latencies.length) {
+                latencies = Arrays.copyOf(latencies, handled * 2);
+            }
+            latencies[handled++] = latency;
+        }
+
+        private void schedule(Event event) {
+            event.sequence = sequence++;
+            events.add(event);
+        }
+
+        @Override
+        public void addBackend(Backend backend) {
+            if (backendsByName.containsKey(backend.getName())) {
+                throw new IllegalArgumentException("Backend " + backend.getName() + " already exists");
+            }
+            BackendState state = new BackendState(backend, nextInstanceId++);
+            backendsById.put(state.instance.getId(), state);
+            backendsByName.put(state.name, state);
+            serviceDiscovery.addInstance(state.instance);
+        }
+
+        @Override
+        public void removeBackend(String name) {
+            serviceDiscovery.removeInstance(backend(name).instance);
+        }
+
+        @Override
+        public void setSlowdown(String name, double slowdown) {
+            backend(name).slowdown = slowdown;
+        }
+
+        @Override
+        public void setFailureProbability(String name, double failureProbability) {
+            backend(name).failureProbability = failureProbability;
+        }
+
+        private BackendState backend(String name) {
+            BackendState state = backendsByName.get(name);
+            if (state == null) {
+                throw new IllegalArgumentException("No backend named " + name);
+            }
+            return state;
+        }
+    }
+
+    private static final class BackendState {
+        private final String name;
+        private final ServiceInstance instance;
+        private final ServiceTimeDistribution serviceTime;
+        private final int concurrency;
+        private final ArrayDeque<Long> queue = new ArrayDeque<>();
+        private double slowdown;
+        private double failureProbability;
+        private int busy;
+        private long requests;
+
+        private BackendState(Backend backend, long instanceId) {
+            name = backend.getName();
+            instance = new ServiceInstance(instanceId, backend.getName(), backend.getMetadata());
+            serviceTime = backend.getServiceTime();
+            concurrency = backend.getConcurrency();
+            slowdown = backend.getSlowdown();
+            failureProbability = backend.getFailureProbability();
+        }
+    }
+
+    private static final class Event implements Comparable<Event> {
+        static final int ARRIVAL = 0;
+        static final int COMPLETION = 1;
+        static final int ACTION = 2;
+
+        private final long time;
+        private final int type;
+        private final BackendState backend;
+        private final long arrivalTime;
+        private final boolean failed;
+        private final Consumer<Fleet> action;
+        private long sequence;
+
+        private Event(long time, int type, BackendState backend, long arrivalTime, boolean failed,
+                Consumer<Fleet> action) {
+            this.time = time;
+            this.type = type;
+            this.backend = backend;
+            this.arrivalTime = arrivalTime;
+            this.failed = failed;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int result = Long.compare(time, other.time);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static final class ScheduledAction {
+        private final long time;
+        private final Consumer<Fleet> action;
+
+        private ScheduledAction(long time, Consumer<Fleet> action) {
+            this.time = time;
+            this.action = action;
+        }
+    }
+
+    public static class Builder {
+        LoadBalancerProvider loadBalancerProvider;
+        LoadBalancerConfig loadBalancerConfig;
+        final List<Backend> backends = new ArrayList<>();
+        final List<ScheduledAction> actions = new ArrayList<>();
+        double requestsPerSecond = 1000;
+        int requests = 100_000;
+        long seed = 42;
+
+        public Builder setLoadBalancer(LoadBalancerProvider provider, Map<String, String> parameters) {
+            loadBalancerProvider = provider;
+            loadBalancerConfig = new SimpleServiceConfig.SimpleLoadBalancerConfig(provider.type(),
+                    parameters == null ? Collections.emptyMap() : parameters);
+            return this;
+        }
+
+        public Builder addBackend(Backend backend) {
+            backends.add(backend);
+            return this;
+        }
+
+        public Builder setRequestsPerSecond(double requestsPerSecond) {
+            this.requestsPerSecond = requestsPerSecond;
+            return this;
+        }
+
+        public Builder setRequests(int requests) {
+            this.requests = requests;
+            return this;
+        }
+
+        public Builder setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Schedules an action, e.g. removing or slowing down a backend, at the given point of virtual time
+         *
+         * @param time time since the start of the simulation
+         * @param action the action
+         * @return this builder
+         */
+        public Builder at(Duration time, Consumer<Fleet> action) {
+            actions.add(new ScheduledAction(time.toNanos(), action));
+            return this;
+        }
+
+        public Simulation build() {
+            if (loadBalancerProvider == null) {
+                throw new IllegalArgumentException("No load balancer defined for the simulation");
+            }
+            return new Simulation(this);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package io.smallrye.dux.simulator;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Result of a simulation run
+ */
+public final class SimulationReport {
+
+    private final long[] latencies;
+    private final long failures;
+    private final long unserved;
+    private final Map<String, Long> requestsPerBackend;
+    private final Duration duration;
+
+    SimulationReport(long[] latencies, long failures, long unserved, Map<String, Long> requestsPerBackend,
+            Duration duration) {
+        this.latencies = latencies;
+        Arrays.sort(this.latencies);
+        this.failures = failures;
+        this.unserved = unserved;
+        this.requestsPerBackend = Collections.unmodifiableMap(requestsPerBackend);
+        this.duration = duration;
+    }
+
+    /**
+     * @param percentile percentile, between 0 and 100
+     * @return latency at the percentile, over all handled requests, including the failed ones
+     */
+    public Duration latency(double percentile) {
+        if (latencies.length == 0) {
+            return Duration.ZERO;
+        }
+        int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+        return Duration.ofNanos(latencies[Math.max(0, Math.min(index, latencies.length - 1))]);
+    }
+
+    public Duration p50() {
+        return latency(50);
+    }
+
+    public Duration p99() {
+        return latency(99);
+    }
+
+    public Duration p999() {
+        return latency(99.9);
+    }
+
+    /**
+     * @return number of requests handled by backends
+     */
+    public long requests() {
+        return latencies.length;
+    }
+
+    /**
+     * @return number of requests that failed on a backend
+     */
+    public long failures() {
+        return failures;
+    }
+
+    /**
+     * @return number of requests for which the load balancer did not select any instance
+     */
+    public long unserved() {
+        return unserved;
+    }
+
+    /**
+     * @return number of requests sent to each backend, by backend name
+     */
+    public Map<String, Long> requestsPerBackend() {
+        return requestsPerBackend;
+    }
+
+    /**
+     * @return virtual time the simulation took
+     */
+    public Duration duration() {
+        return duration;
+    }
+
+    @Override
+    public String toString() {
+        return "SimulationReport{" +
+                "requests=" + requests() +
+                ", failures=" + failures +
+                ", unserved=" + unserved +
+                ", p50=" + p50() +
+                ", p99=" + p99() +
+                ", p999=" + p999() +
+                ", requestsPerBackend=" + requestsPerBackend +
+                ", duration=" + duration +
+                '}';
+    }
+}
@@ -0,0 +1,100 @@
+package io.smallrye.dux.simulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.smallrye.dux.loadbalancer.priority.PriorityLoadBalancerProvider;
+import io.smallrye.dux.loadbalancer.roundrobin.RoundRobinLoadBalancerProvider;
+
+public class SimulationTest {
+
+    private static final ServiceTimeDistribution SERVICE_TIME = ServiceTimeDistribution
+            .exponential(Duration.ofMillis(10));
+
+    @Test
+    void shouldSpreadRequestsEvenlyWithRoundRobin() {
+        SimulationReport report = new Simulation.Builder()
+                .setLoadBalancer(new RoundRobinLoadBalancerProvider(), null)
+                .addBackend(new Backend("first", SERVICE_TIME, 4))
+                .addBackend(new Backend("second", SERVICE_TIME, 4))
+                .addBackend(new Backend("third", SERVICE_TIME, 4))
+                .setRequests(30_000)
+                .build()
+                .run();
+
+        assertThat(report.requests()).isEqualTo(30_000);
+        assertThat(report.requestsPerBackend()).containsValues(10_000L);
+        assertThat(report.p50()).isLessThan(report.p99());
+        assertThat(report.p99()).isLessThanOrEqualTo(report.p999());
+    }
+
+    @Test
+    void shouldBeDeterministic() {
+        Simulation simulation = new Simulation.Builder()
+                .setLoadBalancer(new RoundRobinLoadBalancerProvider(), null)
+                .addBackend(new Backend("first", SERVICE_TIME, 2))
+                .addBackend(new Backend("slow", SERVICE_TIME, 2, 5, 0.01))
+                .setRequests(10_000)
+                .build();
+
+        SimulationReport first = simulation.run();
+        SimulationReport second = simulation.run();
+
+        assertThat(first.p99()).isEqualTo(second.p99());
+        assertThat(first.failures()).isEqualTo(second.failures()).isPositive();
+    }
+
+    @Test
+    void shouldSimulateSlowNodesAndChurn() {
+        SimulationReport healthy = new Simulation.Builder()
+                .setLoadBalancer(new RoundRobinLoadBalancerProvider(), null)
+                .addBackend(new Backend("first", SERVICE_TIME, 4))
+                .addBackend(new Backend("second", SERVICE_TIME, 4))
+                .setRequestsPerSecond(200)
+                .setRequests(10_000)
+                .build()
+                .run();
+
+        SimulationReport withSlowNode = new Simulation.Builder()
+                .setLoadBalancer(new RoundRobinLoadBalancerProvider(), null)
+                .addBackend(new Backend("first", SERVICE_TIME, 4))
+                .addBackend(new Backend("second", SERVICE_TIME, 4))
+                .setRequestsPerSecond(200)
+                .setRequests(10_000)
+                .at(Duration.ofSeconds(10), fleet -> fleet.setSlowdown("second", 10))
+                .at(Duration.ofSeconds(20), fleet -> fleet.addBackend(new Backend("third", SERVICE_TIME, 4)))
+                .at(Duration.ofSeconds(30), fleet -> fleet.removeBackend("second"))
+                .build()
+                .run();
+
+        assertThat(withSlowNode.p99()).isGreaterThan(healthy.p99());
+        assertThat(withSlowNode.requestsPerBackend().get("third")).isPositive();
+        assertThat(withSlowNode.requestsPerBackend().get("first"))
+                .isGreaterThan(withSlowNode.requestsPerBackend().get("second"));
+    }
+
+    @Test
+    void shouldRunTimeBasedPoliciesInVirtualTime() {
+        // 100 seconds of virtual time, the failing backend is ejected for 10 seconds after 5 failures
+        Simulation simulation = new Simulation.Builder()
+                .setLoadBalancer(new PriorityLoadBalancerProvider(),
+                        Map.of("failure-threshold", "5", "ejection-time", "10"))
+                .addBackend(new Backend("healthy", SERVICE_TIME, 4))
+                .addBackend(new Backend("failing", SERVICE_TIME, 4, 1, 1))
+                .setRequestsPerSecond(100)
+                .setRequests(10_000)
+                .build();
+
+        SimulationReport first = simulation.run();
+        SimulationReport second = simulation.run();
+
+        // with the wall clock, the run would take milliseconds and the backend would stay ejected after 5 requests
+        assertThat(first.requestsPerBackend().get("failing")).isBetween(40L, 70L);
+        assertThat(first.requestsPerBackend()).isEqualTo(second.requestsPerBackend());
+        assertThat(first.p99()).isEqualTo(second.p99());
+    }
+}